@@ -0,0 +1,88 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IModule;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SonargraphBaseBenchmark
+{
+    @Param
+    public SonargraphBenchmarkReport report;
+
+    private ISoftwareSystem softwareSystem;
+    private File baseDirectory;
+    private List<String> issueTypeNames;
+    private List<String> metricIdNames;
+
+    @Setup
+    public void setup()
+    {
+        final ISonargraphSystemController controller = report.loadReport();
+        softwareSystem = controller.getSoftwareSystem();
+        baseDirectory = report.getBaseDirectory();
+
+        final ISystemInfoProcessor systemInfoProcessor = controller.createSystemInfoProcessor();
+        issueTypeNames = systemInfoProcessor.getIssueTypes().stream().map(t -> t.getName()).collect(Collectors.toList());
+        metricIdNames = systemInfoProcessor.getMetricIds().stream().map(m -> m.getName()).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public IModule matchModule()
+    {
+        return SonargraphBase.matchModule(softwareSystem, SonargraphReportGenerator.PROJECT_KEY, baseDirectory);
+    }
+
+    @Benchmark
+    public void createRuleKey(final Blackhole blackhole)
+    {
+        for (final String nextIssueTypeName : issueTypeNames)
+        {
+            blackhole.consume(SonargraphBase.createRuleKey(nextIssueTypeName));
+        }
+    }
+
+    @Benchmark
+    public void createMetricKeyFromStandardName(final Blackhole blackhole)
+    {
+        for (final String nextMetricIdName : metricIdNames)
+        {
+            blackhole.consume(SonargraphBase.createMetricKeyFromStandardName(nextMetricIdName));
+        }
+    }
+}
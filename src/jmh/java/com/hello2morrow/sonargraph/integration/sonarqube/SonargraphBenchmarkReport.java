@@ -0,0 +1,105 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+
+//Reports the benchmarks are parameterized with, ordered by size (public as required by the JMH generated code).
+//The generated reports are created underneath 'target/benchmark-reports' on first use.
+public enum SonargraphBenchmarkReport
+{
+    TEST_PROJECT("./src/test/test-project", "target/sonargraph/sonargraph-sonarqube-report.xml", "src", null),
+    INTEGRATION_SONARQUBE(".", "src/test/report/IntegrationSonarqube.xml", "src/main/java", null),
+    GENERATED_SMALL(new SonargraphReportGenerator().setSourceFilesPerRootDirectory(100).setIssuesPerType(100).setDuplicateBlocks(20, 3)
+            .setCycleGroups(5)),
+    GENERATED_MEDIUM(new SonargraphReportGenerator().setModules(4).setRootDirectoriesPerModule(2).setSourceFilesPerRootDirectory(500)
+            .setIssuesPerType(2500).setDuplicateBlocks(500, 3).setCycleGroups(50).setResolutions(500)),
+    GENERATED_LARGE(new SonargraphReportGenerator().setModules(8).setRootDirectoriesPerModule(2).setSourceFilesPerRootDirectory(2500)
+            .setLinesPerSourceFile(60).setIssuesPerType(25000).setDuplicateBlocks(5000, 4).setCycleGroups(500).setResolutions(5000));
+
+    private static final String GENERATED_DIRECTORY = "target/benchmark-reports/";
+
+    private final String baseDirectory;
+    private final String reportPath;
+    private final String sourceDirectory;
+    private final SonargraphReportGenerator generator;
+
+    private SonargraphBenchmarkReport(final String baseDirectory, final String reportPath, final String sourceDirectory,
+            final SonargraphReportGenerator generator)
+    {
+        this.baseDirectory = baseDirectory;
+        this.reportPath = reportPath;
+        this.sourceDirectory = sourceDirectory;
+        this.generator = generator;
+    }
+
+    private SonargraphBenchmarkReport(final SonargraphReportGenerator generator)
+    {
+        this.baseDirectory = null;
+        this.reportPath = SonargraphReportGenerator.REPORT_PATH;
+        this.sourceDirectory = ".";
+        this.generator = generator;
+    }
+
+    File getBaseDirectory()
+    {
+        final String path = baseDirectory != null ? baseDirectory : GENERATED_DIRECTORY + name().toLowerCase();
+        return new File(path).getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    File getReportFile()
+    {
+        final File reportFile = new File(getBaseDirectory(), reportPath);
+        if (generator != null && !reportFile.exists())
+        {
+            try
+            {
+                generator.generate(getBaseDirectory());
+            }
+            catch (final IOException e)
+            {
+                throw new UncheckedIOException("Failed to generate report for " + name(), e);
+            }
+        }
+        return reportFile;
+    }
+
+    ISonargraphSystemController loadReport()
+    {
+        final File reportFile = getReportFile();
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        final Result result = controller.loadSystemReport(reportFile);
+        if (!result.isSuccess())
+        {
+            throw new IllegalStateException("Failed to load '" + reportFile.getAbsolutePath() + "': " + result.toString());
+        }
+        return controller;
+    }
+
+    SonargraphSensorFixture createSensorFixture() throws IOException
+    {
+        getReportFile();
+        return SonargraphSensorFixture.create(getBaseDirectory(), reportPath, sourceDirectory);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SonargraphSensorBenchmark
+{
+    @Param
+    public SonargraphBenchmarkReport report;
+
+    private SonargraphSensorFixture fixture;
+    private SonargraphResolutionIndex resolutionIndex;
+    private List<IIssue> issues;
+    private SonargraphSensor sensor;
+
+    //Issues and measures accumulate in the sensor context, so each execution gets a fresh one
+    @State(Scope.Thread)
+    public static class ExecutionState
+    {
+        private SensorContextTester sensorContext;
+
+        @Setup(Level.Invocation)
+        public void setup(final SonargraphSensorBenchmark benchmark)
+        {
+            sensorContext = benchmark.fixture.createSensorContext();
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException
+    {
+        //Keep custom metrics added while benchmarking out of the user's home directory
+        SonargraphSensorFixture.setCustomMetricsDirectory(Files.createTempDirectory(SonargraphBase.SONARGRAPH_PLUGIN_KEY).toFile());
+
+        fixture = report.createSensorFixture();
+        final ISystemInfoProcessor systemInfoProcessor = report.loadReport().createSystemInfoProcessor();
+        issues = systemInfoProcessor.getIssues(i -> true);
+        resolutionIndex = SonargraphResolutionIndex.create(systemInfoProcessor);
+        sensor = SonargraphSensorFixture.createSensor(fixture.createSensorContext());
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void createIssueDescription(final Blackhole blackhole)
+    {
+        for (final IIssue nextIssue : issues)
+        {
+            blackhole.consume(sensor.createIssueDescription(resolutionIndex, nextIssue));
+        }
+    }
+
+    @Benchmark
+    public SensorContextTester execute(final ExecutionState state)
+    {
+        return SonargraphSensorFixture.execute(state.sensorContext);
+    }
+}
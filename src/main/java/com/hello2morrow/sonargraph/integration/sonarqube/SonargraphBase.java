@@ -20,17 +20,23 @@ package com.hello2morrow.sonargraph.integration.sonarqube;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metric.ValueType;
@@ -60,6 +66,38 @@ final class SonargraphBase
     static final String CONFIG_PREFIX = "sonar.sonargraph.integration";
     static final String XML_REPORT_FILE_PATH_KEY = CONFIG_PREFIX + ":" + "report.path";
     static final String XML_REPORT_FILE_PATH_DEFAULT = "target/sonargraph/sonargraph-sonarqube-report.xml";
+    static final String IMPORT_PROFILE_KEY = CONFIG_PREFIX + ":" + "import.profile";
+    static final String REPORT_CACHE_KEY = CONFIG_PREFIX + ":" + "report.cache";
+    static final String REPORT_CACHE_DIRECTORY_KEY = CONFIG_PREFIX + ":" + "report.cache.directory";
+    static final String REPORT_CACHE_DIRECTORY_DEFAULT = "sonargraph-report-cache";
+    static final String REPORT_CACHE_MAX_SIZE_KEY = CONFIG_PREFIX + ":" + "report.cache.maxSizeMb";
+    static final int REPORT_CACHE_MAX_SIZE_DEFAULT = 256;
+    static final String EMISSION_PLAN_KEY = CONFIG_PREFIX + ":" + "emission.plan";
+    static final String COMPACT_MESSAGES_KEY = CONFIG_PREFIX + ":" + "messages.compact";
+    static final String MESSAGE_MAX_LENGTH_KEY = CONFIG_PREFIX + ":" + "messages.maxLength";
+    static final int MESSAGE_MAX_LENGTH_DEFAULT = 200;
+    static final String ISSUE_COUNTS_KEY = CONFIG_PREFIX + ":" + "measures.issueCounts";
+    static final String COLLAPSE_VIOLATIONS_KEY = CONFIG_PREFIX + ":" + "violations.collapse";
+    static final String COLLAPSE_VIOLATIONS_MAX_LINES_KEY = CONFIG_PREFIX + ":" + "violations.collapse.maxLines";
+    static final int COLLAPSE_VIOLATIONS_MAX_LINES_DEFAULT = 5;
+    static final String EXCLUDED_MODULES_KEY = CONFIG_PREFIX + ":" + "filter.modules.exclusions";
+    static final String INCLUDED_PATHS_KEY = CONFIG_PREFIX + ":" + "filter.paths.inclusions";
+    static final String EXCLUDED_PATHS_KEY = CONFIG_PREFIX + ":" + "filter.paths.exclusions";
+    static final String EXCLUDED_ISSUE_TYPES_KEY = CONFIG_PREFIX + ":" + "filter.issueTypes.exclusions";
+    static final String IMPORT_TIME_BUDGET_KEY = CONFIG_PREFIX + ":" + "import.timeBudgetMs";
+    static final String DIAGNOSTICS_MAX_EXAMPLES_KEY = CONFIG_PREFIX + ":" + "diagnostics.maxExamples";
+    static final int DIAGNOSTICS_MAX_EXAMPLES_DEFAULT = 10;
+    static final String DIAGNOSTICS_DUMP_KEY = CONFIG_PREFIX + ":" + "diagnostics.dump";
+    static final String DRY_RUN_KEY = CONFIG_PREFIX + ":" + "dryRun";
+    static final String IMPORT_STRATEGY_KEY = CONFIG_PREFIX + ":" + "import.strategy";
+    static final String QUALITY_GATE_MAX_ARCHITECTURE_VIOLATIONS_KEY = CONFIG_PREFIX + ":" + "qualityGate.maxArchitectureViolations";
+    static final String QUALITY_GATE_MAX_THRESHOLD_VIOLATIONS_KEY = CONFIG_PREFIX + ":" + "qualityGate.maxThresholdViolations";
+    static final String QUALITY_GATE_MAX_CYCLE_GROUP_SIZE_KEY = CONFIG_PREFIX + ":" + "qualityGate.maxCycleGroupSize";
+    static final String QUALITY_GATE_MAX_ACD_KEY = CONFIG_PREFIX + ":" + "qualityGate.maxAcd";
+    static final Metric<Serializable> IMPORT_COMPLETENESS = new Metric.Builder(METRIC_ID_PREFIX + "IMPORT_COMPLETENESS", "Import Completeness",
+            Metric.ValueType.PERCENT).setDescription("Percentage of the Sonargraph issues imported within the import time budget")
+                    .setDomain(SONARGRAPH_PLUGIN_PRESENTATION_NAME).setDirection(Metric.DIRECTION_BETTER).setQualitative(Boolean.FALSE)
+                    .setBestValue(Double.valueOf(100.0)).setWorstValue(Double.valueOf(0.0)).create();
 
     static final String WORKSPACE = "Workspace";
     static final String SCRIPT_ISSUE_CATEGORY = "ScriptBased";
@@ -93,7 +131,8 @@ final class SonargraphBase
     private static final String BUILT_IN_META_DATA_RESOURCE_PATH = "/com/hello2morrow/sonargraph/integration/sonarqube/ExportMetaData.xml";
     private static final List<String> IGNORE_ISSUE_TYPE_CATEGORIES = Arrays.asList(WORKSPACE, "InstallationConfiguration");
 
-    private static ICustomMetricsPropertiesProvider customMetricsPropertiesProvider = new ICustomMetricsPropertiesProvider()
+    private static final Object CUSTOM_METRICS_LOCK = new Object();
+    private static volatile ICustomMetricsPropertiesProvider customMetricsPropertiesProvider = new ICustomMetricsPropertiesProvider()
     {
         //Default
     };
@@ -139,6 +178,16 @@ final class SonargraphBase
         return firstLower ? input : Character.toUpperCase(input.charAt(0)) + input.substring(1);
     }
 
+    //A max length <= 0 means unlimited
+    static String abbreviate(final String text, final int maxLength)
+    {
+        if (maxLength <= 0 || text.length() <= maxLength)
+        {
+            return text;
+        }
+        return maxLength > 3 ? text.substring(0, maxLength - 3) + "..." : text.substring(0, maxLength);
+    }
+
     static String trimDescription(final String description)
     {
         if (description != null && !description.isEmpty())
@@ -181,37 +230,47 @@ final class SonargraphBase
         }
     }
 
-    static Metric<Serializable> createMetric(final IMetricId metricId)
+    static Metric<Serializable> createMetric(final String metricIdName, final String presentationName, final boolean isFloat,
+            final String description, final Double bestValue, final Double worstValue)
     {
-        final Metric.Builder builder = new Metric.Builder(createMetricKeyFromStandardName(metricId.getName()), metricId.getPresentationName(),
-                metricId.isFloat() ? Metric.ValueType.FLOAT : Metric.ValueType.INT).setDescription(trimDescription(metricId.getDescription()))
+        final Metric.Builder builder = new Metric.Builder(createMetricKeyFromStandardName(metricIdName), presentationName,
+                isFloat ? Metric.ValueType.FLOAT : Metric.ValueType.INT).setDescription(trimDescription(description))
                         .setDomain(SONARGRAPH_PLUGIN_PRESENTATION_NAME);
 
-        setBestValue(metricId.getBestValue(), builder);
-        setWorstValue(metricId.getWorstValue(), builder);
-        setMetricDirection(metricId.getBestValue(), metricId.getWorstValue(), builder);
+        setBestValue(bestValue, builder);
+        setWorstValue(worstValue, builder);
+        setMetricDirection(bestValue, worstValue, builder);
 
         return builder.create();
     }
 
+    static Metric<Serializable> createMetric(final IMetricId metricId)
+    {
+        return createMetric(metricId.getName(), metricId.getPresentationName(), metricId.isFloat(), metricId.getDescription(),
+                metricId.getBestValue(), metricId.getWorstValue());
+    }
+
     static Properties loadCustomMetrics()
+    {
+        return loadCustomMetrics(customMetricsPropertiesProvider);
+    }
+
+    private static Properties loadCustomMetrics(final ICustomMetricsPropertiesProvider provider)
     {
         final Properties customMetrics = new Properties();
 
-        try (FileInputStream fis = new FileInputStream(new File(customMetricsPropertiesProvider.getFilePath())))
+        try (FileInputStream fis = new FileInputStream(new File(provider.getFilePath())))
         {
             customMetrics.load(fis);
-            LOGGER.info(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Loaded custom metrics file '" + customMetricsPropertiesProvider.getFilePath() + "'");
+            LOGGER.info(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Loaded custom metrics file '" + provider.getFilePath() + "'");
         }
         catch (final FileNotFoundException e)
         {
-            LOGGER.info(
-                    SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Custom metrics file '" + customMetricsPropertiesProvider.getFilePath() + "' not found");
+            LOGGER.info(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Custom metrics file '" + provider.getFilePath() + "' not found");
         }
         catch (final IOException e)
         {
-            LOGGER.error(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to load custom metrics file '"
-                    + customMetricsPropertiesProvider.getFilePath() + "'", e);
+            LOGGER.error(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to load custom metrics file '" + provider.getFilePath() + "'", e);
         }
 
         return customMetrics;
@@ -225,22 +284,60 @@ final class SonargraphBase
                         + CUSTOM_METRIC_SEPARATOR + trimDescription(metricId.getDescription()));
     }
 
+    //Merges the given custom metrics into the custom metrics file. Concurrent scans of several modules may discover custom metrics at the same
+    //time, so the file is re-read and replaced atomically while holding the lock.
     static void save(final Properties customMetrics)
     {
-        try
+        final Object event = SonargraphFlightRecorder.beginCustomMetricsStore();
+        final ICustomMetricsPropertiesProvider provider = customMetricsPropertiesProvider;
+        int size = customMetrics.size();
+        boolean success = false;
+        synchronized (CUSTOM_METRICS_LOCK)
         {
-            final File file = new File(customMetricsPropertiesProvider.getDirectory());
-            file.mkdirs();
-            customMetrics.store(new FileWriter(new File(file, customMetricsPropertiesProvider.getFileName())), "Custom Metrics");
+            File tempFile = null;
+            try
+            {
+                final Properties merged = loadCustomMetrics(provider);
+                merged.putAll(customMetrics);
+                size = merged.size();
+
+                final File directory = new File(provider.getDirectory());
+                directory.mkdirs();
+                tempFile = File.createTempFile(provider.getFileName(), ".tmp", directory);
+                try (OutputStream outputStream = new FileOutputStream(tempFile))
+                {
+                    merged.store(outputStream, "Custom Metrics");
+                }
+                Files.move(tempFile.toPath(), new File(directory, provider.getFileName()).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                success = true;
 
-            LOGGER.warn(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Custom metrics file '" + customMetricsPropertiesProvider.getFilePath()
-                    + "' updated, the SonarQube server needs to be restarted");
+                LOGGER.warn(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Custom metrics file '" + provider.getFilePath()
+                        + "' updated, the SonarQube server needs to be restarted");
+            }
+            catch (final IOException e)
+            {
+                LOGGER.error(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to save custom metrics file '" + provider.getFilePath() + "'", e);
+            }
+            finally
+            {
+                if (tempFile != null && tempFile.exists() && !tempFile.delete())
+                {
+                    LOGGER.warn(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to delete '" + tempFile.getAbsolutePath() + "'");
+                }
+                SonargraphFlightRecorder.commitCustomMetricsStore(event, provider.getFilePath(), size, success);
+            }
         }
-        catch (final IOException e)
+    }
+
+    static String toHexString(final byte[] bytes)
+    {
+        final StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (final byte nextByte : bytes)
         {
-            LOGGER.error(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to save custom metrics file '"
-                    + customMetricsPropertiesProvider.getFilePath() + "'", e);
+            builder.append(Character.forDigit((nextByte >> 4) & 0xF, 16)).append(Character.forDigit(nextByte & 0xF, 16));
         }
+        return builder.toString();
     }
 
     static String getNonEmptyString(final Object input)
@@ -319,6 +416,15 @@ final class SonargraphBase
         return metrics;
     }
 
+    //Metrics of the plugin itself, not provided by Sonargraph
+    static List<Metric<Serializable>> getPluginMetrics()
+    {
+        final List<Metric<Serializable>> pluginMetrics = new ArrayList<>();
+        pluginMetrics.add(IMPORT_COMPLETENESS);
+        pluginMetrics.addAll(SonargraphIssueCounts.getMetrics());
+        return pluginMetrics;
+    }
+
     static List<Metric<Serializable>> getCustomMetrics()
     {
         return getCustomMetrics(loadCustomMetrics());
@@ -370,10 +476,8 @@ final class SonargraphBase
         return categoryPresentationName.replace(' ', '-').toLowerCase();
     }
 
-    static boolean ignoreIssueType(final IIssueType issueType)
+    static boolean ignoreIssueCategory(final String categoryName)
     {
-        final String categoryName = issueType.getCategory().getName();
-
         for (final String next : IGNORE_ISSUE_TYPE_CATEGORIES)
         {
             if (next.equals(categoryName))
@@ -385,6 +489,11 @@ final class SonargraphBase
         return false;
     }
 
+    static boolean ignoreIssueType(final IIssueType issueType)
+    {
+        return ignoreIssueCategory(issueType.getCategory().getName());
+    }
+
     static boolean isErrorOrWarningWorkspoceIssue(final IIssueType issueType)
     {
         return WORKSPACE.equals(issueType.getCategory().getName())
@@ -408,21 +517,21 @@ final class SonargraphBase
         }
     }
 
-    private static List<IModule> getModuleCandidates(final ISoftwareSystem softwareSystem, final File baseDirectory)
+    //Modules having the most root directories underneath the base directory, the module root directories are given as relative paths
+    static <T> List<T> getModuleCandidates(final String systemBaseDir, final Map<T, List<String>> moduleRootDirectories, final File baseDirectory)
     {
         final String identifyingBaseDirectoryPath = getIdentifyingPath(baseDirectory);
-        final File systemBaseDirectory = new File(softwareSystem.getBaseDir());
+        final File systemBaseDirectory = new File(systemBaseDir);
 
         LOGGER.info(SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Trying to match module using system base directory '" + systemBaseDirectory + "'");
 
-        final TreeMap<Integer, List<IModule>> numberOfMatchedRootDirsToModules = new TreeMap<>();
-        for (final IModule nextModule : softwareSystem.getModules().values())
+        final TreeMap<Integer, List<T>> numberOfMatchedRootDirsToModules = new TreeMap<>();
+        for (final Entry<T, List<String>> nextEntry : moduleRootDirectories.entrySet())
         {
             int matchedRootDirs = 0;
 
-            for (final IRootDirectory nextRootDirectory : nextModule.getRootDirectories())
+            for (final String nextRelPath : nextEntry.getValue())
             {
-                final String nextRelPath = nextRootDirectory.getRelativePath();
                 final File nextAbsoluteRootDirectory = new File(systemBaseDirectory, nextRelPath);
                 if (nextAbsoluteRootDirectory.exists())
                 {
@@ -439,9 +548,9 @@ final class SonargraphBase
             if (matchedRootDirs > 0)
             {
                 final Integer nextMatchedRootDirsAsInteger = Integer.valueOf(matchedRootDirs);
-                final List<IModule> nextMatched = numberOfMatchedRootDirsToModules.computeIfAbsent(nextMatchedRootDirsAsInteger,
+                final List<T> nextMatched = numberOfMatchedRootDirsToModules.computeIfAbsent(nextMatchedRootDirsAsInteger,
                         k -> new ArrayList<>(2));
-                nextMatched.add(nextModule);
+                nextMatched.add(nextEntry.getKey());
             }
         }
 
@@ -453,8 +562,20 @@ final class SonargraphBase
         return Collections.emptyList();
     }
 
+    private static List<IModule> getModuleCandidates(final ISoftwareSystem softwareSystem, final File baseDirectory)
+    {
+        final Map<IModule, List<String>> moduleRootDirectories = new LinkedHashMap<>();
+        for (final IModule nextModule : softwareSystem.getModules().values())
+        {
+            moduleRootDirectories.put(nextModule,
+                    nextModule.getRootDirectories().stream().map(IRootDirectory::getRelativePath).collect(Collectors.toList()));
+        }
+        return getModuleCandidates(softwareSystem.getBaseDir(), moduleRootDirectories, baseDirectory);
+    }
+
     static IModule matchModule(final ISoftwareSystem softwareSystem, final String inputModuleKey, final File baseDirectory)
     {
+        final Object event = SonargraphFlightRecorder.beginModuleMatch();
         IModule matched = null;
 
         final List<IModule> moduleCandidates = getModuleCandidates(softwareSystem, baseDirectory);
@@ -462,6 +583,8 @@ final class SonargraphBase
         {
             matched = moduleCandidates.get(0);
         }
+        SonargraphFlightRecorder.commitModuleMatch(event, inputModuleKey, softwareSystem.getModules().size(), moduleCandidates.size(),
+                matched != null ? matched.getName() : null);
 
         if (matched == null)
         {
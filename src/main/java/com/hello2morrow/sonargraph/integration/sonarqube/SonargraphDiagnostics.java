@@ -0,0 +1,171 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+//Aggregates problems found during the import (e.g. files of the report missing in the checkout) instead of logging each of them.
+//Per kind the count and the first examples are logged once, optionally all of them are written to a separate file.
+final class SonargraphDiagnostics
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphDiagnostics.class);
+    static final String DUMP_FILE_NAME = "sonargraph-diagnostics.txt";
+
+    enum Kind
+    {
+        UNRESOLVED_SOURCE_FILE("source file(s) of the report not found", true),
+        UNRESOLVED_DIRECTORY("directory(ies) of the report not found", true),
+        WORKSPACE_ISSUE("workspace issue(s) found", false),
+        OUT_OF_RANGE_LOCATION("issue location(s) beyond the end of their source file adjusted", false);
+
+        private final String presentationName;
+        private final boolean isError;
+
+        private Kind(final String presentationName, final boolean isError)
+        {
+            this.presentationName = presentationName;
+            this.isError = isError;
+        }
+
+        String getPresentationName()
+        {
+            return presentationName;
+        }
+
+        boolean isError()
+        {
+            return isError;
+        }
+    }
+
+    private final int maxExamples;
+    private final boolean keepAll;
+    private final Map<Kind, Integer> counts = new EnumMap<>(Kind.class);
+    private final Map<Kind, List<String>> examples = new EnumMap<>(Kind.class);
+
+    //If 'keepAll' is set all messages are kept for the dump, otherwise only the first 'maxExamples' per kind
+    SonargraphDiagnostics(final int maxExamples, final boolean keepAll)
+    {
+        this.maxExamples = Math.max(0, maxExamples);
+        this.keepAll = keepAll;
+    }
+
+    void add(final Kind kind, final String message)
+    {
+        final Integer count = counts.get(kind);
+        final int newCount = count != null ? count.intValue() + 1 : 1;
+        counts.put(kind, Integer.valueOf(newCount));
+        if (keepAll || newCount <= maxExamples)
+        {
+            examples.computeIfAbsent(kind, k -> new ArrayList<>()).add(message);
+        }
+    }
+
+    int getCount(final Kind kind)
+    {
+        final Integer count = counts.get(kind);
+        return count != null ? count.intValue() : 0;
+    }
+
+    boolean isEmpty()
+    {
+        return counts.isEmpty();
+    }
+
+    //The first 'maxExamples' messages of the kind
+    List<String> getExamples(final Kind kind)
+    {
+        final List<String> messages = examples.get(kind);
+        if (messages == null)
+        {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(messages.subList(0, Math.min(maxExamples, messages.size())));
+    }
+
+    String createSummary(final Kind kind)
+    {
+        final int count = getCount(kind);
+        final StringBuilder builder = new StringBuilder();
+        builder.append(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME).append(": ").append(count).append(" ").append(kind.getPresentationName());
+        final List<String> kindExamples = getExamples(kind);
+        if (!kindExamples.isEmpty())
+        {
+            builder.append(count > kindExamples.size() ? ", first " + kindExamples.size() + ":" : ":");
+            kindExamples.forEach(e -> builder.append("\n - ").append(e));
+        }
+        return builder.toString();
+    }
+
+    //One log entry per kind
+    void log()
+    {
+        for (final Kind nextKind : counts.keySet())
+        {
+            if (nextKind.isError())
+            {
+                LOGGER.error(createSummary(nextKind));
+            }
+            else
+            {
+                LOGGER.warn(createSummary(nextKind));
+            }
+        }
+    }
+
+    void writeAll(final Writer writer) throws IOException
+    {
+        for (final Map.Entry<Kind, Integer> nextEntry : counts.entrySet())
+        {
+            writer.write(nextEntry.getKey().name() + " (" + nextEntry.getValue() + " " + nextEntry.getKey().getPresentationName() + ")\n");
+            final List<String> nextMessages = examples.get(nextEntry.getKey());
+            if (nextMessages != null)
+            {
+                for (final String nextMessage : nextMessages)
+                {
+                    writer.write(nextMessage.replace("\n", "\n  "));
+                    writer.write("\n");
+                }
+            }
+        }
+    }
+
+    File writeAll(final File directory) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+        final File file = new File(directory, DUMP_FILE_NAME);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)))
+        {
+            writeAll(writer);
+        }
+        return file;
+    }
+}
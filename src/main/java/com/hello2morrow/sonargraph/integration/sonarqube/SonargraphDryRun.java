@@ -0,0 +1,272 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.utils.text.JsonWriter;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Phase;
+
+//Collects what a sensor execution would save in dry-run mode: issues and measures per rule/metric, module and component, the size of the
+//issue messages and the heap. The heap pools are shared with the rest of the JVM, so their peaks are not reset: the heap in use on
+//creation is recorded as baseline next to the peak.
+//The live heap (in use after an explicit collection) is sampled once the issues are classified, with the report model still loaded, and on
+//emission of the classified issues. Emission does not raise the peak if the model has been collected by then, which is recorded as well.
+final class SonargraphDryRun
+{
+    static final String JSON_FILE_NAME = "sonargraph-dry-run.json";
+    private static final int LOGGED_COMPONENTS = 10;
+
+    private final String moduleKey;
+    private final Map<String, Long> issuesPerRule = new TreeMap<>();
+    private final Map<String, Long> issuesPerComponent = new HashMap<>();
+    private final Map<String, Long> measuresPerMetric = new TreeMap<>();
+    private final Map<String, Long> measuresPerComponent = new HashMap<>();
+    private final long baselineHeapBytes;
+    private long issues;
+    private long measures;
+    private long messageBytes;
+    private long peakHeapBytes = -1;
+    private long modelHeapBytes = -1;
+    private long emissionHeapBytes = -1;
+    private Object sampledModel;
+    private WeakReference<Object> modelReference;
+    private boolean modelRetainedOnEmission;
+
+    SonargraphDryRun(final String moduleKey)
+    {
+        this.moduleKey = moduleKey;
+        baselineHeapBytes = getHeapPools().stream().mapToLong(p -> p.getUsage().getUsed()).sum();
+    }
+
+    private static List<MemoryPoolMXBean> getHeapPools()
+    {
+        return ManagementFactory.getMemoryPoolMXBeans().stream().filter(p -> p.getType() == MemoryType.HEAP && p.isValid())
+                .collect(Collectors.toList());
+    }
+
+    private static void increment(final Map<String, Long> counts, final String key)
+    {
+        counts.merge(key, Long.valueOf(1), Long::sum);
+    }
+
+    void addIssue(final InputComponent component, final String ruleKey, final String message)
+    {
+        issues++;
+        increment(issuesPerRule, ruleKey);
+        increment(issuesPerComponent, component.key());
+        messageBytes += message.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    void addMeasure(final InputComponent component, final String metricKey)
+    {
+        measures++;
+        increment(measuresPerMetric, metricKey);
+        increment(measuresPerComponent, component.key());
+    }
+
+    //Objects only reachable from finalizable ones survive the first collection
+    private static long getLiveHeapBytes()
+    {
+        System.gc();
+        System.runFinalization();
+        System.gc();
+        return getHeapPools().stream().mapToLong(p -> p.getUsage().getUsed()).sum();
+    }
+
+    //The maximum over all reports is kept. The model is referenced while sampling, so that it is counted even if the caller does not use it
+    //anymore.
+    void recordModelHeap(final Object model)
+    {
+        sampledModel = model;
+        modelHeapBytes = Math.max(modelHeapBytes, getLiveHeapBytes());
+        sampledModel = null;
+        modelReference = new WeakReference<>(model);
+    }
+
+    void recordEmissionHeap()
+    {
+        emissionHeapBytes = Math.max(emissionHeapBytes, getLiveHeapBytes());
+        if (modelReference != null && modelReference.get() != null)
+        {
+            modelRetainedOnEmission = true;
+        }
+        modelReference = null;
+    }
+
+    //Sum of the peak usages of the heap pools, at least the baseline
+    void finish()
+    {
+        peakHeapBytes = Math.max(baselineHeapBytes, getHeapPools().stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum());
+    }
+
+    long getNumberOfIssues()
+    {
+        return issues;
+    }
+
+    long getNumberOfMeasures()
+    {
+        return measures;
+    }
+
+    long getMessageBytes()
+    {
+        return messageBytes;
+    }
+
+    long getBaselineHeapBytes()
+    {
+        return baselineHeapBytes;
+    }
+
+    long getPeakHeapBytes()
+    {
+        return peakHeapBytes;
+    }
+
+    //-1 if no report has been processed
+    long getModelHeapBytes()
+    {
+        return modelHeapBytes;
+    }
+
+    long getEmissionHeapBytes()
+    {
+        return emissionHeapBytes;
+    }
+
+    boolean isModelRetainedOnEmission()
+    {
+        return modelRetainedOnEmission;
+    }
+
+    Map<String, Long> getIssuesPerRule()
+    {
+        return issuesPerRule;
+    }
+
+    Map<String, Long> getIssuesPerComponent()
+    {
+        return issuesPerComponent;
+    }
+
+    Map<String, Long> getMeasuresPerMetric()
+    {
+        return measuresPerMetric;
+    }
+
+    private static List<Entry<String, Long>> sortByCount(final Map<String, Long> counts)
+    {
+        final List<Entry<String, Long>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort(Comparator.<Entry<String, Long>> comparingLong(e -> e.getValue().longValue()).reversed().thenComparing(Entry::getKey));
+        return sorted;
+    }
+
+    String createSummary()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("Dry run of '").append(moduleKey).append("': ").append(issues).append(" issue(s) on ").append(issuesPerComponent.size())
+                .append(" component(s), ").append(measures).append(" measure(s), ").append(messageBytes).append(" message byte(s), heap ")
+                .append(baselineHeapBytes / (1024 * 1024)).append(" MB on start, peak ").append(peakHeapBytes / (1024 * 1024)).append(" MB, live ")
+                .append(modelHeapBytes / (1024 * 1024)).append(" MB with model, ").append(emissionHeapBytes / (1024 * 1024))
+                .append(" MB on emission");
+        if (modelRetainedOnEmission)
+        {
+            builder.append(" (model retained on emission)");
+        }
+        for (final Entry<String, Long> nextEntry : sortByCount(issuesPerRule))
+        {
+            builder.append("\n - rule ").append(nextEntry.getKey()).append(": ").append(nextEntry.getValue());
+        }
+        final List<Entry<String, Long>> components = sortByCount(issuesPerComponent);
+        for (final Entry<String, Long> nextEntry : components.subList(0, Math.min(LOGGED_COMPONENTS, components.size())))
+        {
+            builder.append("\n - component ").append(nextEntry.getKey()).append(": ").append(nextEntry.getValue());
+        }
+        return builder.toString();
+    }
+
+    private static void writeCounts(final JsonWriter json, final String name, final Map<String, Long> counts)
+    {
+        json.name(name).beginObject();
+        for (final Entry<String, Long> nextEntry : sortByCount(counts))
+        {
+            json.prop(nextEntry.getKey(), nextEntry.getValue().longValue());
+        }
+        json.endObject();
+    }
+
+    void writeJson(final Writer writer, final SonargraphImportProfile profile)
+    {
+        final JsonWriter json = JsonWriter.of(writer);
+        json.beginObject();
+        json.prop("module", moduleKey);
+        json.prop("issues", issues);
+        json.prop("measures", measures);
+        json.prop("messageBytes", messageBytes);
+        json.prop("baselineHeapBytes", baselineHeapBytes);
+        json.prop("peakHeapBytes", peakHeapBytes);
+        json.prop("modelHeapBytes", modelHeapBytes);
+        json.prop("emissionHeapBytes", emissionHeapBytes);
+        json.prop("modelRetainedOnEmission", modelRetainedOnEmission);
+        json.name("phasesMs").beginObject();
+        for (final Phase nextPhase : Phase.values())
+        {
+            json.prop(nextPhase.getKey(), TimeUnit.NANOSECONDS.toMillis(profile.getNanos(nextPhase)));
+        }
+        json.endObject();
+        writeCounts(json, "issuesPerRule", issuesPerRule);
+        writeCounts(json, "issuesPerComponent", issuesPerComponent);
+        writeCounts(json, "measuresPerMetric", measuresPerMetric);
+        writeCounts(json, "measuresPerComponent", measuresPerComponent);
+        json.endObject();
+        json.close();
+    }
+
+    File writeJson(final File directory, final SonargraphImportProfile profile) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+        final File file = new File(directory, JSON_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8))
+        {
+            writeJson(writer, profile);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,430 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.DefaultTextPointer;
+import org.sonar.api.batch.fs.internal.DefaultTextRange;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.measure.MetricFinder;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.batch.sensor.measure.NewMeasure;
+import org.sonar.api.rule.RuleKey;
+
+//Records the issues and measures created for a module, so that an unchanged import can replay them without processing the report.
+//The file format is flat: header (magic, version, key) followed by issue and measure records, strings are written once and then referenced.
+final class SonargraphEmissionPlan
+{
+    static final String FILE_NAME = "sonargraph-emission-plan.bin";
+
+    private static final int MAGIC = 0x53475045;
+    private static final int FORMAT_VERSION = 2;
+    private static final byte COMPONENT_MODULE = 0;
+    private static final byte COMPONENT_FILE = 1;
+    private static final byte COMPONENT_DIRECTORY = 2;
+
+    private static final class ComponentRef
+    {
+        private final byte type;
+        private final String path;
+
+        ComponentRef(final byte type, final String path)
+        {
+            this.type = type;
+            this.path = path;
+        }
+    }
+
+    private static final class IssueRecord
+    {
+        private final ComponentRef component;
+        private final String ruleKey;
+        private final String message;
+        private final int[] range;
+        private final List<int[]> secondaryRanges;
+
+        IssueRecord(final ComponentRef component, final String ruleKey, final String message, final int[] range, final List<int[]> secondaryRanges)
+        {
+            this.component = component;
+            this.ruleKey = ruleKey;
+            this.message = message;
+            this.range = range;
+            this.secondaryRanges = secondaryRanges;
+        }
+    }
+
+    private static final class MeasureRecord
+    {
+        private final ComponentRef component;
+        private final String metricKey;
+        private final boolean isFloat;
+        private final double value;
+
+        MeasureRecord(final ComponentRef component, final String metricKey, final boolean isFloat, final double value)
+        {
+            this.component = component;
+            this.metricKey = metricKey;
+            this.isFloat = isFloat;
+            this.value = value;
+        }
+    }
+
+    private final List<IssueRecord> issues = new ArrayList<>();
+    private final List<MeasureRecord> measures = new ArrayList<>();
+
+    SonargraphEmissionPlan()
+    {
+        super();
+    }
+
+    static String createKey(final List<String> parts) throws IOException
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+            for (final String nextPart : parts)
+            {
+                digest.update((byte) '\n');
+                digest.update(nextPart.getBytes(StandardCharsets.UTF_8));
+            }
+            return SonargraphBase.toHexString(digest.digest());
+        }
+        catch (final NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+    int getNumberOfIssues()
+    {
+        return issues.size();
+    }
+
+    int getNumberOfMeasures()
+    {
+        return measures.size();
+    }
+
+    private static ComponentRef createComponentRef(final InputComponent inputComponent)
+    {
+        if (inputComponent instanceof InputFile)
+        {
+            return new ComponentRef(COMPONENT_FILE, ((InputFile) inputComponent).relativePath());
+        }
+        if (inputComponent instanceof InputDir)
+        {
+            return new ComponentRef(COMPONENT_DIRECTORY, ((InputDir) inputComponent).relativePath());
+        }
+        return new ComponentRef(COMPONENT_MODULE, "");
+    }
+
+    private static int[] toValues(final TextRange range)
+    {
+        return new int[] { range.start().line(), range.start().lineOffset(), range.end().line(), range.end().lineOffset() };
+    }
+
+    private static TextRange toRange(final int[] values)
+    {
+        return new DefaultTextRange(new DefaultTextPointer(values[0], values[1]), new DefaultTextPointer(values[2], values[3]));
+    }
+
+    //'secondaryRanges' are further locations on the same component
+    void addIssue(final InputComponent inputComponent, final RuleKey ruleKey, final String message, final TextRange range,
+            final List<TextRange> secondaryRanges)
+    {
+        final List<int[]> secondaryValues = new ArrayList<>(secondaryRanges.size());
+        for (final TextRange nextRange : secondaryRanges)
+        {
+            secondaryValues.add(toValues(nextRange));
+        }
+        issues.add(new IssueRecord(createComponentRef(inputComponent), ruleKey.toString(), message, range != null ? toValues(range) : null,
+                secondaryValues));
+    }
+
+    void addMeasure(final InputComponent inputComponent, final String metricKey, final boolean isFloat, final double value)
+    {
+        measures.add(new MeasureRecord(createComponentRef(inputComponent), metricKey, isFloat, value));
+    }
+
+    private static void writeString(final DataOutputStream out, final Map<String, Integer> pool, final String value) throws IOException
+    {
+        final Integer index = pool.get(value);
+        if (index != null)
+        {
+            out.writeInt(index.intValue());
+            return;
+        }
+
+        pool.put(value, Integer.valueOf(pool.size()));
+        out.writeInt(-1);
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in, final List<String> pool) throws IOException
+    {
+        final int index = in.readInt();
+        if (index >= 0)
+        {
+            if (index >= pool.size())
+            {
+                throw new IOException("Invalid string reference " + index);
+            }
+            return pool.get(index);
+        }
+
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        final String value = new String(bytes, StandardCharsets.UTF_8);
+        pool.add(value);
+        return value;
+    }
+
+    private static void writeComponent(final DataOutputStream out, final Map<String, Integer> pool, final ComponentRef component)
+            throws IOException
+    {
+        out.writeByte(component.type);
+        writeString(out, pool, component.path);
+    }
+
+    private static ComponentRef readComponent(final DataInputStream in, final List<String> pool) throws IOException
+    {
+        final byte type = in.readByte();
+        if (type != COMPONENT_MODULE && type != COMPONENT_FILE && type != COMPONENT_DIRECTORY)
+        {
+            throw new IOException("Invalid component type " + type);
+        }
+        return new ComponentRef(type, readString(in, pool));
+    }
+
+    void write(final File file, final String key) throws IOException
+    {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        final File tempFile = new File(file.getAbsolutePath() + "." + Thread.currentThread().getId() + "." + System.nanoTime() + ".tmp");
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()))))
+            {
+                final Map<String, Integer> pool = new HashMap<>();
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeInt(issues.size());
+                for (final IssueRecord nextIssue : issues)
+                {
+                    writeComponent(out, pool, nextIssue.component);
+                    writeString(out, pool, nextIssue.ruleKey);
+                    writeString(out, pool, nextIssue.message);
+                    out.writeBoolean(nextIssue.range != null);
+                    if (nextIssue.range != null)
+                    {
+                        for (final int nextValue : nextIssue.range)
+                        {
+                            out.writeInt(nextValue);
+                        }
+                    }
+                    out.writeInt(nextIssue.secondaryRanges.size());
+                    for (final int[] nextSecondaryRange : nextIssue.secondaryRanges)
+                    {
+                        for (final int nextValue : nextSecondaryRange)
+                        {
+                            out.writeInt(nextValue);
+                        }
+                    }
+                }
+                out.writeInt(measures.size());
+                for (final MeasureRecord nextMeasure : measures)
+                {
+                    writeComponent(out, pool, nextMeasure.component);
+                    writeString(out, pool, nextMeasure.metricKey);
+                    out.writeBoolean(nextMeasure.isFloat);
+                    out.writeDouble(nextMeasure.value);
+                }
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    //Returns null if there is no plan for the key.
+    static SonargraphEmissionPlan read(final File file, final String key) throws IOException
+    {
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF()))
+            {
+                return null;
+            }
+
+            final List<String> pool = new ArrayList<>();
+            final SonargraphEmissionPlan plan = new SonargraphEmissionPlan();
+            final int numberOfIssues = in.readInt();
+            for (int i = 0; i < numberOfIssues; i++)
+            {
+                final ComponentRef component = readComponent(in, pool);
+                final String ruleKey = readString(in, pool);
+                final String message = readString(in, pool);
+                int[] range = null;
+                if (in.readBoolean())
+                {
+                    range = new int[] { in.readInt(), in.readInt(), in.readInt(), in.readInt() };
+                }
+                final int numberOfSecondaryRanges = in.readInt();
+                if (numberOfSecondaryRanges < 0)
+                {
+                    throw new IOException("Invalid number of secondary locations " + numberOfSecondaryRanges);
+                }
+                final List<int[]> secondaryRanges = new ArrayList<>(Math.min(numberOfSecondaryRanges, 1024));
+                for (int j = 0; j < numberOfSecondaryRanges; j++)
+                {
+                    secondaryRanges.add(new int[] { in.readInt(), in.readInt(), in.readInt(), in.readInt() });
+                }
+                plan.issues.add(new IssueRecord(component, ruleKey, message, range, secondaryRanges));
+            }
+            final int numberOfMeasures = in.readInt();
+            for (int i = 0; i < numberOfMeasures; i++)
+            {
+                final ComponentRef component = readComponent(in, pool);
+                plan.measures.add(new MeasureRecord(component, readString(in, pool), in.readBoolean(), in.readDouble()));
+            }
+            return plan;
+        }
+    }
+
+    private static InputComponent resolve(final SensorContext context, final FileSystem fileSystem, final ComponentRef component,
+            final Map<String, InputComponent> resolved)
+    {
+        switch (component.type)
+        {
+        case COMPONENT_FILE:
+            return resolved.computeIfAbsent("f:" + component.path,
+                    k -> fileSystem.inputFile(fileSystem.predicates().hasRelativePath(component.path)));
+        case COMPONENT_DIRECTORY:
+            return resolved.computeIfAbsent("d:" + component.path, k -> fileSystem.inputDir(new File(fileSystem.baseDir(), component.path)));
+        case COMPONENT_MODULE:
+            //$FALL-THROUGH$
+        default:
+            return context.module();
+        }
+    }
+
+    //Returns false without creating anything if a component of the plan cannot be resolved.
+    @SuppressWarnings("unchecked")
+    boolean replay(final SensorContext context, final FileSystem fileSystem, final MetricFinder metricFinder)
+    {
+        final Map<String, InputComponent> resolved = new HashMap<>();
+        final List<InputComponent> issueComponents = new ArrayList<>(issues.size());
+        for (final IssueRecord nextIssue : issues)
+        {
+            final InputComponent nextComponent = resolve(context, fileSystem, nextIssue.component, resolved);
+            if (nextComponent == null)
+            {
+                return false;
+            }
+            issueComponents.add(nextComponent);
+        }
+        final List<InputComponent> measureComponents = new ArrayList<>(measures.size());
+        final List<Metric<Serializable>> measureMetrics = new ArrayList<>(measures.size());
+        for (final MeasureRecord nextMeasure : measures)
+        {
+            final InputComponent nextComponent = resolve(context, fileSystem, nextMeasure.component, resolved);
+            final Metric<Serializable> nextMetric = metricFinder.findByKey(nextMeasure.metricKey);
+            if (nextComponent == null || nextMetric == null)
+            {
+                return false;
+            }
+            measureComponents.add(nextComponent);
+            measureMetrics.add(nextMetric);
+        }
+
+        for (int i = 0; i < issues.size(); i++)
+        {
+            final IssueRecord nextIssue = issues.get(i);
+            final NewIssue newIssue = context.newIssue();
+            newIssue.forRule(RuleKey.parse(nextIssue.ruleKey));
+            final NewIssueLocation newIssueLocation = newIssue.newLocation();
+            newIssueLocation.on(issueComponents.get(i));
+            newIssueLocation.message(nextIssue.message);
+            if (nextIssue.range != null)
+            {
+                newIssueLocation.at(toRange(nextIssue.range));
+            }
+            newIssue.at(newIssueLocation);
+            for (final int[] nextSecondaryRange : nextIssue.secondaryRanges)
+            {
+                newIssue.addLocation(newIssue.newLocation().on(issueComponents.get(i)).at(toRange(nextSecondaryRange)));
+            }
+            newIssue.save();
+        }
+
+        for (int i = 0; i < measures.size(); i++)
+        {
+            final MeasureRecord nextMeasure = measures.get(i);
+            if (nextMeasure.isFloat)
+            {
+                final NewMeasure<Double> newMeasure = context.<Double> newMeasure();
+                newMeasure.forMetric((Metric<Double>) (Metric<?>) measureMetrics.get(i));
+                newMeasure.on(measureComponents.get(i));
+                newMeasure.withValue(Double.valueOf(nextMeasure.value));
+                newMeasure.save();
+            }
+            else
+            {
+                final NewMeasure<Integer> newMeasure = context.<Integer> newMeasure();
+                newMeasure.forMetric((Metric<Integer>) (Metric<?>) measureMetrics.get(i));
+                newMeasure.on(measureComponents.get(i));
+                newMeasure.withValue(Integer.valueOf((int) nextMeasure.value));
+                newMeasure.save();
+            }
+        }
+        return true;
+    }
+}
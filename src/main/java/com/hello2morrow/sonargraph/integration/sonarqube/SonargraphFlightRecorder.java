@@ -0,0 +1,107 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+//Emits the events defined in 'SonargraphJfrEvents' if the JVM supports Java Flight Recorder and a recording is running.
+//The begin methods return null otherwise, the commit methods ignore null events.
+final class SonargraphFlightRecorder
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphFlightRecorder.class);
+    private static final boolean AVAILABLE = determineAvailability();
+
+    private SonargraphFlightRecorder()
+    {
+        super();
+    }
+
+    private static boolean determineAvailability()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event", false, SonargraphFlightRecorder.class.getClassLoader());
+            return true;
+        }
+        catch (final ClassNotFoundException | LinkageError e)
+        {
+            LOGGER.debug(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Java Flight Recorder not available");
+            return false;
+        }
+    }
+
+    static boolean isAvailable()
+    {
+        return AVAILABLE;
+    }
+
+    static Object beginReportLoad()
+    {
+        return AVAILABLE ? SonargraphJfrEvents.beginReportLoad() : null;
+    }
+
+    static void commitReportLoad(final Object event, final String reportFile, final long fileSize, final boolean success)
+    {
+        if (event != null)
+        {
+            SonargraphJfrEvents.commitReportLoad(event, reportFile, fileSize, success);
+        }
+    }
+
+    static Object beginModuleMatch()
+    {
+        return AVAILABLE ? SonargraphJfrEvents.beginModuleMatch() : null;
+    }
+
+    static void commitModuleMatch(final Object event, final String inputModuleKey, final int modulesExamined, final int candidates,
+            final String matchedModule)
+    {
+        if (event != null)
+        {
+            SonargraphJfrEvents.commitModuleMatch(event, inputModuleKey, modulesExamined, candidates, matchedModule);
+        }
+    }
+
+    static Object beginModuleEmission()
+    {
+        return AVAILABLE ? SonargraphJfrEvents.beginModuleEmission() : null;
+    }
+
+    static void commitModuleEmission(final Object event, final String inputModuleKey, final boolean project, final long issues,
+            final long measures, final long unresolvedPaths)
+    {
+        if (event != null)
+        {
+            SonargraphJfrEvents.commitModuleEmission(event, inputModuleKey, project, issues, measures, unresolvedPaths);
+        }
+    }
+
+    static Object beginCustomMetricsStore()
+    {
+        return AVAILABLE ? SonargraphJfrEvents.beginCustomMetricsStore() : null;
+    }
+
+    static void commitCustomMetricsStore(final Object event, final String file, final int customMetrics, final boolean success)
+    {
+        if (event != null)
+        {
+            SonargraphJfrEvents.commitCustomMetricsStore(event, file, customMetrics, success);
+        }
+    }
+}
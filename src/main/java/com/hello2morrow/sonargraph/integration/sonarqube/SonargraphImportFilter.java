@@ -0,0 +1,186 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.sonar.api.config.Configuration;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+//Include/exclude filters on Sonargraph module names, source paths (relative to the Sonargraph system base directory) and issue type names.
+//Patterns are globs ('*', '**' and '?') unless prefixed with 'regex:'. All patterns of a property are compiled into a single pattern.
+final class SonargraphImportFilter
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphImportFilter.class);
+    static final String REGEX_PREFIX = "regex:";
+
+    private final List<String> keyParts = new ArrayList<>();
+    private final Pattern excludedModules;
+    private final Pattern includedPaths;
+    private final Pattern excludedPaths;
+    private final Pattern excludedIssueTypes;
+    private final Map<String, Boolean> acceptedIssueTypes = new HashMap<>();
+
+    SonargraphImportFilter(final String[] excludedModules, final String[] includedPaths, final String[] excludedPaths,
+            final String[] excludedIssueTypes)
+    {
+        this.excludedModules = compile(excludedModules);
+        this.includedPaths = compile(includedPaths);
+        this.excludedPaths = compile(excludedPaths);
+        this.excludedIssueTypes = compile(excludedIssueTypes);
+        keyParts.add(String.valueOf(this.excludedModules));
+        keyParts.add(String.valueOf(this.includedPaths));
+        keyParts.add(String.valueOf(this.excludedPaths));
+        keyParts.add(String.valueOf(this.excludedIssueTypes));
+    }
+
+    static SonargraphImportFilter create(final Configuration configuration)
+    {
+        return new SonargraphImportFilter(configuration.getStringArray(SonargraphBase.EXCLUDED_MODULES_KEY),
+                configuration.getStringArray(SonargraphBase.INCLUDED_PATHS_KEY), configuration.getStringArray(SonargraphBase.EXCLUDED_PATHS_KEY),
+                configuration.getStringArray(SonargraphBase.EXCLUDED_ISSUE_TYPES_KEY));
+    }
+
+    static String toRegex(final String glob)
+    {
+        final StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length())
+        {
+            final char next = glob.charAt(i);
+            if (next == '*')
+            {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*')
+                {
+                    if (i + 2 < glob.length() && glob.charAt(i + 2) == '/')
+                    {
+                        //'**/' also matches no directory at all
+                        regex.append("(?:.*/)?");
+                        i += 3;
+                    }
+                    else
+                    {
+                        regex.append(".*");
+                        i += 2;
+                    }
+                    continue;
+                }
+                regex.append("[^/]*");
+            }
+            else if (next == '?')
+            {
+                regex.append("[^/]");
+            }
+            else
+            {
+                regex.append(Pattern.quote(String.valueOf(next)));
+            }
+            i++;
+        }
+        return regex.toString();
+    }
+
+    //Returns null if there are no (valid) patterns
+    static Pattern compile(final String[] patterns)
+    {
+        final StringBuilder combined = new StringBuilder();
+        for (final String nextPattern : patterns)
+        {
+            final String nextTrimmed = nextPattern.trim();
+            if (nextTrimmed.isEmpty())
+            {
+                continue;
+            }
+
+            final String nextRegex = nextTrimmed.startsWith(REGEX_PREFIX) ? nextTrimmed.substring(REGEX_PREFIX.length()) : toRegex(nextTrimmed);
+            try
+            {
+                Pattern.compile(nextRegex);
+            }
+            catch (final PatternSyntaxException e)
+            {
+                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Ignoring invalid filter pattern '" + nextTrimmed + "': "
+                        + e.getDescription());
+                continue;
+            }
+            combined.append(combined.length() > 0 ? "|" : "").append("(?:").append(nextRegex).append(")");
+        }
+        return combined.length() > 0 ? Pattern.compile(combined.toString()) : null;
+    }
+
+    //Source paths are compared in universal form without leading './'
+    static String normalizePath(final String path)
+    {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("./"))
+        {
+            normalized = normalized.substring(2);
+        }
+        return normalized;
+    }
+
+    boolean isEmpty()
+    {
+        return excludedModules == null && includedPaths == null && excludedPaths == null && excludedIssueTypes == null;
+    }
+
+    //Identifies the configured filters, e.g. as part of the emission plan key
+    List<String> getKeyParts()
+    {
+        return Collections.unmodifiableList(keyParts);
+    }
+
+    boolean acceptModule(final String moduleName)
+    {
+        return excludedModules == null || !excludedModules.matcher(moduleName).matches();
+    }
+
+    boolean acceptPath(final String path)
+    {
+        if (includedPaths == null && excludedPaths == null)
+        {
+            return true;
+        }
+        final String normalized = normalizePath(path);
+        return (includedPaths == null || includedPaths.matcher(normalized).matches())
+                && (excludedPaths == null || !excludedPaths.matcher(normalized).matches());
+    }
+
+    //The result is cached per issue type name, so that the cost per issue is a single map lookup
+    boolean acceptIssueType(final String issueTypeName)
+    {
+        if (excludedIssueTypes == null)
+        {
+            return true;
+        }
+        Boolean accepted = acceptedIssueTypes.get(issueTypeName);
+        if (accepted == null)
+        {
+            accepted = Boolean.valueOf(!excludedIssueTypes.matcher(issueTypeName).matches());
+            acceptedIssueTypes.put(issueTypeName, accepted);
+        }
+        return accepted.booleanValue();
+    }
+}
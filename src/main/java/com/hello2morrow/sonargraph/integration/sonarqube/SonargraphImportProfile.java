@@ -0,0 +1,190 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.sonar.api.utils.text.JsonWriter;
+
+//Collects per-phase timings (monotonic clock) and counters of one sensor execution.
+final class SonargraphImportProfile
+{
+    enum Phase
+    {
+        HEADER_PROBE("headerProbe"),
+        REPORT_LOAD("reportLoad"),
+        MODULE_MATCHING("moduleMatching"),
+        RULE_METRIC_SNAPSHOT("ruleMetricSnapshot"),
+        ISSUE_CLASSIFICATION("issueClassification"),
+        DESCRIPTION_BUILDING("descriptionBuilding"),
+        FILE_RESOLUTION("fileResolution"),
+        MEASURE_SAVE("measureSave"),
+        ISSUE_SAVE("issueSave"),
+        EMISSION_PLAN("emissionPlan");
+
+        private final String key;
+
+        private Phase(final String key)
+        {
+            this.key = key;
+        }
+
+        String getKey()
+        {
+            return key;
+        }
+    }
+
+    enum Counter
+    {
+        ISSUES_SAVED("issuesSaved"),
+        ISSUES_SKIPPED_INACTIVE_RULE("issuesSkippedInactiveRule"),
+        ISSUES_FILTERED("issuesFiltered"),
+        ISSUES_COLLAPSED("issuesCollapsed"),
+        MEASURES_SAVED("measuresSaved"),
+        UNRESOLVED_FILES("unresolvedFiles"),
+        UNRESOLVED_DIRECTORIES("unresolvedDirectories"),
+        LOCATIONS_CLAMPED("locationsClamped"),
+        LOCATIONS_DROPPED("locationsDropped"),
+        CUSTOM_METRICS_DISCOVERED("customMetricsDiscovered");
+
+        private final String key;
+
+        private Counter(final String key)
+        {
+            this.key = key;
+        }
+
+        String getKey()
+        {
+            return key;
+        }
+    }
+
+    static final String JSON_FILE_NAME = "sonargraph-import-profile.json";
+
+    private final String moduleKey;
+    private final long startNanos = System.nanoTime();
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] counters = new long[Counter.values().length];
+    private long totalNanos = -1;
+
+    SonargraphImportProfile(final String moduleKey)
+    {
+        this.moduleKey = moduleKey;
+    }
+
+    long start()
+    {
+        return System.nanoTime();
+    }
+
+    void stop(final Phase phase, final long start)
+    {
+        phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    void increment(final Counter counter)
+    {
+        counters[counter.ordinal()]++;
+    }
+
+    void add(final Counter counter, final long value)
+    {
+        counters[counter.ordinal()] += value;
+    }
+
+    void finish()
+    {
+        totalNanos = System.nanoTime() - startNanos;
+    }
+
+    long getNanos(final Phase phase)
+    {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    long getCount(final Counter counter)
+    {
+        return counters[counter.ordinal()];
+    }
+
+    long getTotalNanos()
+    {
+        return totalNanos >= 0 ? totalNanos : System.nanoTime() - startNanos;
+    }
+
+    private static long toMillis(final long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    String createSummary()
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("Import profile of '").append(moduleKey).append("': total ").append(toMillis(getTotalNanos())).append(" ms");
+        for (final Phase nextPhase : Phase.values())
+        {
+            builder.append(", ").append(nextPhase.getKey()).append(" ").append(toMillis(getNanos(nextPhase))).append(" ms");
+        }
+        for (final Counter nextCounter : Counter.values())
+        {
+            builder.append(", ").append(nextCounter.getKey()).append(" ").append(getCount(nextCounter));
+        }
+        return builder.toString();
+    }
+
+    void writeJson(final Writer writer)
+    {
+        final JsonWriter json = JsonWriter.of(writer);
+        json.beginObject();
+        json.prop("module", moduleKey);
+        json.prop("totalMs", toMillis(getTotalNanos()));
+        json.name("phasesMs").beginObject();
+        for (final Phase nextPhase : Phase.values())
+        {
+            json.prop(nextPhase.getKey(), toMillis(getNanos(nextPhase)));
+        }
+        json.endObject();
+        json.name("counters").beginObject();
+        for (final Counter nextCounter : Counter.values())
+        {
+            json.prop(nextCounter.getKey(), getCount(nextCounter));
+        }
+        json.endObject();
+        json.endObject();
+        json.close();
+    }
+
+    File writeJson(final File directory) throws IOException
+    {
+        Files.createDirectories(directory.toPath());
+        final File file = new File(directory, JSON_FILE_NAME);
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8))
+        {
+            writeJson(writer);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+//Chooses how the XML reports of a module are loaded: all of them in parallel before processing (fastest), or one after the other, each one
+//processed and released before the next one is loaded (lowest peak heap). The heap needed by a loaded report is estimated from its size.
+final class SonargraphImportStrategy
+{
+    enum Mode
+    {
+        PARALLEL,
+        SEQUENTIAL;
+
+        String getKey()
+        {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    static final String AUTO = "auto";
+    //Measured with generated reports: the loaded system retains 1.5 to 4 times the report size, parsing needs more
+    static final long HEAP_BYTES_PER_REPORT_BYTE = 6;
+    //Part of the free heap the loaded reports may use, the rest is left to the scanner and to the import itself
+    static final int USABLE_HEAP_PERCENT = 50;
+    private static final long MB = 1024 * 1024;
+
+    private final Mode mode;
+    private final String reason;
+    private final boolean heapExceeded;
+
+    private SonargraphImportStrategy(final Mode mode, final String reason, final boolean heapExceeded)
+    {
+        this.mode = mode;
+        this.reason = reason;
+        this.heapExceeded = heapExceeded;
+    }
+
+    Mode getMode()
+    {
+        return mode;
+    }
+
+    String getReason()
+    {
+        return reason;
+    }
+
+    //The largest report alone is estimated to need more than the usable heap
+    boolean isHeapExceeded()
+    {
+        return heapExceeded;
+    }
+
+    static long getAvailableHeap()
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    static long estimateHeap(final File reportFile)
+    {
+        return reportFile.length() * HEAP_BYTES_PER_REPORT_BYTE;
+    }
+
+    //Number of modules and root directories of the report, -1 if the header cannot be read
+    private static int countWorkspaceElements(final File reportFile)
+    {
+        try
+        {
+            return SonargraphReportHeader.read(reportFile).getModuleRootDirectories().values().stream().mapToInt(r -> 1 + r.size()).sum();
+        }
+        catch (final IOException e)
+        {
+            return -1;
+        }
+    }
+
+    static SonargraphImportStrategy select(final String configured, final List<File> reportFiles, final long availableHeap)
+    {
+        final String key = configured != null ? configured.trim().toLowerCase(Locale.ENGLISH) : AUTO;
+        for (final Mode nextMode : Mode.values())
+        {
+            if (nextMode.getKey().equals(key))
+            {
+                return new SonargraphImportStrategy(nextMode, "configured", false);
+            }
+        }
+
+        long reportBytes = 0;
+        long totalEstimate = 0;
+        long maxEstimate = 0;
+        int workspaceElements = 0;
+        for (final File nextReportFile : reportFiles)
+        {
+            reportBytes += nextReportFile.length();
+            final long nextEstimate = estimateHeap(nextReportFile);
+            totalEstimate += nextEstimate;
+            maxEstimate = Math.max(maxEstimate, nextEstimate);
+            workspaceElements += Math.max(0, countWorkspaceElements(nextReportFile));
+        }
+
+        final long usableHeap = availableHeap / 100 * USABLE_HEAP_PERCENT;
+        final StringBuilder reason = new StringBuilder();
+        if (!AUTO.equals(key))
+        {
+            reason.append("unknown strategy '").append(configured).append("', ");
+        }
+        reason.append(reportFiles.size()).append(" report(s) with ").append(reportBytes / MB).append(" MB and ").append(workspaceElements)
+                .append(" module(s)/root directory(ies), estimated heap ").append(totalEstimate / MB).append(" MB, usable heap ")
+                .append(usableHeap / MB).append(" MB");
+        final Mode mode = reportFiles.size() > 1 && totalEstimate > usableHeap ? Mode.SEQUENTIAL : Mode.PARALLEL;
+        return new SonargraphImportStrategy(mode, reason.toString(), maxEstimate > usableHeap);
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.measures.Metric;
+
+import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphPrecompiledMetaData.IssueTypeInfo;
+
+//Counts of the Sonargraph issues per component by issue category and by severity. They are gathered while the issues are classified, also for
+//issues whose rule is not active, and saved as measures. Each component has an int array with one slot per built-in issue category followed by
+//one slot per severity. The module counts are the sum of its source files and directories and the module level issues, for the project also
+//of the system level issues.
+final class SonargraphIssueCounts
+{
+    interface IMeasureConsumer
+    {
+        void accept(InputComponent component, Metric<Serializable> metric, int value);
+    }
+
+    private static final List<Severity> SEVERITIES = Collections.unmodifiableList(Arrays.asList(Severity.ERROR, Severity.WARNING, Severity.INFO));
+    private static final Map<String, Integer> CATEGORY_SLOTS;
+    private static final List<Metric<Serializable>> METRICS;
+
+    static
+    {
+        final Map<String, String> categories = new TreeMap<>();
+        for (final IssueTypeInfo nextIssueType : SonargraphPrecompiledMetaData.getBuiltIn().getIssueTypes())
+        {
+            if (!SonargraphBase.ignoreIssueCategory(nextIssueType.getCategoryName()))
+            {
+                categories.put(nextIssueType.getCategoryName(), nextIssueType.getCategoryPresentationName());
+            }
+        }
+
+        final Map<String, Integer> categorySlots = new HashMap<>();
+        final List<Metric<Serializable>> metrics = new ArrayList<>(categories.size() + SEVERITIES.size());
+        for (final Entry<String, String> nextCategory : categories.entrySet())
+        {
+            categorySlots.put(nextCategory.getKey(), Integer.valueOf(metrics.size()));
+            metrics.add(createMetric(Utility.convertMixedCaseStringToConstantName(nextCategory.getKey()), nextCategory.getValue(),
+                    "of category '" + nextCategory.getValue() + "'"));
+        }
+        for (final Severity nextSeverity : SEVERITIES)
+        {
+            metrics.add(createMetric("SEVERITY_" + nextSeverity.name(), nextSeverity.getPresentationName(),
+                    "with severity '" + nextSeverity.getPresentationName() + "'"));
+        }
+        CATEGORY_SLOTS = Collections.unmodifiableMap(categorySlots);
+        METRICS = Collections.unmodifiableList(metrics);
+    }
+
+    private final Map<InputComponent, int[]> componentCounts = new LinkedHashMap<>();
+    private final int[] moduleCounts = new int[METRICS.size()];
+    private boolean hasModule;
+
+    SonargraphIssueCounts()
+    {
+        super();
+    }
+
+    private static Metric<Serializable> createMetric(final String keySuffix, final String presentationName, final String description)
+    {
+        return new Metric.Builder(SonargraphBase.METRIC_ID_PREFIX + "ISSUES_" + keySuffix, "Issues (" + presentationName + ")", Metric.ValueType.INT)
+                .setDescription("Number of Sonargraph issues " + description).setDomain(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME)
+                .setDirection(Metric.DIRECTION_WORST).setQualitative(Boolean.FALSE).setBestValue(Double.valueOf(0.0)).create();
+    }
+
+    static List<Metric<Serializable>> getMetrics()
+    {
+        return METRICS;
+    }
+
+    //The module counts are only saved if the module has been matched to a Sonargraph module or is the project
+    void setHasModule()
+    {
+        hasModule = true;
+    }
+
+    //'component' is null for module and system level issues
+    void add(final InputComponent component, final IIssueType issueType)
+    {
+        final Integer categorySlot = CATEGORY_SLOTS.get(issueType.getCategory().getName());
+        final int severity = SEVERITIES.indexOf(issueType.getSeverity());
+        final int severitySlot = severity >= 0 ? CATEGORY_SLOTS.size() + severity : -1;
+        increment(moduleCounts, categorySlot, severitySlot);
+        if (component != null)
+        {
+            increment(componentCounts.computeIfAbsent(component, k -> new int[METRICS.size()]), categorySlot, severitySlot);
+        }
+    }
+
+    private static void increment(final int[] counts, final Integer categorySlot, final int severitySlot)
+    {
+        if (categorySlot != null)
+        {
+            counts[categorySlot.intValue()]++;
+        }
+        if (severitySlot >= 0)
+        {
+            counts[severitySlot]++;
+        }
+    }
+
+    int getCount(final InputComponent component, final Metric<Serializable> metric)
+    {
+        final int[] counts = componentCounts.get(component);
+        return counts != null ? counts[METRICS.indexOf(metric)] : 0;
+    }
+
+    int getModuleCount(final Metric<Serializable> metric)
+    {
+        return moduleCounts[METRICS.indexOf(metric)];
+    }
+
+    //Source files and directories get a measure per non-zero count, the module gets all of them
+    void forEachMeasure(final InputComponent module, final IMeasureConsumer consumer)
+    {
+        for (final Entry<InputComponent, int[]> nextEntry : componentCounts.entrySet())
+        {
+            final int[] nextCounts = nextEntry.getValue();
+            for (int i = 0; i < nextCounts.length; i++)
+            {
+                if (nextCounts[i] > 0)
+                {
+                    consumer.accept(nextEntry.getKey(), METRICS.get(i), nextCounts[i]);
+                }
+            }
+        }
+        if (hasModule)
+        {
+            for (int i = 0; i < moduleCounts.length; i++)
+            {
+                consumer.accept(module, METRICS.get(i), moduleCounts[i]);
+            }
+        }
+    }
+}
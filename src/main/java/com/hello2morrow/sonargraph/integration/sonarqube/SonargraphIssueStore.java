@@ -0,0 +1,286 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.rules.ActiveRule;
+
+//Flat store of the classified source file and directory issues of a module, emission iterates it instead of the report object graph.
+//Issues are records in parallel int arrays, strings, rules and components are held once in side tables and referenced by index.
+//The records of an element (source file or directory) are contiguous and emitted in line order.
+final class SonargraphIssueStore
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringToIndex = new HashMap<>();
+    private final List<ActiveRule> rules = new ArrayList<>();
+    private final Map<ActiveRule, Integer> ruleToIndex = new IdentityHashMap<>();
+    private final List<InputComponent> components = new ArrayList<>();
+    private final List<int[]> secondaryLines = new ArrayList<>();
+
+    private int elements;
+    private int[] elementName = new int[INITIAL_CAPACITY];
+    private int[] elementFirstRecord = new int[INITIAL_CAPACITY];
+    private int[] elementRecordCount = new int[INITIAL_CAPACITY];
+    private int[] elementIssueCount = new int[INITIAL_CAPACITY];
+    private boolean[] elementIsDirectory = new boolean[INITIAL_CAPACITY];
+
+    private int records;
+    private int[] recordType = new int[INITIAL_CAPACITY];
+    private int[] recordRule = new int[INITIAL_CAPACITY];
+    private int[] recordLine = new int[INITIAL_CAPACITY];
+    private int[] recordBlockSize = new int[INITIAL_CAPACITY];
+    private int[] recordResolution = new int[INITIAL_CAPACITY];
+    private int[] recordName = new int[INITIAL_CAPACITY];
+    private int[] recordDescription = new int[INITIAL_CAPACITY];
+    private int[] recordProvider = new int[INITIAL_CAPACITY];
+    private int[] recordDetail = new int[INITIAL_CAPACITY];
+    private int[] recordSecondaryLines = new int[INITIAL_CAPACITY];
+
+    SonargraphIssueStore()
+    {
+        super();
+    }
+
+    private int intern(final String string)
+    {
+        if (string == null)
+        {
+            return -1;
+        }
+        final Integer index = stringToIndex.get(string);
+        if (index != null)
+        {
+            return index.intValue();
+        }
+        strings.add(string);
+        stringToIndex.put(string, Integer.valueOf(strings.size() - 1));
+        return strings.size() - 1;
+    }
+
+    private int getRuleIndex(final ActiveRule rule)
+    {
+        final Integer index = ruleToIndex.get(rule);
+        if (index != null)
+        {
+            return index.intValue();
+        }
+        rules.add(rule);
+        ruleToIndex.put(rule, Integer.valueOf(rules.size() - 1));
+        return rules.size() - 1;
+    }
+
+    //Adds an element, the following records belong to it. 'issues' is the number of report issues of the element.
+    int addElement(final InputComponent component, final String name, final boolean isDirectory, final int issues)
+    {
+        if (elements == elementName.length)
+        {
+            final int capacity = elements * 2;
+            elementName = Arrays.copyOf(elementName, capacity);
+            elementFirstRecord = Arrays.copyOf(elementFirstRecord, capacity);
+            elementRecordCount = Arrays.copyOf(elementRecordCount, capacity);
+            elementIssueCount = Arrays.copyOf(elementIssueCount, capacity);
+            elementIsDirectory = Arrays.copyOf(elementIsDirectory, capacity);
+        }
+        components.add(component);
+        elementName[elements] = intern(name);
+        elementFirstRecord[elements] = records;
+        elementRecordCount[elements] = 0;
+        elementIssueCount[elements] = issues;
+        elementIsDirectory[elements] = isDirectory;
+        return elements++;
+    }
+
+    //Adds a record to the last added element. 'blockSize' is < 0 for issues on a single line, 'detail' may be null.
+    void addRecord(final String issueType, final ActiveRule rule, final int line, final int blockSize, final int resolution, final String name,
+            final String description, final String provider, final String detail)
+    {
+        addRecord(issueType, rule, line, blockSize, resolution, name, description, provider, detail, null);
+    }
+
+    //As above, 'secondary' are the lines of further locations of the issue (e.g. collapsed violations) and may be null
+    void addRecord(final String issueType, final ActiveRule rule, final int line, final int blockSize, final int resolution, final String name,
+            final String description, final String provider, final String detail, final int[] secondary)
+    {
+        assert elements > 0 : "No element added";
+        if (records == recordType.length)
+        {
+            final int capacity = records * 2;
+            recordType = Arrays.copyOf(recordType, capacity);
+            recordRule = Arrays.copyOf(recordRule, capacity);
+            recordLine = Arrays.copyOf(recordLine, capacity);
+            recordBlockSize = Arrays.copyOf(recordBlockSize, capacity);
+            recordResolution = Arrays.copyOf(recordResolution, capacity);
+            recordName = Arrays.copyOf(recordName, capacity);
+            recordDescription = Arrays.copyOf(recordDescription, capacity);
+            recordProvider = Arrays.copyOf(recordProvider, capacity);
+            recordDetail = Arrays.copyOf(recordDetail, capacity);
+            recordSecondaryLines = Arrays.copyOf(recordSecondaryLines, capacity);
+        }
+        recordType[records] = intern(issueType);
+        recordRule[records] = getRuleIndex(rule);
+        recordLine[records] = line;
+        recordBlockSize[records] = blockSize;
+        recordResolution[records] = resolution;
+        recordName[records] = intern(name);
+        recordDescription[records] = intern(description);
+        recordProvider[records] = intern(provider);
+        recordDetail[records] = intern(detail);
+        if (secondary != null && secondary.length > 0)
+        {
+            secondaryLines.add(secondary);
+            recordSecondaryLines[records] = secondaryLines.size() - 1;
+        }
+        else
+        {
+            recordSecondaryLines[records] = -1;
+        }
+        records++;
+        elementRecordCount[elements - 1]++;
+    }
+
+    private String getString(final int index)
+    {
+        return index >= 0 ? strings.get(index) : null;
+    }
+
+    int getElementCount()
+    {
+        return elements;
+    }
+
+    InputComponent getComponent(final int element)
+    {
+        return components.get(element);
+    }
+
+    String getElementName(final int element)
+    {
+        return getString(elementName[element]);
+    }
+
+    boolean isDirectory(final int element)
+    {
+        return elementIsDirectory[element];
+    }
+
+    int getFirstRecord(final int element)
+    {
+        return elementFirstRecord[element];
+    }
+
+    int getRecordCount(final int element)
+    {
+        return elementRecordCount[element];
+    }
+
+    int getIssueCount(final int element)
+    {
+        return elementIssueCount[element];
+    }
+
+    //Records of the element ordered by line, records on the same line keep their order
+    int[] getRecordsByLine(final int element)
+    {
+        final int first = elementFirstRecord[element];
+        final int count = elementRecordCount[element];
+        final long[] lineAndOffset = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            lineAndOffset[i] = ((long) recordLine[first + i] << 32) | i;
+        }
+        Arrays.sort(lineAndOffset);
+
+        final int[] sorted = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            sorted[i] = first + (int) lineAndOffset[i];
+        }
+        return sorted;
+    }
+
+    int getRecordCount()
+    {
+        return records;
+    }
+
+    String getIssueType(final int record)
+    {
+        return getString(recordType[record]);
+    }
+
+    ActiveRule getRule(final int record)
+    {
+        return rules.get(recordRule[record]);
+    }
+
+    int getLine(final int record)
+    {
+        return recordLine[record];
+    }
+
+    int getBlockSize(final int record)
+    {
+        return recordBlockSize[record];
+    }
+
+    int getResolution(final int record)
+    {
+        return recordResolution[record];
+    }
+
+    String getName(final int record)
+    {
+        return getString(recordName[record]);
+    }
+
+    String getDescription(final int record)
+    {
+        return getString(recordDescription[record]);
+    }
+
+    String getProvider(final int record)
+    {
+        return getString(recordProvider[record]);
+    }
+
+    String getDetail(final int record)
+    {
+        return getString(recordDetail[record]);
+    }
+
+    //Returns an empty array if the record has no secondary locations
+    int[] getSecondaryLines(final int record)
+    {
+        final int index = recordSecondaryLines[record];
+        return index >= 0 ? secondaryLines.get(index) : new int[0];
+    }
+
+    int getStringCount()
+    {
+        return strings.size();
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+//Java Flight Recorder event types, must only be accessed through 'SonargraphFlightRecorder' since 'jdk.jfr' might not be available.
+final class SonargraphJfrEvents
+{
+    private static final String NAME_PREFIX = "com.hello2morrow.sonargraph.integration.";
+    private static final String CATEGORY = "Sonargraph Integration";
+
+    @Name(NAME_PREFIX + "ReportLoad")
+    @Label("Report Load")
+    @Description("Loading of the Sonargraph XML report file")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class ReportLoadEvent extends Event
+    {
+        @Label("Report File")
+        String reportFile;
+
+        @Label("File Size")
+        @DataAmount
+        long fileSize;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name(NAME_PREFIX + "ModuleMatch")
+    @Label("Module Match")
+    @Description("Matching of a SonarQube module to a Sonargraph module")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class ModuleMatchEvent extends Event
+    {
+        @Label("Input Module Key")
+        String inputModuleKey;
+
+        @Label("Modules Examined")
+        int modulesExamined;
+
+        @Label("Candidates")
+        int candidates;
+
+        @Label("Matched Module")
+        String matchedModule;
+    }
+
+    @Name(NAME_PREFIX + "ModuleEmission")
+    @Label("Module Emission")
+    @Description("Creation of the issues and measures of a SonarQube module")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class ModuleEmissionEvent extends Event
+    {
+        @Label("Input Module Key")
+        String inputModuleKey;
+
+        @Label("Project")
+        boolean project;
+
+        @Label("Issues")
+        long issues;
+
+        @Label("Measures")
+        long measures;
+
+        @Label("Unresolved Paths")
+        long unresolvedPaths;
+    }
+
+    @Name(NAME_PREFIX + "CustomMetricsStore")
+    @Label("Custom Metrics Store")
+    @Description("Write of the custom metrics properties file")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class CustomMetricsStoreEvent extends Event
+    {
+        @Label("File")
+        String file;
+
+        @Label("Custom Metrics")
+        int customMetrics;
+
+        @Label("Success")
+        boolean success;
+    }
+
+    private SonargraphJfrEvents()
+    {
+        super();
+    }
+
+    private static <T extends Event> T begin(final T event)
+    {
+        if (!event.isEnabled())
+        {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static Object beginReportLoad()
+    {
+        return begin(new ReportLoadEvent());
+    }
+
+    static void commitReportLoad(final Object event, final String reportFile, final long fileSize, final boolean success)
+    {
+        final ReportLoadEvent reportLoadEvent = (ReportLoadEvent) event;
+        reportLoadEvent.end();
+        if (reportLoadEvent.shouldCommit())
+        {
+            reportLoadEvent.reportFile = reportFile;
+            reportLoadEvent.fileSize = fileSize;
+            reportLoadEvent.success = success;
+            reportLoadEvent.commit();
+        }
+    }
+
+    static Object beginModuleMatch()
+    {
+        return begin(new ModuleMatchEvent());
+    }
+
+    static void commitModuleMatch(final Object event, final String inputModuleKey, final int modulesExamined, final int candidates,
+            final String matchedModule)
+    {
+        final ModuleMatchEvent moduleMatchEvent = (ModuleMatchEvent) event;
+        moduleMatchEvent.end();
+        if (moduleMatchEvent.shouldCommit())
+        {
+            moduleMatchEvent.inputModuleKey = inputModuleKey;
+            moduleMatchEvent.modulesExamined = modulesExamined;
+            moduleMatchEvent.candidates = candidates;
+            moduleMatchEvent.matchedModule = matchedModule;
+            moduleMatchEvent.commit();
+        }
+    }
+
+    static Object beginModuleEmission()
+    {
+        return begin(new ModuleEmissionEvent());
+    }
+
+    static void commitModuleEmission(final Object event, final String inputModuleKey, final boolean project, final long issues,
+            final long measures, final long unresolvedPaths)
+    {
+        final ModuleEmissionEvent moduleEmissionEvent = (ModuleEmissionEvent) event;
+        moduleEmissionEvent.end();
+        if (moduleEmissionEvent.shouldCommit())
+        {
+            moduleEmissionEvent.inputModuleKey = inputModuleKey;
+            moduleEmissionEvent.project = project;
+            moduleEmissionEvent.issues = issues;
+            moduleEmissionEvent.measures = measures;
+            moduleEmissionEvent.unresolvedPaths = unresolvedPaths;
+            moduleEmissionEvent.commit();
+        }
+    }
+
+    static Object beginCustomMetricsStore()
+    {
+        return begin(new CustomMetricsStoreEvent());
+    }
+
+    static void commitCustomMetricsStore(final Object event, final String file, final int customMetrics, final boolean success)
+    {
+        final CustomMetricsStoreEvent customMetricsStoreEvent = (CustomMetricsStoreEvent) event;
+        customMetricsStoreEvent.end();
+        if (customMetricsStoreEvent.shouldCommit())
+        {
+            customMetricsStoreEvent.file = file;
+            customMetricsStoreEvent.customMetrics = customMetrics;
+            customMetricsStoreEvent.success = success;
+            customMetricsStoreEvent.commit();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.DefaultTextPointer;
+import org.sonar.api.batch.fs.internal.DefaultTextRange;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphDiagnostics.Kind;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Counter;
+
+//Creates issue locations that are valid for the current content of the source files. A report that is slightly stale may reference
+//lines beyond the end of a file: a block reaching past the last line is clamped, a location starting beyond it is dropped.
+//The line counts are looked up once per file and execution.
+final class SonargraphLineTable
+{
+    private final Map<InputFile, Integer> lineCounts = new HashMap<>();
+    private final SonargraphImportProfile profile;
+    private final SonargraphDiagnostics diagnostics;
+
+    SonargraphLineTable(final SonargraphImportProfile profile, final SonargraphDiagnostics diagnostics)
+    {
+        this.profile = profile;
+        this.diagnostics = diagnostics;
+    }
+
+    //Returns a value <= 0 if the file carries no line information
+    int getLines(final InputFile inputFile)
+    {
+        return lineCounts.computeIfAbsent(inputFile, f -> Integer.valueOf(f.lines())).intValue();
+    }
+
+    TextRange createLineRange(final InputFile inputFile, final int line)
+    {
+        return createRange(inputFile, line, -1);
+    }
+
+    //A negative block size denotes a single line. Returns null if the location starts beyond the last line of the file.
+    TextRange createRange(final InputFile inputFile, final int line, final int blockSize)
+    {
+        final int startLine = line <= 0 ? 1 : line;
+        final int endLine = blockSize >= 0 ? startLine + blockSize : startLine;
+        final int lines = getLines(inputFile);
+        if (lines <= 0)
+        {
+            return new DefaultTextRange(new DefaultTextPointer(startLine, 0), new DefaultTextPointer(endLine, 1));
+        }
+
+        if (startLine > lines)
+        {
+            profile.increment(Counter.LOCATIONS_DROPPED);
+            diagnostics.add(Kind.OUT_OF_RANGE_LOCATION, "'" + inputFile.relativePath() + "' line " + startLine + " of " + lines + " dropped");
+            return null;
+        }
+
+        int endLineToUse = endLine;
+        if (endLine > lines)
+        {
+            profile.increment(Counter.LOCATIONS_CLAMPED);
+            diagnostics.add(Kind.OUT_OF_RANGE_LOCATION,
+                    "'" + inputFile.relativePath() + "' lines " + startLine + "-" + endLine + " of " + lines + " clamped");
+            endLineToUse = lines;
+        }
+
+        //An empty line has no offset 1
+        final int endOffset = Math.min(1, inputFile.selectLine(endLineToUse).end().lineOffset());
+        return new DefaultTextRange(new DefaultTextPointer(startLine, 0), new DefaultTextPointer(endLineToUse, endOffset));
+    }
+}
@@ -20,18 +20,14 @@ package com.hello2morrow.sonargraph.integration.sonarqube;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.Metrics;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
-import com.hello2morrow.sonargraph.integration.access.model.IExportMetaData;
-import com.hello2morrow.sonargraph.integration.access.model.IMetricId;
-import com.hello2morrow.sonargraph.integration.access.model.IMetricLevel;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphPrecompiledMetaData.MetricIdInfo;
 
 public final class SonargraphMetrics implements Metrics
 {
@@ -43,31 +39,20 @@ public final class SonargraphMetrics implements Metrics
         super();
     }
 
-    private void getMetricsForLevel(final IExportMetaData builtInMetaData, final IMetricLevel level, final Map<String, IMetricId> metricMap)
-    {
-        for (final IMetricId next : builtInMetaData.getMetricIdsForLevel(level))
-        {
-            if (!metricMap.containsKey(next.getName()))
-            {
-                metricMap.put(next.getName(), next);
-            }
-        }
-    }
-
     @SuppressWarnings("rawtypes")
     @Override
     public List<Metric> getMetrics()
     {
         if (metrics == null)
         {
-            final IExportMetaData builtInMetaData = SonargraphBase.readBuiltInMetaData();
-            final Map<String, IMetricId> predefinedMetrics = new HashMap<>();
-            getMetricsForLevel(builtInMetaData, builtInMetaData.getMetricLevels().get(IMetricLevel.SYSTEM), predefinedMetrics);
-            getMetricsForLevel(builtInMetaData, builtInMetaData.getMetricLevels().get(IMetricLevel.MODULE), predefinedMetrics);
+            final List<MetricIdInfo> predefinedMetrics = SonargraphPrecompiledMetaData.getBuiltIn().getMetricIds();
             final List<Metric<Serializable>> customMetrics = SonargraphBase.getCustomMetrics();
-            metrics = new ArrayList<>(predefinedMetrics.size() + customMetrics.size());
-            predefinedMetrics.values().forEach(i -> metrics.add(SonargraphBase.createMetric(i)));
+            final List<Metric<Serializable>> pluginMetrics = SonargraphBase.getPluginMetrics();
+            metrics = new ArrayList<>(predefinedMetrics.size() + customMetrics.size() + pluginMetrics.size());
+            predefinedMetrics.forEach(i -> metrics.add(SonargraphBase.createMetric(i.getName(), i.getPresentationName(), i.isFloat(),
+                    i.getDescription(), i.getBestValue(), i.getWorstValue())));
             customMetrics.forEach(c -> metrics.add(c));
+            metrics.addAll(pluginMetrics);
 
             LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Created " + predefinedMetrics.size() + " predefined and "
                     + customMetrics.size() + " custom metric(s)");
@@ -20,14 +20,89 @@ package com.hello2morrow.sonargraph.integration.sonarqube;
 import org.sonar.api.Plugin;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
+import org.sonar.api.PropertyType;
 
 @Properties({
-        @Property(key = SonargraphBase.XML_REPORT_FILE_PATH_KEY, defaultValue = SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT, name = "XML report file path", project = true, module = false, global = false, description = ""
+        @Property(key = SonargraphBase.XML_REPORT_FILE_PATH_KEY, defaultValue = SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT, name = "XML report file path", multiValues = true, project = true, module = false, global = false, description = ""
                 + "The Sonargraph integration reads the XML report file and adds the issues and metrics to the corresponding elements."
                 + " Per default the XML report file is expected under each module (project and sub-modules) at the relative path '"
                 + SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT + "'."
                 + " It is also possible to use an absolute path, in that case you need to provide the XML report file only at 1 location."
-                + " In both cases make sure that the xml report file is there before running the SonarQube analysis scan.") })
+                + " In both cases make sure that the xml report file is there before running the SonarQube analysis scan."
+                + " Several XML report files (one per Sonargraph system) can be given as list, paths may be globs (e.g. 'target/sonargraph/*.xml')."
+                + " The reports are loaded in parallel. Metrics already created on a component from a previous report in the list are stored"
+                + " as custom metrics of their Sonargraph system."),
+        @Property(key = SonargraphBase.IMPORT_PROFILE_KEY, defaultValue = "false", name = "Write import profile", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "The Sonargraph integration always logs a summary of the time spent per import phase and of the number of processed issues and metrics."
+                + " If enabled the summary is additionally written as JSON file '" + SonargraphImportProfile.JSON_FILE_NAME
+                + "' into the work directory of each module."),
+        @Property(key = SonargraphBase.REPORT_CACHE_KEY, defaultValue = "false", name = "Cache loaded reports", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled the loaded XML report is stored in a compact binary form, keyed by a hash of the XML report content."
+                + " Subsequent scans using an unchanged XML report load the binary form instead of parsing the XML report again."),
+        @Property(key = SonargraphBase.REPORT_CACHE_DIRECTORY_KEY, defaultValue = "", name = "Report cache directory", project = true, module = false, global = false, description = ""
+                + "Directory of the report cache. Per default the directory '" + SonargraphBase.REPORT_CACHE_DIRECTORY_DEFAULT
+                + "' in the work directory of each module is used. Configure a directory outside of the work directory to share the cache between scans."
+                + " A shared directory must only be writable by trusted builds, the entries it contains are imported as they are."),
+        @Property(key = SonargraphBase.REPORT_CACHE_MAX_SIZE_KEY, defaultValue = "" + SonargraphBase.REPORT_CACHE_MAX_SIZE_DEFAULT, name = "Report cache size (MB)", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "Maximum size of the report cache in megabytes, the least recently used entries are removed if it is exceeded."),
+        @Property(key = SonargraphBase.EMISSION_PLAN_KEY, defaultValue = "false", name = "Replay unchanged imports", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled the issues and measures created for a module are recorded in the file '" + SonargraphEmissionPlan.FILE_NAME
+                + "' in its work directory. As long as the XML report, the active rules, the metrics and the analyzed files are unchanged"
+                + " subsequent scans replay the recorded issues and measures without processing the XML report."),
+        @Property(key = SonargraphBase.COMPACT_MESSAGES_KEY, defaultValue = "false", name = "Compact issue messages", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled issue messages leave out what is already given by the rule (issue name and provider), resolutions are reduced to their"
+                + " type and assignee and duplicate code blocks reference other occurrences by short paths."),
+        @Property(key = SonargraphBase.MESSAGE_MAX_LENGTH_KEY, defaultValue = "" + SonargraphBase.MESSAGE_MAX_LENGTH_DEFAULT, name = "Compact issue message length", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "Maximum length of compact issue messages, longer messages are abbreviated."),
+        @Property(key = SonargraphBase.ISSUE_COUNTS_KEY, defaultValue = "false", name = "Issue count measures", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled the Sonargraph issues are counted per issue category and severity while they are classified and the counts are saved as"
+                + " measures of the source files, directories and modules. Issues of inactive rules are counted as well, so rules can be deactivated"
+                + " to reduce the number of issues while still seeing the numbers."),
+        @Property(key = SonargraphBase.COLLAPSE_VIOLATIONS_KEY, defaultValue = "false", name = "Collapse violations", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled the violating dependencies (e.g. architecture violations) of a source file with the same issue type and target element are"
+                + " imported as a single issue on the first line. Its message names the number of violations and their first lines, all further lines"
+                + " are secondary locations of the issue."),
+        @Property(key = SonargraphBase.COLLAPSE_VIOLATIONS_MAX_LINES_KEY, defaultValue = "" + SonargraphBase.COLLAPSE_VIOLATIONS_MAX_LINES_DEFAULT, name = "Collapsed violation lines in message", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "Number of lines listed in the message of collapsed violations."),
+        @Property(key = SonargraphBase.EXCLUDED_MODULES_KEY, defaultValue = "", name = "Excluded Sonargraph modules", multiValues = true, project = true, module = false, global = false, description = ""
+                + "Names of Sonargraph modules whose issues and metrics are not imported. Patterns are globs (e.g. '*-generated') unless prefixed with '"
+                + SonargraphImportFilter.REGEX_PREFIX + "'."),
+        @Property(key = SonargraphBase.INCLUDED_PATHS_KEY, defaultValue = "", name = "Included source paths", multiValues = true, project = true, module = false, global = false, description = ""
+                + "If set only issues of source files and directories matching one of the patterns are imported. Paths are relative to the Sonargraph"
+                + " system base directory (e.g. 'src/main/java/**'). Patterns are globs unless prefixed with '" + SonargraphImportFilter.REGEX_PREFIX + "'."),
+        @Property(key = SonargraphBase.EXCLUDED_PATHS_KEY, defaultValue = "", name = "Excluded source paths", multiValues = true, project = true, module = false, global = false, description = ""
+                + "Issues of source files and directories matching one of the patterns are not imported (e.g. '**/generated/**'). Paths are relative to the"
+                + " Sonargraph system base directory. Patterns are globs unless prefixed with '" + SonargraphImportFilter.REGEX_PREFIX + "'."),
+        @Property(key = SonargraphBase.EXCLUDED_ISSUE_TYPES_KEY, defaultValue = "", name = "Excluded issue types", multiValues = true, project = true, module = false, global = false, description = ""
+                + "Names of Sonargraph issue types that are not imported (e.g. 'DuplicateCodeBlock', 'Threshold*'). Patterns are globs unless prefixed with '"
+                + SonargraphImportFilter.REGEX_PREFIX + "'."),
+        @Property(key = SonargraphBase.IMPORT_TIME_BUDGET_KEY, defaultValue = "0", name = "Import time budget (ms)", type = PropertyType.LONG, project = true, module = false, global = false, description = ""
+                + "Maximum time in milliseconds the import of a module may take, 0 for no limit. System and module level data and the most severe"
+                + " issues are imported first. If the budget is exhausted the import stops, logs a warning and records the imported percentage in the"
+                + " measure 'Import Completeness'."),
+        @Property(key = SonargraphBase.DIAGNOSTICS_MAX_EXAMPLES_KEY, defaultValue = "" + SonargraphBase.DIAGNOSTICS_MAX_EXAMPLES_DEFAULT, name = "Logged diagnostic examples", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "Problems found during the import (e.g. source files of the XML report that are not part of the analyzed files) are logged once per kind"
+                + " with their count and this number of examples."),
+        @Property(key = SonargraphBase.DIAGNOSTICS_DUMP_KEY, defaultValue = "false", name = "Write all diagnostics", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled all problems found during the import are written to the file '" + SonargraphDiagnostics.DUMP_FILE_NAME
+                + "' in the work directory of each module."),
+        @Property(key = SonargraphBase.DRY_RUN_KEY, defaultValue = "false", name = "Dry run", type = PropertyType.BOOLEAN, project = true, module = false, global = false, description = ""
+                + "If enabled the XML report is processed as usual, but no issues and measures are saved. Instead the number of issues and measures that"
+                + " would be saved per rule, metric and component, the size of the issue messages, the time per import phase and the peak heap are logged"
+                + " and written to the file '" + SonargraphDryRun.JSON_FILE_NAME + "' in the work directory of each module."),
+        @Property(key = SonargraphBase.IMPORT_STRATEGY_KEY, defaultValue = SonargraphImportStrategy.AUTO, name = "Import strategy", type = PropertyType.SINGLE_SELECT_LIST, options = { SonargraphImportStrategy.AUTO, "parallel", "sequential" }, project = true, module = false, global = false, description = ""
+                + "How several XML report files are loaded: 'parallel' loads all of them concurrently before they are processed, 'sequential' loads"
+                + " each one right before it is processed and releases it afterwards, which needs less heap. 'auto' chooses 'sequential' if the heap"
+                + " estimated from the report sizes exceeds " + SonargraphImportStrategy.USABLE_HEAP_PERCENT + "% of the free heap."),
+        @Property(key = SonargraphBase.QUALITY_GATE_MAX_ARCHITECTURE_VIOLATIONS_KEY, defaultValue = "", name = "Quality gate: maximum architecture violations", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "If set the scan fails right after the XML report is loaded if the Sonargraph system has more non-ignored architecture violations."
+                + " The check runs in the scanner, before the analysis report is uploaded and processed by the server. A dry run only logs the failure."),
+        @Property(key = SonargraphBase.QUALITY_GATE_MAX_THRESHOLD_VIOLATIONS_KEY, defaultValue = "", name = "Quality gate: maximum threshold violations", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "If set the scan fails right after the XML report is loaded if the Sonargraph system has more non-ignored threshold violations."),
+        @Property(key = SonargraphBase.QUALITY_GATE_MAX_CYCLE_GROUP_SIZE_KEY, defaultValue = "", name = "Quality gate: maximum cycle group size", type = PropertyType.INTEGER, project = true, module = false, global = false, description = ""
+                + "If set the scan fails right after the XML report is loaded if a non-ignored cycle group of the Sonargraph system has more elements."),
+        @Property(key = SonargraphBase.QUALITY_GATE_MAX_ACD_KEY, defaultValue = "", name = "Quality gate: maximum ACD", type = PropertyType.FLOAT, project = true, module = false, global = false, description = ""
+                + "If set the scan fails right after the XML report is loaded if the average component dependency (ACD) of the Sonargraph system is higher.") })
 public final class SonargraphPlugin implements Plugin
 {
     public SonargraphPlugin()
@@ -0,0 +1,400 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import com.hello2morrow.sonargraph.integration.access.model.IExportMetaData;
+import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.access.model.IMetricId;
+import com.hello2morrow.sonargraph.integration.access.model.IMetricLevel;
+import com.hello2morrow.sonargraph.integration.access.model.Severity;
+
+//Public only for the exec step of the build that runs 'main'
+public final class SonargraphPrecompiledMetaData
+{
+    //Created from the built-in 'ExportMetaData.xml' in the 'process-classes' phase of the build
+    static final String PRECOMPILED_META_DATA_RESOURCE_PATH = "/com/hello2morrow/sonargraph/integration/sonarqube/ExportMetaData.bin";
+
+    private static final Logger LOGGER = Loggers.get(SonargraphPrecompiledMetaData.class);
+    private static final int MAGIC = 0x53474D44;
+    private static final int VERSION = 2;
+
+    static final class IssueTypeInfo
+    {
+        private final String name;
+        private final String presentationName;
+        private final String description;
+        private final Severity severity;
+        private final String categoryName;
+        private final String categoryPresentationName;
+
+        IssueTypeInfo(final String name, final String presentationName, final String description, final Severity severity,
+                final String categoryName, final String categoryPresentationName)
+        {
+            this.name = name;
+            this.presentationName = presentationName;
+            this.description = description;
+            this.severity = severity;
+            this.categoryName = categoryName;
+            this.categoryPresentationName = categoryPresentationName;
+        }
+
+        String getName()
+        {
+            return name;
+        }
+
+        String getPresentationName()
+        {
+            return presentationName;
+        }
+
+        String getDescription()
+        {
+            return description;
+        }
+
+        Severity getSeverity()
+        {
+            return severity;
+        }
+
+        String getCategoryName()
+        {
+            return categoryName;
+        }
+
+        String getCategoryPresentationName()
+        {
+            return categoryPresentationName;
+        }
+    }
+
+    static final class MetricIdInfo
+    {
+        private final String name;
+        private final String presentationName;
+        private final String description;
+        private final boolean isFloat;
+        private final Double bestValue;
+        private final Double worstValue;
+
+        MetricIdInfo(final String name, final String presentationName, final String description, final boolean isFloat, final Double bestValue,
+                final Double worstValue)
+        {
+            this.name = name;
+            this.presentationName = presentationName;
+            this.description = description;
+            this.isFloat = isFloat;
+            this.bestValue = bestValue;
+            this.worstValue = worstValue;
+        }
+
+        String getName()
+        {
+            return name;
+        }
+
+        String getPresentationName()
+        {
+            return presentationName;
+        }
+
+        String getDescription()
+        {
+            return description;
+        }
+
+        boolean isFloat()
+        {
+            return isFloat;
+        }
+
+        Double getBestValue()
+        {
+            return bestValue;
+        }
+
+        Double getWorstValue()
+        {
+            return worstValue;
+        }
+    }
+
+    private static final class BuiltInHolder
+    {
+        private static final SonargraphPrecompiledMetaData INSTANCE = loadBuiltIn();
+
+        private BuiltInHolder()
+        {
+            super();
+        }
+    }
+
+    private final List<IssueTypeInfo> issueTypes;
+    private final List<MetricIdInfo> metricIds;
+    private final Map<String, String> issueTypeNameToRuleKey;
+    private final Set<String> ruleKeys;
+
+    SonargraphPrecompiledMetaData(final List<IssueTypeInfo> issueTypes, final List<MetricIdInfo> metricIds)
+    {
+        this.issueTypes = issueTypes;
+        this.metricIds = metricIds;
+
+        issueTypeNameToRuleKey = new HashMap<>(issueTypes.size() * 2);
+        issueTypes.forEach(i -> issueTypeNameToRuleKey.put(i.getName(), SonargraphBase.createRuleKey(i.getName())));
+        ruleKeys = new HashSet<>(issueTypeNameToRuleKey.values());
+    }
+
+    //Loaded once per JVM and shared by all extension points
+    static SonargraphPrecompiledMetaData getBuiltIn()
+    {
+        return BuiltInHolder.INSTANCE;
+    }
+
+    String getRuleKey(final String issueTypeName)
+    {
+        final String ruleKey = issueTypeNameToRuleKey.get(issueTypeName);
+        return ruleKey != null ? ruleKey : SonargraphBase.createRuleKey(issueTypeName);
+    }
+
+    boolean isRuleKeyDefined(final String ruleKey)
+    {
+        return ruleKeys.contains(ruleKey);
+    }
+
+    List<IssueTypeInfo> getIssueTypes()
+    {
+        return Collections.unmodifiableList(issueTypes);
+    }
+
+    List<MetricIdInfo> getMetricIds()
+    {
+        return Collections.unmodifiableList(metricIds);
+    }
+
+    private static void addMetricIdsForLevel(final IExportMetaData exportMetaData, final String levelName, final Map<String, MetricIdInfo> metricIds)
+    {
+        final IMetricLevel level = exportMetaData.getMetricLevels().get(levelName);
+        if (level == null)
+        {
+            return;
+        }
+
+        for (final IMetricId next : exportMetaData.getMetricIdsForLevel(level))
+        {
+            if (!metricIds.containsKey(next.getName()))
+            {
+                metricIds.put(next.getName(), new MetricIdInfo(next.getName(), next.getPresentationName(), next.getDescription(), next.isFloat(),
+                        next.getBestValue(), next.getWorstValue()));
+            }
+        }
+    }
+
+    static SonargraphPrecompiledMetaData create(final IExportMetaData exportMetaData)
+    {
+        final List<IssueTypeInfo> issueTypes = new ArrayList<>(exportMetaData.getIssueTypes().size());
+        for (final IIssueType next : exportMetaData.getIssueTypes().values())
+        {
+            issueTypes.add(new IssueTypeInfo(next.getName(), next.getPresentationName(), next.getDescription(), next.getSeverity(),
+                    next.getCategory().getName(), next.getCategory().getPresentationName()));
+        }
+
+        final Map<String, MetricIdInfo> metricIds = new LinkedHashMap<>();
+        addMetricIdsForLevel(exportMetaData, IMetricLevel.SYSTEM, metricIds);
+        addMetricIdsForLevel(exportMetaData, IMetricLevel.MODULE, metricIds);
+
+        return new SonargraphPrecompiledMetaData(issueTypes, new ArrayList<>(metricIds.values()));
+    }
+
+    private static String nonNull(final String input)
+    {
+        return input != null ? input : "";
+    }
+
+    //A presence flag followed by the value if present
+    private static void writeOptional(final DataOutputStream out, final Double value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            out.writeDouble(value.doubleValue());
+        }
+    }
+
+    private static Double readOptional(final DataInputStream in) throws IOException
+    {
+        return in.readBoolean() ? Double.valueOf(in.readDouble()) : null;
+    }
+
+    void write(final OutputStream outputStream) throws IOException
+    {
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        out.writeInt(issueTypes.size());
+        for (final IssueTypeInfo next : issueTypes)
+        {
+            out.writeUTF(next.getName());
+            out.writeUTF(next.getPresentationName());
+            out.writeUTF(nonNull(next.getDescription()));
+            out.writeUTF(next.getSeverity().name());
+            out.writeUTF(next.getCategoryName());
+            out.writeUTF(next.getCategoryPresentationName());
+        }
+
+        out.writeInt(metricIds.size());
+        for (final MetricIdInfo next : metricIds)
+        {
+            out.writeUTF(next.getName());
+            out.writeUTF(next.getPresentationName());
+            out.writeUTF(nonNull(next.getDescription()));
+            out.writeBoolean(next.isFloat());
+            writeOptional(out, next.getBestValue());
+            writeOptional(out, next.getWorstValue());
+        }
+
+        out.flush();
+    }
+
+    static SonargraphPrecompiledMetaData read(final InputStream inputStream) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            throw new IOException("Unsupported precompiled meta data format");
+        }
+
+        final int numberOfIssueTypes = in.readInt();
+        final List<IssueTypeInfo> issueTypes = new ArrayList<>(numberOfIssueTypes);
+        for (int i = 0; i < numberOfIssueTypes; i++)
+        {
+            issueTypes.add(new IssueTypeInfo(in.readUTF(), in.readUTF(), in.readUTF(), Severity.valueOf(in.readUTF()), in.readUTF(), in.readUTF()));
+        }
+
+        final int numberOfMetricIds = in.readInt();
+        final List<MetricIdInfo> metricIds = new ArrayList<>(numberOfMetricIds);
+        for (int i = 0; i < numberOfMetricIds; i++)
+        {
+            metricIds.add(new MetricIdInfo(in.readUTF(), in.readUTF(), in.readUTF(), in.readBoolean(), readOptional(in), readOptional(in)));
+        }
+
+        return new SonargraphPrecompiledMetaData(issueTypes, metricIds);
+    }
+
+    static SonargraphPrecompiledMetaData load()
+    {
+        try (InputStream inputStream = SonargraphPrecompiledMetaData.class.getResourceAsStream(PRECOMPILED_META_DATA_RESOURCE_PATH))
+        {
+            if (inputStream != null)
+            {
+                return read(inputStream);
+            }
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Precompiled meta data '" + PRECOMPILED_META_DATA_RESOURCE_PATH
+                    + "' not found - reading XML meta data");
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to read precompiled meta data '"
+                    + PRECOMPILED_META_DATA_RESOURCE_PATH + "' - reading XML meta data", e);
+        }
+
+        final IExportMetaData exportMetaData = SonargraphBase.readBuiltInMetaData();
+        if (exportMetaData == null)
+        {
+            return new SonargraphPrecompiledMetaData(Collections.emptyList(), Collections.emptyList());
+        }
+        return create(exportMetaData);
+    }
+
+    private static SonargraphPrecompiledMetaData loadBuiltIn()
+    {
+        final long start = System.nanoTime();
+        final SonargraphPrecompiledMetaData builtIn = load();
+        LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Loaded built-in meta data (" + builtIn.issueTypes.size()
+                + " issue type(s), " + builtIn.metricIds.size() + " metric id(s)) in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return builtIn;
+    }
+
+    //The access library parses the XML meta data with JAXB, which is no longer part of the JDK since Java 11
+    static boolean isJaxbAvailable()
+    {
+        try
+        {
+            Class.forName("javax.xml.bind.ValidationEventHandler", false, SonargraphPrecompiledMetaData.class.getClassLoader());
+            return true;
+        }
+        catch (final ClassNotFoundException e)
+        {
+            return false;
+        }
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            throw new IllegalArgumentException("Usage: " + SonargraphPrecompiledMetaData.class.getSimpleName() + " <output file>");
+        }
+        if (!isJaxbAvailable())
+        {
+            //The plugin must not ship without the precompiled meta data depending on the JDK it was built with
+            throw new IllegalStateException("JAXB not available - add it to the classpath to precompile the meta data");
+        }
+
+        final IExportMetaData exportMetaData = SonargraphBase.readBuiltInMetaData();
+        if (exportMetaData == null)
+        {
+            throw new IOException("Unable to read built-in meta data");
+        }
+
+        final SonargraphPrecompiledMetaData precompiled = create(exportMetaData);
+        final File outputFile = new File(args[0]);
+        outputFile.getParentFile().mkdirs();
+        try (FileOutputStream outputStream = new FileOutputStream(outputFile))
+        {
+            precompiled.write(outputStream);
+        }
+
+        LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Precompiled " + precompiled.issueTypes.size() + " issue type(s) and "
+                + precompiled.metricIds.size() + " metric id(s) into '" + outputFile.getAbsolutePath() + "'");
+    }
+}
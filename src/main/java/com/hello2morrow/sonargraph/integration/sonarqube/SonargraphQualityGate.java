@@ -0,0 +1,152 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+
+import org.sonar.api.config.Configuration;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.ICycleGroupIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IMetricValue;
+
+//Fail-fast conditions on the data of a Sonargraph system. They are checked in the scanner right after the XML report is loaded, so a violated
+//condition breaks the scan before the analysis report is uploaded and processed by the server.
+final class SonargraphQualityGate
+{
+    static final String ARCHITECTURE_VIOLATION = "ArchitectureViolation";
+    static final String ACD_METRIC = "CoreAcd";
+
+    enum Condition
+    {
+        ARCHITECTURE_VIOLATIONS(SonargraphBase.QUALITY_GATE_MAX_ARCHITECTURE_VIOLATIONS_KEY, "Architecture violations"),
+        THRESHOLD_VIOLATIONS(SonargraphBase.QUALITY_GATE_MAX_THRESHOLD_VIOLATIONS_KEY, "Threshold violations"),
+        BIGGEST_CYCLE_GROUP(SonargraphBase.QUALITY_GATE_MAX_CYCLE_GROUP_SIZE_KEY, "Biggest cycle group"),
+        ACD(SonargraphBase.QUALITY_GATE_MAX_ACD_KEY, "ACD");
+
+        private final String key;
+        private final String presentationName;
+
+        private Condition(final String key, final String presentationName)
+        {
+            this.key = key;
+            this.presentationName = presentationName;
+        }
+
+        String getKey()
+        {
+            return key;
+        }
+
+        String getPresentationName()
+        {
+            return presentationName;
+        }
+    }
+
+    private final Map<Condition, Double> maxValues;
+
+    SonargraphQualityGate(final Map<Condition, Double> maxValues)
+    {
+        this.maxValues = Collections.unmodifiableMap(new EnumMap<>(maxValues));
+    }
+
+    static SonargraphQualityGate create(final Configuration configuration)
+    {
+        final Map<Condition, Double> maxValues = new EnumMap<>(Condition.class);
+        for (final Condition nextCondition : Condition.values())
+        {
+            final Optional<Double> nextMaxValue = configuration.getDouble(nextCondition.getKey());
+            if (nextMaxValue.isPresent())
+            {
+                maxValues.put(nextCondition, nextMaxValue.get());
+            }
+        }
+        return new SonargraphQualityGate(maxValues);
+    }
+
+    boolean isEnabled()
+    {
+        return !maxValues.isEmpty();
+    }
+
+    //Conditions and maximum values as part of the emission plan key, a replayed plan has passed the same conditions
+    List<String> getKeyParts()
+    {
+        final List<String> keyParts = new ArrayList<>();
+        for (final Entry<Condition, Double> nextEntry : maxValues.entrySet())
+        {
+            keyParts.add(nextEntry.getKey().name() + "<=" + nextEntry.getValue());
+        }
+        return keyParts;
+    }
+
+    //Returns null if the value is not part of the report
+    static Double getValue(final Condition condition, final ISystemInfoProcessor systemInfoProcessor)
+    {
+        switch (condition)
+        {
+        case ARCHITECTURE_VIOLATIONS:
+            return Double.valueOf(systemInfoProcessor
+                    .getIssues(issue -> !issue.isIgnored() && ARCHITECTURE_VIOLATION.equals(issue.getIssueType().getName())).size());
+        case THRESHOLD_VIOLATIONS:
+            return Double.valueOf(systemInfoProcessor.getThresholdViolationIssues(issue -> !issue.isIgnored()).size());
+        case BIGGEST_CYCLE_GROUP:
+            int biggest = 0;
+            for (final ICycleGroupIssue nextCycleGroup : systemInfoProcessor.getCycleGroups(issue -> !issue.isIgnored()))
+            {
+                biggest = Math.max(biggest, nextCycleGroup.getAffectedNamedElements().size());
+            }
+            return Double.valueOf(biggest);
+        case ACD:
+            final Optional<IMetricValue> acd = systemInfoProcessor.getMetricValue(ACD_METRIC);
+            return acd.isPresent() ? Double.valueOf(acd.get().getValue().doubleValue()) : null;
+        default:
+            assert false : "Unhandled condition: " + condition;
+            return null;
+        }
+    }
+
+    //Returns a description of each violated condition, conditions whose value is not part of the report are skipped
+    List<String> check(final ISystemInfoProcessor systemInfoProcessor)
+    {
+        final List<String> failures = new ArrayList<>();
+        for (final Entry<Condition, Double> nextEntry : maxValues.entrySet())
+        {
+            final Condition nextCondition = nextEntry.getKey();
+            final Double nextValue = getValue(nextCondition, systemInfoProcessor);
+            if (nextValue != null && nextValue.doubleValue() > nextEntry.getValue().doubleValue())
+            {
+                failures.add(nextCondition.getPresentationName() + " " + format(nextValue.doubleValue()) + " exceeds the maximum of "
+                        + format(nextEntry.getValue().doubleValue()));
+            }
+        }
+        return failures;
+    }
+
+    private static String format(final double value)
+    {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
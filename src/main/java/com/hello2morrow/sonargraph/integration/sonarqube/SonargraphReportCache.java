@@ -0,0 +1,424 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+
+//Persistent cache of loaded Sonargraph systems, keyed by a hash of the XML report content and of the access library version.
+//An entry is the deflated Java serialization of the software system. Above the size cap the least recently used entries are evicted.
+//The access library offers no public API to load a deserialized system, so it is set into the private field of its controller. The entries
+//are therefore bound to the exact access library version (key and entry header), and the cache is bypassed if the version is unknown or
+//the controller field is missing.
+//Entries are only deserialized if they consist of allowed classes. Nonetheless a cache directory shared between scans must only be
+//writable by trusted builds, since the content of an entry is imported as is.
+final class SonargraphReportCache
+{
+    private static final Logger LOGGER = Loggers.get(SonargraphReportCache.class);
+    private static final int FORMAT_VERSION = 2;
+    private static final String ENTRY_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String CONTROLLER_SYSTEM_FIELD = "softwareSystem";
+    private static final String ACCESS_LIBRARY_POM_PROPERTIES = "/META-INF/maven/com.hello2morrow/sonargraph-integration-access/pom.properties";
+    private static final String ACCESS_MODEL_PACKAGE_PREFIX = "com.hello2morrow.sonargraph.integration.access.model.";
+    //The JDK classes the serialized model consists of - any other JDK class in an entry is rejected
+    private static final String ACCESS_LIBRARY_VERSION = determineAccessLibraryVersion();
+    private static final Set<String> ALLOWED_JDK_CLASSES = new HashSet<>(Arrays.asList("java.lang.Boolean", "java.lang.Byte",
+            "java.lang.Character", "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+            "java.lang.Number", "java.lang.Enum", "java.math.BigInteger", "java.math.BigDecimal", "java.util.ArrayList", "java.util.LinkedList",
+            "java.util.HashMap", "java.util.LinkedHashMap", "java.util.TreeMap", "java.util.EnumMap", "java.util.HashSet",
+            "java.util.LinkedHashSet", "java.util.TreeSet", "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap",
+            "java.util.Collections$EmptySet", "java.util.Collections$UnmodifiableCollection", "java.util.Collections$UnmodifiableList",
+            "java.util.Collections$UnmodifiableRandomAccessList", "java.util.Collections$UnmodifiableMap", "java.util.Collections$UnmodifiableSet",
+            "java.util.Collections$UnmodifiableSortedMap", "java.util.Collections$UnmodifiableSortedSet"));
+
+    //Some comparators used by sorted collections of the model are not serializable, they are recreated with their default constructor.
+    private static final class ComparatorReplacement implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+        private final String className;
+
+        ComparatorReplacement(final String className)
+        {
+            this.className = className;
+        }
+
+        Object create() throws IOException
+        {
+            if (!className.startsWith(ACCESS_MODEL_PACKAGE_PREFIX))
+            {
+                throw new InvalidClassException(className, "Not allowed as comparator in report cache entries");
+            }
+            try
+            {
+                final Constructor<?> constructor = Class.forName(className, false, SonargraphReportCache.class.getClassLoader())
+                        .getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor.newInstance();
+            }
+            catch (final ReflectiveOperationException e)
+            {
+                throw new IOException("Unable to create comparator '" + className + "'", e);
+            }
+        }
+    }
+
+    private static final class EntryOutputStream extends ObjectOutputStream
+    {
+        EntryOutputStream(final OutputStream out) throws IOException
+        {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(final Object obj)
+        {
+            if (obj instanceof Comparator && !(obj instanceof Serializable))
+            {
+                return new ComparatorReplacement(obj.getClass().getName());
+            }
+            return obj;
+        }
+    }
+
+    //Allowlist of the classes an entry may contain: the model of the access library, the exact JDK classes it uses and primitive arrays
+    static boolean isAllowed(final String className)
+    {
+        if (className.startsWith("["))
+        {
+            final String elementName = className.replaceFirst("^\\[+", "");
+            return elementName.length() == 1
+                    || (elementName.startsWith("L") && elementName.endsWith(";") && isAllowed(elementName.substring(1, elementName.length() - 1)));
+        }
+        return className.startsWith(ACCESS_MODEL_PACKAGE_PREFIX) || ALLOWED_JDK_CLASSES.contains(className)
+                || ComparatorReplacement.class.getName().equals(className);
+    }
+
+    private static final class EntryInputStream extends ObjectInputStream
+    {
+        EntryInputStream(final InputStream in) throws IOException
+        {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException
+        {
+            final String name = desc.getName();
+            if (!isAllowed(name))
+            {
+                throw new InvalidClassException(name, "Not allowed in report cache entries");
+            }
+            try
+            {
+                return Class.forName(name, false, SonargraphReportCache.class.getClassLoader());
+            }
+            catch (final ClassNotFoundException e)
+            {
+                return super.resolveClass(desc);
+            }
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException
+        {
+            throw new InvalidClassException("Proxy", "Not allowed in report cache entries");
+        }
+
+        @Override
+        protected Object resolveObject(final Object obj) throws IOException
+        {
+            if (obj instanceof ComparatorReplacement)
+            {
+                return ((ComparatorReplacement) obj).create();
+            }
+            return obj;
+        }
+    }
+
+    private final File directory;
+    private final long maxSize;
+    private final String accessLibraryVersion;
+
+    SonargraphReportCache(final File directory, final long maxSize)
+    {
+        this(directory, maxSize, ACCESS_LIBRARY_VERSION);
+    }
+
+    SonargraphReportCache(final File directory, final long maxSize, final String accessLibraryVersion)
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.accessLibraryVersion = accessLibraryVersion;
+    }
+
+    File getDirectory()
+    {
+        return directory;
+    }
+
+    //Null if unknown
+    private static String determineAccessLibraryVersion()
+    {
+        try (InputStream inputStream = ISonargraphSystemController.class.getResourceAsStream(ACCESS_LIBRARY_POM_PROPERTIES))
+        {
+            if (inputStream != null)
+            {
+                final Properties properties = new Properties();
+                properties.load(inputStream);
+                final String version = properties.getProperty("version");
+                if (version != null && !version.trim().isEmpty())
+                {
+                    return version.trim();
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            LOGGER.debug(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to determine access library version", e);
+        }
+        return ISonargraphSystemController.class.getPackage().getImplementationVersion();
+    }
+
+    static String getAccessLibraryVersion()
+    {
+        return ACCESS_LIBRARY_VERSION;
+    }
+
+    static String createKey(final File reportFile) throws IOException
+    {
+        return createKey(reportFile, ACCESS_LIBRARY_VERSION);
+    }
+
+    static String createKey(final File reportFile, final String accessLibraryVersion) throws IOException
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (final NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
+        }
+
+        digest.update((FORMAT_VERSION + ":" + accessLibraryVersion + ":").getBytes(StandardCharsets.UTF_8));
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(reportFile.toPath()), digest))
+        {
+            final byte[] buffer = new byte[64 * 1024];
+            while (inputStream.read(buffer) >= 0)
+            {
+                //Just digest
+            }
+        }
+
+        return SonargraphBase.toHexString(digest.digest());
+    }
+
+    private Field getControllerSystemField(final ISonargraphSystemController controller)
+    {
+        try
+        {
+            final Field field = controller.getClass().getDeclaredField(CONTROLLER_SYSTEM_FIELD);
+            if (ISoftwareSystem.class.isAssignableFrom(field.getType()) && !Modifier.isStatic(field.getModifiers())
+                    && !Modifier.isFinal(field.getModifiers()))
+            {
+                field.setAccessible(true);
+                return field;
+            }
+        }
+        catch (final NoSuchFieldException | RuntimeException e)
+        {
+            LOGGER.debug(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Controller field '" + CONTROLLER_SYSTEM_FIELD + "' not accessible",
+                    e);
+        }
+        LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Report cache not supported by controller '"
+                + controller.getClass().getName() + "' of access library version '" + accessLibraryVersion + "', loading XML report");
+        return null;
+    }
+
+    private boolean read(final ISonargraphSystemController controller, final Field field, final File entry)
+    {
+        try (ObjectInputStream in = new EntryInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(entry.toPath())))))
+        {
+            final String entryVersion = in.readUTF();
+            if (!accessLibraryVersion.equals(entryVersion))
+            {
+                throw new InvalidClassException(entryVersion, "Entry of other access library version");
+            }
+            final Object system = in.readObject();
+            if (!field.getType().isInstance(system))
+            {
+                throw new InvalidClassException(system.getClass().getName(), "Unexpected entry content");
+            }
+            field.set(controller, system);
+            return true;
+        }
+        catch (final IOException | ClassNotFoundException | IllegalAccessException | RuntimeException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to read report cache entry '" + entry.getAbsolutePath()
+                    + "': " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void write(final ISoftwareSystem system, final File entry)
+    {
+        final File tempFile = new File(directory, entry.getName() + "." + Thread.currentThread().getId() + "." + System.nanoTime() + TEMP_SUFFIX);
+        try
+        {
+            Files.createDirectories(directory.toPath());
+            try (ObjectOutputStream out = new EntryOutputStream(
+                    new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(tempFile.toPath()), new Deflater(Deflater.BEST_SPEED)))))
+            {
+                out.writeUTF(accessLibraryVersion);
+                out.writeObject(system);
+            }
+            Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Added report cache entry '" + entry.getAbsolutePath() + "' ("
+                    + entry.length() + " bytes)");
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to write report cache entry '" + entry.getAbsolutePath()
+                    + "': " + e.getMessage());
+        }
+        finally
+        {
+            if (tempFile.exists() && !tempFile.delete())
+            {
+                LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to delete '" + tempFile.getAbsolutePath() + "'");
+            }
+        }
+    }
+
+    void evict()
+    {
+        final File[] entries = directory.listFiles(f -> f.isFile() && f.getName().endsWith(ENTRY_SUFFIX));
+        if (entries == null)
+        {
+            return;
+        }
+
+        //Most recently used first
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified).reversed());
+        long size = 0;
+        for (final File nextEntry : entries)
+        {
+            final long nextLength = nextEntry.length();
+            if (size + nextLength > maxSize && nextEntry.delete())
+            {
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Evicted report cache entry '" + nextEntry.getAbsolutePath()
+                        + "'");
+            }
+            else
+            {
+                size += nextLength;
+            }
+        }
+    }
+
+    Result load(final ISonargraphSystemController controller, final File reportFile)
+    {
+        if (accessLibraryVersion == null)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Access library version unknown, report cache not used");
+            return controller.loadSystemReport(reportFile);
+        }
+
+        final Field field = getControllerSystemField(controller);
+        if (field == null)
+        {
+            return controller.loadSystemReport(reportFile);
+        }
+
+        final String key;
+        try
+        {
+            key = createKey(reportFile, accessLibraryVersion);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to hash XML report file '" + reportFile.getAbsolutePath()
+                    + "', report cache not used: " + e.getMessage());
+            return controller.loadSystemReport(reportFile);
+        }
+
+        final File entry = new File(directory, key + ENTRY_SUFFIX);
+        if (entry.isFile())
+        {
+            if (read(controller, field, entry))
+            {
+                if (!entry.setLastModified(System.currentTimeMillis()))
+                {
+                    LOGGER.debug(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to touch '" + entry.getAbsolutePath() + "'");
+                }
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Loaded system from report cache entry '" + entry.getAbsolutePath()
+                        + "'");
+                return new Result("Load system from report cache");
+            }
+            if (!entry.delete())
+            {
+                LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to delete '" + entry.getAbsolutePath() + "'");
+            }
+        }
+
+        final Result result = controller.loadSystemReport(reportFile);
+        if (result.isSuccess())
+        {
+            write(controller.getSoftwareSystem(), entry);
+            evict();
+        }
+        return result;
+    }
+}
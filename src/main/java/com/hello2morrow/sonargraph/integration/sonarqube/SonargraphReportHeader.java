@@ -0,0 +1,179 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
+
+//The report attributes and the workspace section (modules and their root directories) of a XML report.
+//Read with a streaming reader that stops after the workspace, so it is cheap compared to loading the report.
+final class SonargraphReportHeader
+{
+    private static final String REPORT = "report";
+    private static final String WORKSPACE = "workspace";
+    private static final String MODULE = "module";
+    private static final String ROOT_DIRECTORY = "rootDirectory";
+
+    private final String systemName;
+    private final String systemPath;
+    private final String version;
+    private final Map<String, List<String>> moduleRootDirectories;
+
+    private SonargraphReportHeader(final String systemName, final String systemPath, final String version,
+            final Map<String, List<String>> moduleRootDirectories)
+    {
+        this.systemName = systemName;
+        this.systemPath = systemPath;
+        this.version = version;
+        this.moduleRootDirectories = moduleRootDirectories;
+    }
+
+    String getSystemName()
+    {
+        return systemName;
+    }
+
+    String getSystemPath()
+    {
+        return systemPath;
+    }
+
+    String getVersion()
+    {
+        return version;
+    }
+
+    //Same as the base directory of the software system created when loading the report
+    String getBaseDir()
+    {
+        int index = systemPath.lastIndexOf('/');
+        if (index == -1)
+        {
+            index = systemPath.lastIndexOf('\\');
+        }
+        return Utility.convertPathToUniversalForm(index == -1 ? "" : systemPath.substring(0, index));
+    }
+
+    //Module name to the relative paths of its root directories
+    Map<String, List<String>> getModuleRootDirectories()
+    {
+        return Collections.unmodifiableMap(moduleRootDirectories);
+    }
+
+    private static String getAttribute(final XMLStreamReader reader, final String name)
+    {
+        final String value = reader.getAttributeValue(null, name);
+        return value != null ? value : "";
+    }
+
+    static SonargraphReportHeader read(final File reportFile) throws IOException
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(reportFile.toPath())))
+        {
+            final XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+            try
+            {
+                String systemName = null;
+                String systemPath = null;
+                String version = null;
+                final Map<String, List<String>> moduleRootDirectories = new LinkedHashMap<>();
+                List<String> currentRootDirectories = null;
+                int depth = 0;
+                int workspaceDepth = -1;
+
+                while (reader.hasNext())
+                {
+                    final int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT)
+                    {
+                        depth++;
+                        final String name = reader.getLocalName();
+                        if (depth == 1)
+                        {
+                            if (!REPORT.equals(name))
+                            {
+                                throw new IOException("Unexpected root element '" + name + "'");
+                            }
+                            systemName = getAttribute(reader, "name");
+                            systemPath = getAttribute(reader, "systemPath");
+                            version = getAttribute(reader, "version");
+                        }
+                        else if (depth == 2 && WORKSPACE.equals(name))
+                        {
+                            workspaceDepth = depth;
+                        }
+                        else if (workspaceDepth != -1 && depth == workspaceDepth + 1 && MODULE.equals(name))
+                        {
+                            currentRootDirectories = new ArrayList<>();
+                            moduleRootDirectories.put(getAttribute(reader, "name"), currentRootDirectories);
+                        }
+                        else if (currentRootDirectories != null && depth == workspaceDepth + 2 && ROOT_DIRECTORY.equals(name))
+                        {
+                            currentRootDirectories.add(getAttribute(reader, "presentationName"));
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT)
+                    {
+                        if (depth == workspaceDepth)
+                        {
+                            break;
+                        }
+                        if (workspaceDepth != -1 && depth == workspaceDepth + 1)
+                        {
+                            currentRootDirectories = null;
+                        }
+                        depth--;
+                    }
+                }
+
+                if (systemPath == null)
+                {
+                    throw new IOException("No report element found");
+                }
+                return new SonargraphReportHeader(systemName, systemPath, version, moduleRootDirectories);
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (final XMLStreamException e)
+        {
+            throw new IOException("Unable to read header of '" + reportFile.getAbsolutePath() + "'", e);
+        }
+    }
+}
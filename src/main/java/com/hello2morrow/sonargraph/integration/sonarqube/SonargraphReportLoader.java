@@ -0,0 +1,206 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+import com.hello2morrow.sonargraph.integration.access.foundation.ResultCause;
+
+//Expands the configured XML report paths (globs allowed) and loads the reports concurrently, each one with its own controller.
+//The pool is bounded by the number of processors, so loading several reports takes about as long as loading the largest one.
+final class SonargraphReportLoader
+{
+    static final class LoadedReport
+    {
+        private final File reportFile;
+        private final Result result;
+        private ISonargraphSystemController controller;
+
+        LoadedReport(final File reportFile, final ISonargraphSystemController controller, final Result result)
+        {
+            this.reportFile = reportFile;
+            this.controller = controller;
+            this.result = result;
+        }
+
+        File getReportFile()
+        {
+            return reportFile;
+        }
+
+        ISonargraphSystemController getController()
+        {
+            return controller;
+        }
+
+        //Hands the controller over and drops the reference to it, so that the loaded report does not keep the report model alive
+        ISonargraphSystemController releaseController()
+        {
+            final ISonargraphSystemController released = controller;
+            controller = null;
+            return released;
+        }
+
+        Result getResult()
+        {
+            return result;
+        }
+
+        boolean isSuccess()
+        {
+            return result.isSuccess();
+        }
+    }
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final String THREAD_NAME_PREFIX = "sonargraph-report-loader-";
+
+    private SonargraphReportLoader()
+    {
+        super();
+    }
+
+    static boolean isPattern(final String path)
+    {
+        for (int i = 0; i < path.length(); i++)
+        {
+            if (GLOB_CHARACTERS.indexOf(path.charAt(i)) >= 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Files matching 'pattern', sorted by path. Relative patterns are resolved against 'baseDirectory'. The directory tree is only walked
+    //below the last separator preceding the first glob character and only as deep as the pattern requires.
+    static List<File> expand(final File baseDirectory, final String pattern) throws IOException
+    {
+        final String universalPattern = pattern.replace('\\', '/');
+        int firstGlob = universalPattern.length();
+        for (int i = 0; i < universalPattern.length(); i++)
+        {
+            if (GLOB_CHARACTERS.indexOf(universalPattern.charAt(i)) >= 0)
+            {
+                firstGlob = i;
+                break;
+            }
+        }
+
+        final int separator = universalPattern.lastIndexOf('/', firstGlob);
+        final String fixedPart = separator >= 0 ? universalPattern.substring(0, separator + 1) : "";
+        final String globPart = universalPattern.substring(separator + 1);
+        final File fixedDirectory = new File(fixedPart);
+        final File root = fixedPart.isEmpty() ? baseDirectory : fixedDirectory.isAbsolute() ? fixedDirectory : new File(baseDirectory, fixedPart);
+        if (!root.isDirectory())
+        {
+            return Collections.emptyList();
+        }
+
+        final Path rootPath = root.toPath();
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + globPart);
+        final int maxDepth = globPart.contains("**") ? Integer.MAX_VALUE : globPart.split("/").length;
+        try (Stream<Path> paths = Files.walk(rootPath, maxDepth))
+        {
+            return paths.filter(p -> Files.isRegularFile(p) && matcher.matches(rootPath.relativize(p))).sorted().map(Path::toFile)
+                    .map(File::getAbsoluteFile).collect(Collectors.toList());
+        }
+    }
+
+    static LoadedReport load(final File reportFile, final SonargraphReportCache reportCache)
+    {
+        final Object loadEvent = SonargraphFlightRecorder.beginReportLoad();
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        final Result result = reportCache != null ? reportCache.load(controller, reportFile) : controller.loadSystemReport(reportFile);
+        SonargraphFlightRecorder.commitReportLoad(loadEvent, reportFile.getAbsolutePath(), reportFile.length(), result.isSuccess());
+        return new LoadedReport(reportFile, controller, result);
+    }
+
+    private static LoadedReport createFailure(final File reportFile, final Throwable cause)
+    {
+        final Result result = new Result("Load '" + reportFile.getAbsolutePath() + "'");
+        result.addError(ResultCause.READ_ERROR, cause);
+        return new LoadedReport(reportFile, null, result);
+    }
+
+    //Loaded reports in the order of 'reportFiles', failures are returned as unsuccessful results
+    static List<LoadedReport> load(final List<File> reportFiles, final SonargraphReportCache reportCache, final int maxThreads)
+    {
+        if (reportFiles.size() <= 1 || maxThreads <= 1)
+        {
+            return reportFiles.stream().map(f -> load(f, reportCache)).collect(Collectors.toList());
+        }
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(reportFiles.size(), maxThreads), r ->
+        {
+            final Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try
+        {
+            final List<Future<LoadedReport>> futures = new ArrayList<>(reportFiles.size());
+            for (final File nextReportFile : reportFiles)
+            {
+                futures.add(executor.submit(() -> load(nextReportFile, reportCache)));
+            }
+
+            final List<LoadedReport> loaded = new ArrayList<>(reportFiles.size());
+            for (int i = 0; i < futures.size(); i++)
+            {
+                try
+                {
+                    loaded.add(futures.get(i).get());
+                }
+                catch (final ExecutionException e)
+                {
+                    loaded.add(createFailure(reportFiles.get(i), e.getCause()));
+                }
+                catch (final InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    loaded.add(createFailure(reportFiles.get(i), e));
+                }
+            }
+            return loaded;
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
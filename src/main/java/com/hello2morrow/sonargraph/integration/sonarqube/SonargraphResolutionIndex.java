@@ -0,0 +1,168 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hello2morrow.sonargraph.integration.access.controller.IInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IResolution;
+import com.hello2morrow.sonargraph.integration.access.model.ResolutionType;
+
+//Maps issues to their resolution (fix, todo, refactoring) by identity, built once per scan.
+//The resolution details are rendered once and shared by all issues of a resolution.
+//Resolutions are also addressable by ordinal, so that flat issue records can refer to them by an int.
+final class SonargraphResolutionIndex
+{
+    private static final class ResolutionEntry
+    {
+        private final int ordinal;
+        private final ResolutionType type;
+        private final String details;
+        private final String compactPrefix;
+
+        ResolutionEntry(final int ordinal, final ResolutionType type, final String details, final String compactPrefix)
+        {
+            this.ordinal = ordinal;
+            this.type = type;
+            this.details = details;
+            this.compactPrefix = compactPrefix;
+        }
+    }
+
+    private final Map<IIssue, ResolutionEntry> issueToResolution = new IdentityHashMap<>();
+    private final List<ResolutionEntry> resolutions = new ArrayList<>();
+
+    private SonargraphResolutionIndex()
+    {
+        super();
+    }
+
+    static SonargraphResolutionIndex create(final IInfoProcessor infoProcessor)
+    {
+        final SonargraphResolutionIndex index = new SonargraphResolutionIndex();
+        for (final IResolution nextResolution : infoProcessor.getResolutions(r -> r.getType() != ResolutionType.IGNORE))
+        {
+            final ResolutionEntry nextEntry = new ResolutionEntry(index.resolutions.size(), nextResolution.getType(), createDetails(nextResolution),
+                    createCompactPrefix(nextResolution));
+            for (final IIssue nextIssue : nextResolution.getIssues())
+            {
+                index.issueToResolution.put(nextIssue, nextEntry);
+            }
+            index.resolutions.add(nextEntry);
+        }
+        return index;
+    }
+
+    private static String createDetails(final IResolution resolution)
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(" assignee='").append(resolution.getAssignee()).append("'");
+        builder.append(" priority='").append(SonargraphBase.toLowerCase(resolution.getPriority().toString(), false)).append("'");
+        builder.append(" description='").append(resolution.getDescription()).append("'");
+        builder.append(" created='").append(resolution.getDate()).append("'");
+        return builder.toString();
+    }
+
+    private static String createCompactPrefix(final IResolution resolution)
+    {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("[").append(SonargraphBase.toLowerCase(resolution.getType().toString(), true));
+        final String assignee = resolution.getAssignee();
+        if (assignee != null && !assignee.trim().isEmpty())
+        {
+            builder.append(" @").append(assignee.trim());
+        }
+        builder.append("] ");
+        return builder.toString();
+    }
+
+    int getNumberOfResolutions()
+    {
+        return resolutions.size();
+    }
+
+    int getNumberOfResolvedIssues()
+    {
+        return issueToResolution.size();
+    }
+
+    //Drops the issue references, so that the index does not keep the report model alive. Afterwards the resolutions are only addressable
+    //by ordinal.
+    void releaseIssues()
+    {
+        issueToResolution.clear();
+    }
+
+    ResolutionType getResolutionType(final IIssue issue)
+    {
+        final ResolutionEntry entry = issueToResolution.get(issue);
+        return entry != null ? entry.type : null;
+    }
+
+    //Returns -1 if the issue is not resolved
+    int getOrdinal(final IIssue issue)
+    {
+        final ResolutionEntry entry = issueToResolution.get(issue);
+        return entry != null ? entry.ordinal : -1;
+    }
+
+    //Appends the issue prefix, i.e. '[<issue>]' followed by the resolution details if the issue is resolved
+    void appendPrefix(final StringBuilder builder, final IIssue issue)
+    {
+        appendPrefix(builder, getOrdinal(issue), issue.getPresentationName());
+    }
+
+    void appendPrefix(final StringBuilder builder, final int ordinal, final String issuePresentationName)
+    {
+        if (ordinal < 0)
+        {
+            builder.append("[").append(issuePresentationName).append("]");
+            return;
+        }
+
+        final ResolutionEntry entry = resolutions.get(ordinal);
+        if (entry.type == ResolutionType.FIX)
+        {
+            builder.append("[").append(SonargraphBase.toLowerCase(entry.type.toString(), false)).append(": ").append(issuePresentationName)
+                    .append("]");
+        }
+        else
+        {
+            builder.append("[").append(issuePresentationName).append("]");
+        }
+        builder.append(entry.details);
+    }
+
+    //Appends '[<type> @<assignee>] ' if the issue is resolved, the issue name is left out since it is given by the rule
+    void appendCompactPrefix(final StringBuilder builder, final IIssue issue)
+    {
+        appendCompactPrefix(builder, getOrdinal(issue));
+    }
+
+    void appendCompactPrefix(final StringBuilder builder, final int ordinal)
+    {
+        if (ordinal >= 0)
+        {
+            builder.append(resolutions.get(ordinal).compactPrefix);
+        }
+    }
+}
@@ -22,9 +22,7 @@ import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
-import com.hello2morrow.sonargraph.integration.access.model.IExportMetaData;
-import com.hello2morrow.sonargraph.integration.access.model.IIssueCategory;
-import com.hello2morrow.sonargraph.integration.access.model.IIssueType;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphPrecompiledMetaData.IssueTypeInfo;
 
 public final class SonargraphRules implements RulesDefinition
 {
@@ -45,12 +43,11 @@ public final class SonargraphRules implements RulesDefinition
         rule.setHtmlDescription(description);
     }
 
-    private void createRule(final IIssueType issueType, final NewRepository repository)
+    private void createRule(final IssueTypeInfo issueType, final NewRepository repository)
     {
         final String key = SonargraphBase.createRuleKey(issueType.getName());
         final String name = SonargraphBase.createRuleName(issueType.getPresentationName());
-        final IIssueCategory category = issueType.getCategory();
-        final String categoryPresentationName = category.getPresentationName();
+        final String categoryPresentationName = issueType.getCategoryPresentationName();
         final String categoryTag = SonargraphBase.createRuleCategoryTag(categoryPresentationName);
         final String description = "Description '"
                 + (issueType.getDescription().length() > 0 ? issueType.getDescription() : issueType.getPresentationName()) + "', category '"
@@ -80,14 +77,14 @@ public final class SonargraphRules implements RulesDefinition
     @Override
     public void define(final Context context)
     {
-        final IExportMetaData builtInMetaData = SonargraphBase.readBuiltInMetaData();
+        final SonargraphPrecompiledMetaData builtInMetaData = SonargraphPrecompiledMetaData.getBuiltIn();
 
         final NewRepository repository = context.createRepository(SonargraphBase.SONARGRAPH_PLUGIN_KEY, SonargraphBase.JAVA)
                 .setName(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
 
-        for (final IIssueType nextIssueType : builtInMetaData.getIssueTypes().values())
+        for (final IssueTypeInfo nextIssueType : builtInMetaData.getIssueTypes())
         {
-            if (!SonargraphBase.ignoreIssueType(nextIssueType))
+            if (!SonargraphBase.ignoreIssueCategory(nextIssueType.getCategoryName()))
             {
                 createRule(nextIssueType, repository);
             }
@@ -18,20 +18,28 @@
 package com.hello2morrow.sonargraph.integration.sonarqube;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
@@ -39,9 +47,10 @@ import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputDir;
 import org.sonar.api.batch.fs.InputModule;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputPath;
-import org.sonar.api.batch.fs.internal.DefaultTextPointer;
-import org.sonar.api.batch.fs.internal.DefaultTextRange;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.measure.Metric;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.Sensor;
@@ -53,16 +62,17 @@ import org.sonar.api.batch.sensor.measure.NewMeasure;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.RulePriority;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 
-import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
 import com.hello2morrow.sonargraph.integration.access.controller.IInfoProcessor;
 import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
 import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
 import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
-import com.hello2morrow.sonargraph.integration.access.foundation.Result;
 import com.hello2morrow.sonargraph.integration.access.foundation.Utility;
+import com.hello2morrow.sonargraph.integration.access.model.IDependencyIssue;
 import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockIssue;
 import com.hello2morrow.sonargraph.integration.access.model.IDuplicateCodeBlockOccurrence;
 import com.hello2morrow.sonargraph.integration.access.model.IIssue;
@@ -73,10 +83,12 @@ import com.hello2morrow.sonargraph.integration.access.model.IMetricValue;
 import com.hello2morrow.sonargraph.integration.access.model.IModule;
 import com.hello2morrow.sonargraph.integration.access.model.INamedElement;
 import com.hello2morrow.sonargraph.integration.access.model.INamedElementContainer;
-import com.hello2morrow.sonargraph.integration.access.model.IResolution;
 import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
 import com.hello2morrow.sonargraph.integration.access.model.ISourceFile;
-import com.hello2morrow.sonargraph.integration.access.model.ResolutionType;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphDiagnostics.Kind;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Counter;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Phase;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphReportLoader.LoadedReport;
 
 public final class SonargraphSensor implements Sensor
 {
@@ -86,13 +98,22 @@ public final class SonargraphSensor implements Sensor
     {
         private final Set<String> createdMeasures = new LinkedHashSet<>();
         private final Set<String> createdIssues = new LinkedHashSet<>();
+        private final List<SonargraphIssueStore> issueStores = new ArrayList<>(2);
         private final Map<String, ActiveRule> activeRules;
         private final Map<String, Metric<Serializable>> metrics;
+        private final Set<String> measuresOfPreviousReports;
 
         ProcessingData(final Map<String, ActiveRule> activeRules, final Map<String, Metric<Serializable>> metrics)
+        {
+            this(activeRules, metrics, Collections.emptySet());
+        }
+
+        ProcessingData(final Map<String, ActiveRule> activeRules, final Map<String, Metric<Serializable>> metrics,
+                final Set<String> measuresOfPreviousReports)
         {
             this.activeRules = activeRules;
             this.metrics = metrics;
+            this.measuresOfPreviousReports = measuresOfPreviousReports;
         }
 
         boolean issueAlreadyCreated(final String ruleKey)
@@ -115,6 +136,28 @@ public final class SonargraphSensor implements Sensor
             createdMeasures.add(metricKey);
         }
 
+        //Another report already created a measure with that key on the current component
+        boolean measureCreatedByPreviousReport(final String metricKey)
+        {
+            return measuresOfPreviousReports.contains(metricKey);
+        }
+
+        Set<String> getCreatedMeasures()
+        {
+            return Collections.unmodifiableSet(createdMeasures);
+        }
+
+        void addIssueStore(final SonargraphIssueStore issueStore)
+        {
+            issueStores.add(issueStore);
+        }
+
+        //Classified source file and directory issues, emitted after the report model has been released
+        List<SonargraphIssueStore> getIssueStores()
+        {
+            return Collections.unmodifiableList(issueStores);
+        }
+
         Map<String, ActiveRule> getActiveRules()
         {
             return Collections.unmodifiableMap(activeRules);
@@ -129,86 +172,173 @@ public final class SonargraphSensor implements Sensor
     private final RulesProfile qualityProfile;
     private final FileSystem fileSystem;
     private final MetricFinder metricFinder;
+    private final LongSupplier nanoTime;
+    private final SonargraphPrecompiledMetaData builtInMetaData = SonargraphPrecompiledMetaData.getBuiltIn();
     private Properties customMetrics;
+    private SonargraphImportProfile profile;
+    private SonargraphEmissionPlan emissionPlan;
+    private SonargraphResolutionIndex resolutionIndex;
+    private SonargraphImportFilter importFilter;
+    private SonargraphQualityGate qualityGate;
+    private SonargraphIssueCounts issueCounts;
+    private SonargraphTimeBudget timeBudget;
+    private SonargraphDiagnostics diagnostics;
+    private SonargraphLineTable lineTable;
+    private SonargraphDryRun dryRun;
+    private boolean compactMessages;
+    private int maxMessageLength;
+    private boolean collapseViolations;
+    private int collapsedViolationLines;
 
     public SonargraphSensor(final FileSystem fileSystem, final RulesProfile qualityProfile, final MetricFinder metricFinder)
+    {
+        this(fileSystem, qualityProfile, metricFinder, System::nanoTime);
+    }
+
+    //'nanoTime' is the clock the import time budget is measured with
+    SonargraphSensor(final FileSystem fileSystem, final RulesProfile qualityProfile, final MetricFinder metricFinder, final LongSupplier nanoTime)
     {
         this.fileSystem = fileSystem;
         this.qualityProfile = qualityProfile;
         this.metricFinder = metricFinder;
+        this.nanoTime = nanoTime;
     }
 
-    private String createIssueDescription(final IInfoProcessor infoProcessor, final IIssue issue, final String detail)
+    String createIssueDescription(final SonargraphResolutionIndex resolutions, final IIssue issue, final String detail)
     {
-        final StringBuilder builder = new StringBuilder();
+        return createIssueDescription(resolutions, resolutions.getOrdinal(issue), issue.getPresentationName(), issue.getDescription(),
+                issue.getIssueProvider().getPresentationName(), detail);
+    }
 
-        final IResolution resolution = infoProcessor.getResolution(issue);
-        if (resolution != null)
+    String createIssueDescription(final SonargraphResolutionIndex resolutions, final int resolution, final String presentationName,
+            final String description, final String provider, final String detail)
+    {
+        final StringBuilder builder = new StringBuilder();
+        if (compactMessages)
         {
-            final ResolutionType type = resolution.getType();
-            switch (type)
+            //Issue and provider name are left out, the rule already names them
+            resolutions.appendCompactPrefix(builder, resolution);
+            builder.append(description != null ? description.trim() : "");
+            if (!detail.isEmpty())
             {
-            case FIX:
-                builder.append("[").append(SonargraphBase.toLowerCase(type.toString(), false)).append(": ").append(issue.getPresentationName())
-                        .append("]");
-                break;
-            case REFACTORING:
-            case TODO:
-                builder.append("[").append(issue.getPresentationName()).append("]");
-                break;
-            case IGNORE:
-                //$FALL-THROUGH$
-            default:
-                assert false : "Unhandled resolution type: " + type;
-                break;
+                builder.append(builder.length() > 0 ? " " : "").append(detail);
             }
-
-            builder.append(" assignee='").append(resolution.getAssignee()).append("'");
-            builder.append(" priority='").append(SonargraphBase.toLowerCase(resolution.getPriority().toString(), false)).append("'");
-            builder.append(" description='").append(resolution.getDescription()).append("'");
-            builder.append(" created='").append(resolution.getDate()).append("'");
-        }
-        else
-        {
-            builder.append("[").append(issue.getPresentationName()).append("]");
+            if (builder.length() == 0)
+            {
+                builder.append(presentationName);
+            }
+            return SonargraphBase.abbreviate(builder.toString(), maxMessageLength);
         }
 
-        builder.append(" ").append(issue.getDescription());
+        resolutions.appendPrefix(builder, resolution, presentationName);
+
+        builder.append(" ").append(description);
         if (!detail.isEmpty())
         {
             builder.append(" ").append(detail);
         }
-        builder.append(" [").append(issue.getIssueProvider().getPresentationName()).append("]");
+        builder.append(" [").append(provider).append("]");
 
         return builder.toString();
     }
 
-    private String createIssueDescription(final IModuleInfoProcessor moduleInfoProcessor, final IDuplicateCodeBlockIssue duplicateCodeBlockIssue,
-            final IDuplicateCodeBlockOccurrence occurrence, final List<IDuplicateCodeBlockOccurrence> others)
+    private static String getPath(final ISourceFile sourceFile)
+    {
+        return sourceFile.getRelativePath() != null ? sourceFile.getRelativePath() : sourceFile.getPresentationName();
+    }
+
+    //Short form of the path of 'other' as seen from 'sourceFile': empty for the same file, the file name for the same directory
+    static String getShortPath(final ISourceFile sourceFile, final ISourceFile other)
+    {
+        final String path = getPath(sourceFile);
+        final String otherPath = getPath(other);
+        if (path.equals(otherPath) && Objects.equals(sourceFile.getRelativeRootDirectory(), other.getRelativeRootDirectory()))
+        {
+            return "";
+        }
+
+        final int separator = otherPath.lastIndexOf('/');
+        final String otherDirectory = separator >= 0 ? otherPath.substring(0, separator) : "";
+        final int ownSeparator = path.lastIndexOf('/');
+        final String directory = ownSeparator >= 0 ? path.substring(0, ownSeparator) : "";
+        return directory.equals(otherDirectory) ? otherPath.substring(separator + 1) : otherPath;
+    }
+
+    String createDuplicateDetail(final IDuplicateCodeBlockOccurrence occurrence, final List<IDuplicateCodeBlockOccurrence> others)
     {
         final StringBuilder detail = new StringBuilder();
+        if (compactMessages)
+        {
+            detail.append("Lines ").append(occurrence.getStartLine()).append("-").append(occurrence.getStartLine() + occurrence.getBlockSize() - 1)
+                    .append(" duplicate of ");
+            for (int i = 0; i < others.size(); i++)
+            {
+                final IDuplicateCodeBlockOccurrence next = others.get(i);
+                final String nextPath = getShortPath(occurrence.getSourceFile(), next.getSourceFile());
+                detail.append(i > 0 ? ", " : "").append(nextPath).append(nextPath.isEmpty() ? "" : ":").append(next.getStartLine()).append("-")
+                        .append(next.getStartLine() + next.getBlockSize() - 1);
+            }
+            return detail.toString();
+        }
+
         detail.append("Line(s) ").append(occurrence.getStartLine()).append("-").append(occurrence.getStartLine() + occurrence.getBlockSize() - 1)
                 .append(" duplicate of ");
 
         for (final IDuplicateCodeBlockOccurrence next : others)
         {
-            detail.append(next.getSourceFile().getRelativePath() != null ? next.getSourceFile().getRelativePath()
-                    : next.getSourceFile().getPresentationName());
+            detail.append(getPath(next.getSourceFile()));
             detail.append(" line(s) ").append(next.getStartLine());
             detail.append("-").append(next.getStartLine() + next.getBlockSize() - 1);
         }
 
-        return createIssueDescription(moduleInfoProcessor, duplicateCodeBlockIssue, detail.toString());
+        return detail.toString();
+    }
+
+    String createIssueDescription(final SonargraphResolutionIndex resolutions, final IIssue forIssue)
+    {
+        return createIssueDescription(resolutions, forIssue, "");
     }
 
-    private String createIssueDescription(final IInfoProcessor infoProcessor, final IIssue forIssue)
+    private String createDescription(final IIssue issue)
     {
-        return createIssueDescription(infoProcessor, forIssue, "");
+        final long start = profile.start();
+        final String description = createIssueDescription(resolutionIndex, issue);
+        profile.stop(Phase.DESCRIPTION_BUILDING, start);
+        return description;
     }
 
-    private void createSourceFileIssues(final SensorContext context, final IModuleInfoProcessor moduleInfoProcessor, final ISourceFile sourceFile,
-            final InputPath inputPath, final IIssue issue, final ActiveRule rule)
+    //Runs as part of the classification, so that filtered issues cost a single (cached) issue type lookup
+    private boolean isImported(final IIssue issue)
     {
+        if (issue.isIgnored() || SonargraphBase.ignoreIssueType(issue.getIssueType()))
+        {
+            return false;
+        }
+        if (!importFilter.acceptIssueType(issue.getIssueType().getName()))
+        {
+            profile.increment(Counter.ISSUES_FILTERED);
+            return false;
+        }
+        return true;
+    }
+
+    private ActiveRule getActiveRule(final Map<String, ActiveRule> issueTypeToRuleMap, final IIssue issue)
+    {
+        final long start = profile.start();
+        final ActiveRule rule = issueTypeToRuleMap.get(builtInMetaData.getRuleKey(issue.getIssueType().getName()));
+        profile.stop(Phase.ISSUE_CLASSIFICATION, start);
+        if (rule == null)
+        {
+            profile.increment(Counter.ISSUES_SKIPPED_INACTIVE_RULE);
+        }
+        return rule;
+    }
+
+    private void addSourceFileRecords(final SonargraphIssueStore store, final ISourceFile sourceFile, final IIssue issue, final ActiveRule rule)
+    {
+        final int resolution = resolutionIndex.getOrdinal(issue);
+        final String type = issue.getIssueType().getName();
+        final String provider = issue.getIssueProvider().getPresentationName();
         if (issue instanceof IDuplicateCodeBlockIssue)
         {
             final IDuplicateCodeBlockIssue nextDuplicateCodeBlockIssue = (IDuplicateCodeBlockIssue) issue;
@@ -223,75 +353,200 @@ public final class SonargraphSensor implements Sensor
                 {
                     final List<IDuplicateCodeBlockOccurrence> others = new ArrayList<>(nextOccurrences);
                     others.remove(nextOccurrence);
-                    createIssue(context, inputPath, rule,
-                            createIssueDescription(moduleInfoProcessor, nextDuplicateCodeBlockIssue, nextOccurrence, others),
-                            l -> l.at(new DefaultTextRange(new DefaultTextPointer(nextOccurrence.getStartLine(), 0),
-                                    new DefaultTextPointer(nextOccurrence.getStartLine() + nextOccurrence.getBlockSize(), 1))));
+                    final long detailStart = profile.start();
+                    final String detail = createDuplicateDetail(nextOccurrence, others);
+                    profile.stop(Phase.DESCRIPTION_BUILDING, detailStart);
+                    store.addRecord(type, rule, nextOccurrence.getStartLine(), nextOccurrence.getBlockSize(), resolution, issue.getPresentationName(),
+                            issue.getDescription(), provider, detail);
                 }
             }
         }
         else
         {
-            createIssue(context, inputPath, rule, createIssueDescription(moduleInfoProcessor, issue), l ->
-            {
-                final int line = issue.getLine();
-                final int lineToUse = line <= 0 ? 1 : line;
-                l.at(new DefaultTextRange(new DefaultTextPointer(lineToUse, 0), new DefaultTextPointer(lineToUse, 1)));
-            });
+            store.addRecord(type, rule, issue.getLine(), -1, resolution, issue.getPresentationName(), issue.getDescription(), provider, null);
         }
     }
 
-    private void addIssuesToSourceFile(final SensorContext context, final IModuleInfoProcessor moduleInfoProcessor,
-            final Map<String, ActiveRule> issueTypeToRuleMap, final String baseDir, final ISourceFile sourceFile, final List<IIssue> issues)
+    //Violations of a source file with the same issue type, target element and resolution become one issue on the first line, mentioning the
+    //count and the first lines. All other lines are secondary locations.
+    private void addCollapsedViolations(final SonargraphIssueStore store, final ISourceFile sourceFile, final List<IIssue> violations,
+            final ActiveRule rule)
+    {
+        final IDependencyIssue first = (IDependencyIssue) violations.get(0);
+        if (violations.size() == 1)
+        {
+            addSourceFileRecords(store, sourceFile, first, rule);
+            return;
+        }
+
+        final long descriptionStart = profile.start();
+        final int[] lines = violations.stream().mapToInt(v -> Math.max(1, v.getLine())).distinct().sorted().toArray();
+        final StringBuilder description = new StringBuilder();
+        description.append(violations.size()).append(" violating dependencies to '").append(first.getTo().getPresentationName())
+                .append("' at line(s) ");
+        final int linesInMessage = Math.min(lines.length, collapsedViolationLines);
+        for (int i = 0; i < linesInMessage; i++)
+        {
+            description.append(i > 0 ? ", " : "").append(lines[i]);
+        }
+        if (linesInMessage < lines.length)
+        {
+            description.append(" and ").append(lines.length - linesInMessage).append(" more");
+        }
+        profile.stop(Phase.DESCRIPTION_BUILDING, descriptionStart);
+
+        store.addRecord(first.getIssueType().getName(), rule, lines[0], -1, resolutionIndex.getOrdinal(first), first.getPresentationName(),
+                description.toString(), first.getIssueProvider().getPresentationName(), null, Arrays.copyOfRange(lines, 1, lines.length));
+        profile.add(Counter.ISSUES_COLLAPSED, violations.size() - 1);
+    }
+
+    //Filters, resolves and classifies the issues of a source file into the store, nothing is added if the file cannot be located
+    private void addSourceFile(final SonargraphIssueStore store, final Map<String, ActiveRule> issueTypeToRuleMap, final String baseDir,
+            final ISourceFile sourceFile, final List<IIssue> issues)
     {
         final String rootDirectoryRelPath = sourceFile.getRelativeRootDirectory();
         final String sourceRelPath = sourceFile.getRelativePath();
+        if (!importFilter.acceptPath(Paths.get(rootDirectoryRelPath, sourceRelPath).normalize().toString()))
+        {
+            profile.add(Counter.ISSUES_FILTERED, issues.size());
+            timeBudget.addReachedIssues(issues.size());
+            return;
+        }
+
         final String sourceFileLocation = Paths.get(baseDir, rootDirectoryRelPath, sourceRelPath).normalize().toString();
 
+        final long resolutionStart = profile.start();
         final InputPath inputPath = fileSystem
                 .inputFile(fileSystem.predicates().hasAbsolutePath(Utility.convertPathToUniversalForm(sourceFileLocation)));
+        profile.stop(Phase.FILE_RESOLUTION, resolutionStart);
         if (inputPath != null)
         {
+            store.addElement(inputPath, sourceFile.getFqName(), false, issues.size());
+            final Map<String, List<IIssue>> violationGroups = collapseViolations ? new LinkedHashMap<>() : null;
             for (final IIssue nextIssue : issues)
             {
-                final ActiveRule nextRule = issueTypeToRuleMap.get(SonargraphBase.createRuleKey(nextIssue.getIssueType().getName()));
-                if (nextRule != null)
+                if (issueCounts != null)
+                {
+                    issueCounts.add(inputPath, nextIssue.getIssueType());
+                }
+                final ActiveRule nextRule = getActiveRule(issueTypeToRuleMap, nextIssue);
+                if (nextRule == null)
+                {
+                    continue;
+                }
+                if (violationGroups != null && nextIssue instanceof IDependencyIssue)
+                {
+                    final String nextKey = nextIssue.getIssueType().getName() + "\n" + ((IDependencyIssue) nextIssue).getTo().getFqName() + "\n"
+                            + resolutionIndex.getOrdinal(nextIssue);
+                    violationGroups.computeIfAbsent(nextKey, k -> new ArrayList<>()).add(nextIssue);
+                }
+                else
+                {
+                    addSourceFileRecords(store, sourceFile, nextIssue, nextRule);
+                }
+            }
+            if (violationGroups != null)
+            {
+                for (final List<IIssue> nextViolations : violationGroups.values())
                 {
-                    createSourceFileIssues(context, moduleInfoProcessor, sourceFile, inputPath, nextIssue, nextRule);
+                    final ActiveRule nextRule = issueTypeToRuleMap.get(builtInMetaData.getRuleKey(nextViolations.get(0).getIssueType().getName()));
+                    addCollapsedViolations(store, sourceFile, nextViolations, nextRule);
                 }
             }
         }
         else
         {
-            LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to locate '" + sourceFile.getFqName() + "' at '"
-                    + sourceFileLocation + "'");
+            profile.increment(Counter.UNRESOLVED_FILES);
+            timeBudget.addReachedIssues(issues.size());
+            diagnostics.add(Kind.UNRESOLVED_SOURCE_FILE, "'" + sourceFile.getFqName() + "' at '" + sourceFileLocation + "'");
         }
     }
 
-    private void addIssuesToDirectory(final SensorContext context, final IModuleInfoProcessor moduleInfoProcessor,
-            final Map<String, ActiveRule> issueTypeToRuleMap, final String baseDir, final String relDirectory, final List<IIssue> issues)
+    private void addDirectory(final SonargraphIssueStore store, final Map<String, ActiveRule> issueTypeToRuleMap, final String baseDir,
+            final String relDirectory, final List<IIssue> issues)
     {
+        if (!importFilter.acceptPath(Paths.get(relDirectory).normalize().toString()))
+        {
+            profile.add(Counter.ISSUES_FILTERED, issues.size());
+            timeBudget.addReachedIssues(issues.size());
+            return;
+        }
+
         final String directoryLocation = Paths.get(baseDir, relDirectory).normalize().toString();
+        final long resolutionStart = profile.start();
         final InputDir inputDir = fileSystem.inputDir(new File(Utility.convertPathToUniversalForm(directoryLocation)));
+        profile.stop(Phase.FILE_RESOLUTION, resolutionStart);
 
         if (inputDir != null)
         {
+            store.addElement(inputDir, relDirectory, true, issues.size());
             for (final IIssue nextIssue : issues)
             {
-                final ActiveRule nextRule = issueTypeToRuleMap.get(SonargraphBase.createRuleKey(nextIssue.getIssueType().getName()));
+                if (issueCounts != null)
+                {
+                    issueCounts.add(inputDir, nextIssue.getIssueType());
+                }
+                final ActiveRule nextRule = getActiveRule(issueTypeToRuleMap, nextIssue);
                 if (nextRule != null)
                 {
-                    createIssue(context, inputDir, nextRule, createIssueDescription(moduleInfoProcessor, nextIssue), null);
+                    store.addRecord(nextIssue.getIssueType().getName(), nextRule, nextIssue.getLine(), -1, resolutionIndex.getOrdinal(nextIssue),
+                            nextIssue.getPresentationName(), nextIssue.getDescription(), nextIssue.getIssueProvider().getPresentationName(), null);
                 }
             }
         }
         else
         {
-            LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to locate directory resource: '" + directoryLocation
-                    + "'\nBaseDir: " + baseDir + "\nrelDirectory:'" + relDirectory);
+            profile.increment(Counter.UNRESOLVED_DIRECTORIES);
+            timeBudget.addReachedIssues(issues.size());
+            diagnostics.add(Kind.UNRESOLVED_DIRECTORY, "'" + relDirectory + "' at '" + directoryLocation + "'");
         }
     }
 
+    //Creates the issues of the store element by element, checking the time budget before each element
+    //Elements classified before the budget ran out are emitted completely, otherwise the budget is checked per element
+    private void emit(final SensorContext context, final SonargraphIssueStore store)
+    {
+        final boolean checkBudget = !timeBudget.isExhausted();
+        for (int element = 0; element < store.getElementCount(); element++)
+        {
+            if (checkBudget
+                    && timeBudget.isExhausted((store.isDirectory(element) ? "directory '" : "source file '") + store.getElementName(element) + "'"))
+            {
+                return;
+            }
+
+            final InputComponent component = store.getComponent(element);
+            for (final int record : store.getRecordsByLine(element))
+            {
+                final long descriptionStart = profile.start();
+                final String detail = store.getDetail(record);
+                final String description = createIssueDescription(resolutionIndex, store.getResolution(record), store.getName(record),
+                        store.getDescription(record), store.getProvider(record), detail != null ? detail : "");
+                profile.stop(Phase.DESCRIPTION_BUILDING, descriptionStart);
+                final List<TextRange> secondaryRanges = new ArrayList<>();
+                for (final int nextLine : store.getSecondaryLines(record))
+                {
+                    final TextRange nextRange = lineTable.createLineRange((InputFile) component, nextLine);
+                    if (nextRange != null)
+                    {
+                        secondaryRanges.add(nextRange);
+                    }
+                }
+                createIssue(context, component, store.getRule(record), description, createTextRange(store, element, record), secondaryRanges);
+            }
+            timeBudget.addReachedIssues(store.getIssueCount(element));
+        }
+    }
+
+    private TextRange createTextRange(final SonargraphIssueStore store, final int element, final int record)
+    {
+        if (store.isDirectory(element))
+        {
+            return null;
+        }
+        return lineTable.createRange((InputFile) store.getComponent(element), store.getLine(record), store.getBlockSize(record));
+    }
+
     private void processSystem(final SensorContext context, final InputComponent inputComponent, final ISoftwareSystem softwareSystem,
             final ISystemInfoProcessor systemInfoProcessor, final ProcessingData data)
     {
@@ -301,35 +556,41 @@ public final class SonargraphSensor implements Sensor
             processMetrics(context, inputComponent, softwareSystem, softwareSystem, systemInfoProcessor, systemLevelOptional.get(), data);
         }
 
-        final List<IIssue> systemIssues = systemInfoProcessor.getIssues(issue -> !issue.isIgnored()
-                && !SonargraphBase.ignoreIssueType(issue.getIssueType()) && issue.getAffectedNamedElements().contains(softwareSystem));
+        final long classificationStart = profile.start();
+        final List<IIssue> systemIssues = sortBySeverity(systemInfoProcessor
+                .getIssues(issue -> issue.getAffectedNamedElements().contains(softwareSystem) && isImported(issue)), data);
+        profile.stop(Phase.ISSUE_CLASSIFICATION, classificationStart);
+        timeBudget.addReachedIssues(systemIssues.size());
         for (final IIssue nextIssue : systemIssues)
         {
             final IIssueType nextIssueType = nextIssue.getIssueType();
-            final String nextRuleKey = SonargraphBase.isScriptIssue(nextIssueType) ? SonargraphBase.createRuleKey(SonargraphBase.SCRIPT_ISSUE_NAME)
-                    : SonargraphBase.createRuleKey(nextIssueType.getName());
+            if (issueCounts != null)
+            {
+                issueCounts.add(null, nextIssueType);
+            }
+            final String nextRuleKey = SonargraphBase.isScriptIssue(nextIssueType) ? builtInMetaData.getRuleKey(SonargraphBase.SCRIPT_ISSUE_NAME)
+                    : builtInMetaData.getRuleKey(nextIssueType.getName());
             final ActiveRule nextRule = data.getActiveRules().get(nextRuleKey);
-            if (nextRule != null && !data.issueAlreadyCreated(SonargraphBase.createRuleKey(nextIssueType.getName())))
+            if (nextRule == null)
             {
-                createIssue(context, inputComponent, nextRule, createIssueDescription(systemInfoProcessor, nextIssue), null);
+                profile.increment(Counter.ISSUES_SKIPPED_INACTIVE_RULE);
+            }
+            else if (!data.issueAlreadyCreated(builtInMetaData.getRuleKey(nextIssueType.getName())))
+            {
+                createIssue(context, inputComponent, nextRule, createDescription(nextIssue), null);
             }
         }
 
         final List<IIssue> workspaceIssues = systemInfoProcessor
                 .getIssues(issue -> SonargraphBase.isErrorOrWarningWorkspoceIssue(issue.getIssueType()));
-        if (!workspaceIssues.isEmpty())
+        for (final IIssue nextIssue : workspaceIssues)
         {
-            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Found " + workspaceIssues.size() + " workspace issue(s)");
-            int i = 1;
-            for (final IIssue nextIssue : workspaceIssues)
+            final StringBuilder nextMessage = new StringBuilder(nextIssue.getPresentationName());
+            for (final INamedElement nextAffected : nextIssue.getAffectedNamedElements())
             {
-                LOGGER.warn("[" + i + "] " + nextIssue.getPresentationName());
-                for (final INamedElement nextAffected : nextIssue.getAffectedNamedElements())
-                {
-                    LOGGER.warn(" - " + nextAffected.getName() + " [" + nextAffected.getPresentationKind() + "]");
-                }
-                i++;
+                nextMessage.append("\n - ").append(nextAffected.getName()).append(" [").append(nextAffected.getPresentationKind()).append("]");
             }
+            diagnostics.add(Kind.WORKSPACE_ISSUE, nextMessage.toString());
         }
     }
 
@@ -343,44 +604,135 @@ public final class SonargraphSensor implements Sensor
             processMetrics(context, inputComponent, system, module, moduleInfoProcessor, metricLevelOptional.get(), data);
         }
 
-        final List<IIssue> systemIssues = moduleInfoProcessor.getIssues(issue -> !issue.isIgnored()
-                && !SonargraphBase.ignoreIssueType(issue.getIssueType()) && issue.getAffectedNamedElements().contains(module));
-        for (final IIssue nextIssue : systemIssues)
+        final long classificationStart = profile.start();
+        final List<IIssue> moduleIssues = sortBySeverity(
+                moduleInfoProcessor.getIssues(issue -> issue.getAffectedNamedElements().contains(module) && isImported(issue)), data);
+        profile.stop(Phase.ISSUE_CLASSIFICATION, classificationStart);
+        timeBudget.addReachedIssues(moduleIssues.size());
+        for (final IIssue nextIssue : moduleIssues)
         {
             final IIssueType nextIssueType = nextIssue.getIssueType();
-            final String nextRealRuleKey = SonargraphBase.createRuleKey(nextIssueType.getName());
+            if (issueCounts != null)
+            {
+                issueCounts.add(null, nextIssueType);
+            }
+            final String nextRealRuleKey = builtInMetaData.getRuleKey(nextIssueType.getName());
             final String nextRuleKeyToCheck = SonargraphBase.isScriptIssue(nextIssueType)
-                    ? SonargraphBase.createRuleKey(SonargraphBase.SCRIPT_ISSUE_NAME)
+                    ? builtInMetaData.getRuleKey(SonargraphBase.SCRIPT_ISSUE_NAME)
                     : nextRealRuleKey;
             final ActiveRule nextRule = data.getActiveRules().get(nextRuleKeyToCheck);
-            if (nextRule != null && !data.issueAlreadyCreated(nextRealRuleKey))
+            if (nextRule == null)
+            {
+                profile.increment(Counter.ISSUES_SKIPPED_INACTIVE_RULE);
+            }
+            else if (!data.issueAlreadyCreated(nextRealRuleKey))
             {
-                createIssue(context, inputComponent, nextRule, createIssueDescription(moduleInfoProcessor, nextIssue), null);
+                createIssue(context, inputComponent, nextRule, createDescription(nextIssue), null);
                 data.addCreatedIssue(nextRealRuleKey);
             }
         }
+    }
+
+    //Source files and directories come last, the time budget is checked before each of them. Their issues are classified into stores that are
+    //emitted once the report model has been released.
+    private void processModuleElements(final IModuleInfoProcessor moduleInfoProcessor, final ProcessingData data)
+    {
+        if (timeBudget.isExhausted("source file issues"))
+        {
+            return;
+        }
+
+        long classificationStart = profile.start();
+        final Map<ISourceFile, List<IIssue>> sourceFileIssueMap = moduleInfoProcessor.getIssuesForSourceFiles(this::isImported);
+        profile.stop(Phase.ISSUE_CLASSIFICATION, classificationStart);
+        final SonargraphIssueStore sourceFileStore = new SonargraphIssueStore();
+        for (final Entry<ISourceFile, List<IIssue>> issuesPerSourceFile : sortElements(sourceFileIssueMap,
+                sourceFile -> sourceFile.getRelativeRootDirectory() + "/" + sourceFile.getRelativePath(), data))
+        {
+            if (timeBudget.isExhausted("source file '" + issuesPerSourceFile.getKey().getFqName() + "'"))
+            {
+                break;
+            }
+            addSourceFile(sourceFileStore, data.getActiveRules(), moduleInfoProcessor.getBaseDirectory(), issuesPerSourceFile.getKey(),
+                    issuesPerSourceFile.getValue());
+        }
+        //Also if the budget ran out, the source files classified so far are the ones with the most severe issues
+        data.addIssueStore(sourceFileStore);
+
+        if (timeBudget.isExhausted("directory issues"))
+        {
+            return;
+        }
+
+        classificationStart = profile.start();
+        final Map<String, List<IIssue>> directoryIssueMap = moduleInfoProcessor.getIssuesForDirectories(this::isImported);
+        profile.stop(Phase.ISSUE_CLASSIFICATION, classificationStart);
+        final SonargraphIssueStore directoryStore = new SonargraphIssueStore();
+        for (final Entry<String, List<IIssue>> issuesPerDirectory : sortElements(directoryIssueMap, Function.identity(), data))
+        {
+            if (timeBudget.isExhausted("directory '" + issuesPerDirectory.getKey() + "'"))
+            {
+                break;
+            }
+            addDirectory(directoryStore, data.getActiveRules(), moduleInfoProcessor.getBaseDirectory(), issuesPerDirectory.getKey(),
+                    issuesPerDirectory.getValue());
+        }
+        data.addIssueStore(directoryStore);
+    }
+
+    private int getSeverity(final IIssue issue, final ProcessingData data)
+    {
+        final ActiveRule rule = data.getActiveRules().get(builtInMetaData.getRuleKey(issue.getIssueType().getName()));
+        final RulePriority severity = rule != null ? rule.getSeverity() : null;
+        return severity != null ? severity.ordinal() : -1;
+    }
+
+    //Most severe first, only if the import is time budgeted - otherwise the order does not matter
+    private List<IIssue> sortBySeverity(final List<IIssue> issues, final ProcessingData data)
+    {
+        if (!timeBudget.isLimited() || issues.size() < 2)
+        {
+            return issues;
+        }
+        final List<IIssue> sorted = new ArrayList<>(issues);
+        sorted.sort(Comparator.comparingInt((final IIssue issue) -> getSeverity(issue, data)).reversed());
+        return sorted;
+    }
 
-        final Map<ISourceFile, List<IIssue>> sourceFileIssueMap = moduleInfoProcessor
-                .getIssuesForSourceFiles(issue -> !issue.isIgnored() && !SonargraphBase.ignoreIssueType(issue.getIssueType()));
-        for (final Entry<ISourceFile, List<IIssue>> issuesPerSourceFile : sourceFileIssueMap.entrySet())
+    //Elements in the order of their paths, so that each run emits in the same order. If the import is time budgeted the elements with the
+    //most severe issues come first.
+    private <T> List<Entry<T, List<IIssue>>> sortElements(final Map<T, List<IIssue>> elementIssues, final Function<T, String> getPath,
+            final ProcessingData data)
+    {
+        final List<Entry<T, List<IIssue>>> sorted = new ArrayList<>(elementIssues.entrySet());
+        final Comparator<Entry<T, List<IIssue>>> byPath = Comparator.comparing(entry -> getPath.apply(entry.getKey()));
+        if (!timeBudget.isLimited())
         {
-            addIssuesToSourceFile(context, moduleInfoProcessor, data.getActiveRules(), moduleInfoProcessor.getBaseDirectory(),
-                    issuesPerSourceFile.getKey(), issuesPerSourceFile.getValue());
+            sorted.sort(byPath);
+            return sorted;
         }
 
-        final Map<String, List<IIssue>> directoryIssueMap = moduleInfoProcessor
-                .getIssuesForDirectories(issue -> !issue.isIgnored() && !SonargraphBase.ignoreIssueType(issue.getIssueType()));
-        for (final Entry<String, List<IIssue>> issuesPerDirectory : directoryIssueMap.entrySet())
+        final Map<T, Integer> maxSeverities = new HashMap<>();
+        for (final Entry<T, List<IIssue>> nextEntry : elementIssues.entrySet())
         {
-            addIssuesToDirectory(context, moduleInfoProcessor, data.getActiveRules(), moduleInfoProcessor.getBaseDirectory(),
-                    issuesPerDirectory.getKey(), issuesPerDirectory.getValue());
+            final int nextMaxSeverity = nextEntry.getValue().stream().mapToInt(issue -> getSeverity(issue, data)).max().orElse(-1);
+            maxSeverities.put(nextEntry.getKey(), Integer.valueOf(nextMaxSeverity));
         }
+        sorted.sort(Comparator.comparingInt((final Entry<T, List<IIssue>> entry) -> maxSeverities.get(entry.getKey()).intValue()).reversed()
+                .thenComparing(byPath));
+        return sorted;
     }
 
     @SuppressWarnings("unchecked")
     private void createNewMeasure(final SensorContext context, final InputComponent inputComponent, final Metric<? extends Serializable> metric,
             final IMetricValue metricValue)
     {
+        if (dryRun != null)
+        {
+            dryRun.addMeasure(inputComponent, metric.key());
+            return;
+        }
+
         if (metricValue.getId().isFloat())
         {
             final NewMeasure<Double> newMeasure = context.<Double> newMeasure();
@@ -388,6 +740,10 @@ public final class SonargraphSensor implements Sensor
             newMeasure.on(inputComponent);
             newMeasure.withValue(Double.valueOf(metricValue.getValue().doubleValue()));
             newMeasure.save();
+            if (emissionPlan != null)
+            {
+                emissionPlan.addMeasure(inputComponent, metric.key(), true, metricValue.getValue().doubleValue());
+            }
         }
         else
         {
@@ -396,6 +752,10 @@ public final class SonargraphSensor implements Sensor
             newMeasure.on(inputComponent);
             newMeasure.withValue(Integer.valueOf(metricValue.getValue().intValue()));
             newMeasure.save();
+            if (emissionPlan != null)
+            {
+                emissionPlan.addMeasure(inputComponent, metric.key(), false, metricValue.getValue().intValue());
+            }
         }
     }
 
@@ -406,9 +766,9 @@ public final class SonargraphSensor implements Sensor
         {
             String nextMetricKey = SonargraphBase.createMetricKeyFromStandardName(nextMetricId.getName());
             Metric<Serializable> metric = data.getMetrics().get(nextMetricKey);
-            if (metric == null)
+            if (metric == null || data.measureCreatedByPreviousReport(nextMetricKey))
             {
-                //Try custom metrics
+                //Try custom metrics, they are also used to keep the metrics of several systems apart
                 nextMetricKey = SonargraphBase.createCustomMetricKeyFromStandardName(softwareSystem.getName(), nextMetricId.getName());
                 metric = data.getMetrics().get(nextMetricKey);
             }
@@ -416,10 +776,12 @@ public final class SonargraphSensor implements Sensor
             {
                 if (customMetrics == null)
                 {
-                    customMetrics = SonargraphBase.loadCustomMetrics();
+                    //Only the discovered ones, they are merged into the custom metrics file on save
+                    customMetrics = new Properties();
                 }
 
                 SonargraphBase.addCustomMetric(softwareSystem, nextMetricId, customMetrics);
+                profile.increment(Counter.CUSTOM_METRICS_DISCOVERED);
                 LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Custom metric added '" + softwareSystem.getName() + "/"
                         + nextMetricId.getName() + "'");
                 continue;
@@ -430,7 +792,13 @@ public final class SonargraphSensor implements Sensor
             {
                 if (!data.measureAlreadyCreated(nextMetricKey))
                 {
+                    final long saveStart = profile.start();
                     createNewMeasure(context, inputComponent, metric, metricValueOptional.get());
+                    profile.stop(Phase.MEASURE_SAVE, saveStart);
+                    if (dryRun == null)
+                    {
+                        profile.increment(Counter.MEASURES_SAVED);
+                    }
                     data.addCreatedMeasure(nextMetricKey);
                 }
             }
@@ -442,8 +810,21 @@ public final class SonargraphSensor implements Sensor
     }
 
     private void createIssue(final SensorContext context, final InputComponent inputComponent, final ActiveRule rule, final String msg,
-            final Consumer<NewIssueLocation> consumer)
+            final TextRange range)
     {
+        createIssue(context, inputComponent, rule, msg, range, Collections.emptyList());
+    }
+
+    private void createIssue(final SensorContext context, final InputComponent inputComponent, final ActiveRule rule, final String msg,
+            final TextRange range, final List<TextRange> secondaryRanges)
+    {
+        if (dryRun != null)
+        {
+            dryRun.addIssue(inputComponent, rule.getRule().ruleKey().toString(), msg);
+            return;
+        }
+
+        final long start = profile.start();
         final NewIssue newIssue = context.newIssue();
         newIssue.forRule(rule.getRule().ruleKey());
 
@@ -452,12 +833,22 @@ public final class SonargraphSensor implements Sensor
         newIssueLocation.message(msg);
         newIssue.at(newIssueLocation);
 
-        if (consumer != null)
+        if (range != null)
+        {
+            newIssueLocation.at(range);
+        }
+        for (final TextRange nextRange : secondaryRanges)
         {
-            consumer.accept(newIssueLocation);
+            newIssue.addLocation(newIssue.newLocation().on(inputComponent).at(nextRange));
         }
 
         newIssue.save();
+        if (emissionPlan != null)
+        {
+            emissionPlan.addIssue(inputComponent, rule.getRule().ruleKey(), msg, range, secondaryRanges);
+        }
+        profile.stop(Phase.ISSUE_SAVE, start);
+        profile.increment(Counter.ISSUES_SAVED);
     }
 
     @Override
@@ -466,39 +857,66 @@ public final class SonargraphSensor implements Sensor
         descriptor.name(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME);
     }
 
-    private File getReportFile(final Configuration configuration)
+    private List<File> getReportFiles(final Configuration configuration)
     {
-        String relativeReportPath = null;
-
-        final Optional<String> configuredRelativeReportPathOptional = configuration.get(SonargraphBase.XML_REPORT_FILE_PATH_KEY);
-        if (configuredRelativeReportPathOptional.isPresent())
+        final List<String> configuredReportPaths = new ArrayList<>();
+        for (final String nextConfiguredReportPath : configuration.getStringArray(SonargraphBase.XML_REPORT_FILE_PATH_KEY))
         {
-            final String configuredRelativeReportPath = configuredRelativeReportPathOptional.get();
-            if (!configuredRelativeReportPath.isEmpty())
+            if (!nextConfiguredReportPath.trim().isEmpty())
             {
-                relativeReportPath = configuredRelativeReportPath;
+                configuredReportPaths.add(nextConfiguredReportPath.trim());
             }
         }
 
-        if (relativeReportPath == null)
+        if (configuredReportPaths.isEmpty())
         {
-            relativeReportPath = SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT;
+            configuredReportPaths.add(SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT);
             LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": XML report file path not configured - using default '"
                     + SonargraphBase.XML_REPORT_FILE_PATH_DEFAULT + "'");
         }
 
-        final File reportFile = fileSystem.resolvePath(relativeReportPath);
-        if (reportFile.exists())
+        final Set<File> reportFiles = new LinkedHashSet<>();
+        for (final String nextReportPath : configuredReportPaths)
         {
-            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Using XML report file '" + reportFile.getAbsolutePath() + "'");
-            return reportFile;
+            if (SonargraphReportLoader.isPattern(nextReportPath))
+            {
+                try
+                {
+                    final List<File> nextMatches = SonargraphReportLoader.expand(fileSystem.baseDir(), nextReportPath);
+                    if (nextMatches.isEmpty())
+                    {
+                        LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": No XML report file matches '" + nextReportPath + "'");
+                    }
+                    reportFiles.addAll(nextMatches);
+                }
+                catch (final IOException e)
+                {
+                    LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to find XML report files matching '" + nextReportPath
+                            + "': " + e.getMessage());
+                }
+                continue;
+            }
+
+            final File nextReportFile = fileSystem.resolvePath(nextReportPath);
+            if (nextReportFile.exists())
+            {
+                reportFiles.add(nextReportFile);
+            }
+            else
+            {
+                LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": XML report file '" + nextReportFile.getAbsolutePath()
+                        + "' not found");
+            }
         }
 
-        LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": XML report file '" + reportFile.getAbsolutePath() + "' not found");
-        return null;
+        for (final File nextReportFile : reportFiles)
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Using XML report file '" + nextReportFile.getAbsolutePath() + "'");
+        }
+        return new ArrayList<>(reportFiles);
     }
 
-    private ProcessingData createProcessingData()
+    private ProcessingData createProcessingData(final Set<String> measuresOfPreviousReports)
     {
         final Map<String, ActiveRule> activeRules = new HashMap<>();
         qualityProfile.getActiveRulesByRepository(SonargraphBase.SONARGRAPH_PLUGIN_KEY).forEach(a -> activeRules.put(a.getRuleKey(), a));
@@ -508,7 +926,7 @@ public final class SonargraphSensor implements Sensor
                 .filter(m -> m.key().startsWith(SonargraphBase.METRIC_ID_PREFIX)).collect(Collectors.toMap(Metric::key, m -> m));
         LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + metrics.size() + " metric(s) defined");
 
-        return new ProcessingData(activeRules, metrics);
+        return new ProcessingData(activeRules, metrics, measuresOfPreviousReports);
     }
 
     private boolean isProject(final InputModule inputModule)
@@ -550,58 +968,574 @@ public final class SonargraphSensor implements Sensor
             return null;
         }
 
-        return SonargraphBase.matchModule(softwareSystem, inputModule.key(), fileSystem.baseDir());
+        final long start = profile.start();
+        final IModule module = SonargraphBase.matchModule(softwareSystem, inputModule.key(), fileSystem.baseDir());
+        profile.stop(Phase.MODULE_MATCHING, start);
+        if (module != null && !importFilter.acceptModule(module.getName()))
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Not importing Sonargraph module '" + module.getName()
+                    + "' - excluded by filter");
+            return null;
+        }
+        return module;
     }
 
-    private void process(final SensorContext context, final ISonargraphSystemController controller, final InputModule inputModule,
-            final boolean isProject)
+    //Processes the module and system level data and classifies the source file and directory issues, returns null if the input module is not
+    //part of the report. 'createdMeasures' holds the keys of the measures created by previously processed reports.
+    private ProcessingData classify(final SensorContext context, final ISonargraphSystemController controller, final InputModule inputModule,
+            final boolean isProject, final Set<String> createdMeasures)
     {
         final ISoftwareSystem softwareSystem = controller.getSoftwareSystem();
         final IModule module = getModule(softwareSystem, inputModule);
-        if (isProject || module != null)
+        if (!isProject && module == null)
+        {
+            return null;
+        }
+
+        final ISystemInfoProcessor systemInfoProcessor = controller.createSystemInfoProcessor();
+        checkQualityGate(softwareSystem, systemInfoProcessor);
+
+        final long snapshotStart = profile.start();
+        final ProcessingData data = createProcessingData(new LinkedHashSet<>(createdMeasures));
+        profile.stop(Phase.RULE_METRIC_SNAPSHOT, snapshotStart);
+        final IModuleInfoProcessor moduleInfoProcessor = module != null ? controller.createModuleInfoProcessor(module) : null;
+        final long resolutionStart = profile.start();
+        resolutionIndex = SonargraphResolutionIndex.create(systemInfoProcessor);
+        profile.stop(Phase.DESCRIPTION_BUILDING, resolutionStart);
+        if (timeBudget.isLimited())
+        {
+            countExpectedIssues(softwareSystem, module, moduleInfoProcessor, systemInfoProcessor, isProject);
+        }
+
+        //Module and system level data first, it is the most important if the time budget does not suffice for all source files
+        if ((module != null || isProject) && issueCounts != null)
         {
-            final ProcessingData data = createProcessingData();
-            if (module != null)
+            issueCounts.setHasModule();
+        }
+        if (module != null && !timeBudget.isExhausted("module metrics/issues"))
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Processing module metrics/issues");
+            processModule(context, inputModule, softwareSystem, module, moduleInfoProcessor, data);
+        }
+        if (isProject && !timeBudget.isExhausted("system metrics/issues"))
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Processing system metrics/issues");
+            processSystem(context, inputModule, softwareSystem, systemInfoProcessor, data);
+        }
+        if (module != null)
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Processing source file/directory issues");
+            processModuleElements(moduleInfoProcessor, data);
+        }
+        if (dryRun != null)
+        {
+            dryRun.recordModelHeap(softwareSystem);
+        }
+        //The stores refer to resolutions by ordinal, the issues of the model are no longer needed
+        resolutionIndex.releaseIssues();
+        return data;
+    }
+
+    private void checkQualityGate(final ISoftwareSystem softwareSystem, final ISystemInfoProcessor systemInfoProcessor)
+    {
+        if (!qualityGate.isEnabled())
+        {
+            return;
+        }
+
+        final List<String> failures = qualityGate.check(systemInfoProcessor);
+        if (failures.isEmpty())
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Quality gate precheck passed for system '" + softwareSystem.getName()
+                    + "'");
+            return;
+        }
+
+        final String message = SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Quality gate precheck failed for system '"
+                + softwareSystem.getName() + "': " + String.join(", ", failures);
+        if (dryRun != null)
+        {
+            LOGGER.warn(message + " (dry run, the scan is continued)");
+            return;
+        }
+        throw MessageException.of(message);
+    }
+
+    private void countExpectedIssues(final ISoftwareSystem softwareSystem, final IModule module, final IModuleInfoProcessor moduleInfoProcessor,
+            final ISystemInfoProcessor systemInfoProcessor, final boolean isProject)
+    {
+        final Predicate<IIssue> candidate = issue -> !issue.isIgnored() && !SonargraphBase.ignoreIssueType(issue.getIssueType())
+                && importFilter.acceptIssueType(issue.getIssueType().getName());
+        if (module != null)
+        {
+            timeBudget.addExpectedIssues(moduleInfoProcessor.getIssues(candidate).size());
+        }
+        if (isProject)
+        {
+            timeBudget.addExpectedIssues(systemInfoProcessor
+                    .getIssues(issue -> issue.getAffectedNamedElements().contains(softwareSystem) && candidate.test(issue)).size());
+        }
+    }
+
+    //Saved once after all reports have been processed, like the issue counts
+    @SuppressWarnings("unchecked")
+    private void reportTimeBudget(final SensorContext context, final InputModule inputModule)
+    {
+        final double completeness = timeBudget.getCompleteness();
+        if (dryRun != null)
+        {
+            dryRun.addMeasure(inputModule, SonargraphBase.IMPORT_COMPLETENESS.key());
+        }
+        else
+        {
+            final NewMeasure<Double> newMeasure = context.<Double> newMeasure();
+            newMeasure.forMetric((Metric<Double>) (Metric<?>) SonargraphBase.IMPORT_COMPLETENESS);
+            newMeasure.on(inputModule);
+            newMeasure.withValue(Double.valueOf(completeness));
+            newMeasure.save();
+            if (emissionPlan != null)
             {
-                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Processing module metrics/issues");
-                processModule(context, inputModule, softwareSystem, module, controller.createModuleInfoProcessor(module), data);
+                emissionPlan.addMeasure(inputModule, SonargraphBase.IMPORT_COMPLETENESS.key(), true, completeness);
             }
-            if (isProject)
+        }
+
+        if (timeBudget.isExhausted())
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Time budget of " + timeBudget.getBudgetMillis()
+                    + " ms exhausted before " + timeBudget.getStoppedBefore() + ", imported " + completeness + "% ("
+                    + timeBudget.getProcessedIssues() + " of " + (timeBudget.getProcessedIssues() + timeBudget.getSkippedIssues())
+                    + " issue(s) of all reports) in " + timeBudget.getElapsedMillis() + " ms");
+        }
+    }
+
+    //The counts of all processed reports are saved at once, so that several reports add up instead of saving a measure twice
+    @SuppressWarnings("unchecked")
+    private void saveIssueCounts(final SensorContext context, final InputModule inputModule)
+    {
+        final long start = profile.start();
+        issueCounts.forEachMeasure(inputModule, (component, metric, value) ->
+        {
+            if (dryRun != null)
             {
-                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Processing system metrics/issues");
-                processSystem(context, inputModule, softwareSystem, controller.createSystemInfoProcessor(), data);
+                dryRun.addMeasure(component, metric.key());
+                return;
             }
-            if (customMetrics != null)
+
+            final NewMeasure<Integer> newMeasure = context.<Integer> newMeasure();
+            newMeasure.forMetric((Metric<Integer>) (Metric<?>) metric);
+            newMeasure.on(component);
+            newMeasure.withValue(Integer.valueOf(value));
+            newMeasure.save();
+            if (emissionPlan != null)
+            {
+                emissionPlan.addMeasure(component, metric.key(), false, value);
+            }
+            profile.increment(Counter.MEASURES_SAVED);
+        });
+        profile.stop(Phase.MEASURE_SAVE, start);
+    }
+
+    private SonargraphReportCache createReportCache(final Configuration configuration)
+    {
+        if (!configuration.getBoolean(SonargraphBase.REPORT_CACHE_KEY).orElse(Boolean.FALSE).booleanValue())
+        {
+            return null;
+        }
+
+        final Optional<String> configuredDirectory = configuration.get(SonargraphBase.REPORT_CACHE_DIRECTORY_KEY);
+        final File directory = configuredDirectory.isPresent() && !configuredDirectory.get().trim().isEmpty()
+                ? fileSystem.resolvePath(configuredDirectory.get().trim())
+                : new File(fileSystem.workDir(), SonargraphBase.REPORT_CACHE_DIRECTORY_DEFAULT);
+        final int maxSizeMb = configuration.getInt(SonargraphBase.REPORT_CACHE_MAX_SIZE_KEY)
+                .orElse(Integer.valueOf(SonargraphBase.REPORT_CACHE_MAX_SIZE_DEFAULT)).intValue();
+        return new SonargraphReportCache(directory, maxSizeMb * 1024L * 1024L);
+    }
+
+    private File getEmissionPlanFile()
+    {
+        return new File(fileSystem.workDir(), SonargraphEmissionPlan.FILE_NAME);
+    }
+
+    //The plan is only valid for the same report, module, active rules, metrics and analyzed files.
+    private String createEmissionPlanKey(final List<File> reportFiles, final InputModule inputModule, final boolean isProject)
+    {
+        final long start = profile.start();
+        try
+        {
+            final List<String> parts = new ArrayList<>();
+            for (final File nextReportFile : reportFiles)
+            {
+                parts.add(SonargraphReportCache.createKey(nextReportFile));
+            }
+            parts.add(inputModule.key());
+            parts.add(Boolean.toString(isProject));
+            parts.add(fileSystem.baseDir().getAbsolutePath());
+            parts.add(compactMessages ? "compact:" + maxMessageLength : "verbose");
+            parts.add(collapseViolations ? "collapsed:" + collapsedViolationLines : "expanded");
+            parts.add(issueCounts != null ? "issueCounts" : "noIssueCounts");
+            parts.addAll(importFilter.getKeyParts());
+            parts.addAll(qualityGate.getKeyParts());
+            qualityProfile.getActiveRulesByRepository(SonargraphBase.SONARGRAPH_PLUGIN_KEY).stream().map(ActiveRule::getRuleKey)
+                    .collect(Collectors.toCollection(TreeSet::new)).forEach(parts::add);
+            metricFinder.findAll().stream().map(Metric::key).filter(k -> k.startsWith(SonargraphBase.METRIC_ID_PREFIX))
+                    .collect(Collectors.toCollection(TreeSet::new)).forEach(parts::add);
+
+            final Set<String> files = new TreeSet<>();
+            for (final InputFile nextInputFile : fileSystem.inputFiles(fileSystem.predicates().all()))
+            {
+                final String nextHash = nextInputFile instanceof DefaultInputFile ? ((DefaultInputFile) nextInputFile).hash()
+                        : nextInputFile.file().length() + "/" + nextInputFile.file().lastModified();
+                files.add(nextInputFile.relativePath() + "=" + nextHash);
+            }
+            parts.addAll(files);
+
+            return SonargraphEmissionPlan.createKey(parts);
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to create emission plan key: " + e.getMessage());
+            return null;
+        }
+        finally
+        {
+            profile.stop(Phase.EMISSION_PLAN, start);
+        }
+    }
+
+    private boolean replayEmissionPlan(final SensorContext context, final String key)
+    {
+        final long start = profile.start();
+        final File file = getEmissionPlanFile();
+        try
+        {
+            final SonargraphEmissionPlan plan = SonargraphEmissionPlan.read(file, key);
+            if (plan == null)
+            {
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": No emission plan for current report and files");
+                return false;
+            }
+            if (!plan.replay(context, fileSystem, metricFinder))
+            {
+                LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Emission plan '" + file.getAbsolutePath()
+                        + "' references unknown components or metrics");
+                return false;
+            }
+
+            profile.add(Counter.ISSUES_SAVED, plan.getNumberOfIssues());
+            profile.add(Counter.MEASURES_SAVED, plan.getNumberOfMeasures());
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Replayed " + plan.getNumberOfIssues() + " issue(s) and "
+                    + plan.getNumberOfMeasures() + " measure(s) from emission plan '" + file.getAbsolutePath() + "'");
+            return true;
+        }
+        catch (final IOException | RuntimeException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to read emission plan '" + file.getAbsolutePath() + "': "
+                    + e.getMessage());
+            return false;
+        }
+        finally
+        {
+            profile.stop(Phase.EMISSION_PLAN, start);
+        }
+    }
+
+    private void writeEmissionPlan(final String key)
+    {
+        if (profile.getCount(Counter.CUSTOM_METRICS_DISCOVERED) > 0)
+        {
+            //Needs a server restart and another complete import
+            return;
+        }
+
+        final long start = profile.start();
+        final File file = getEmissionPlanFile();
+        try
+        {
+            emissionPlan.write(file, key);
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Emission plan written to '" + file.getAbsolutePath() + "'");
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Unable to write emission plan '" + file.getAbsolutePath() + "': "
+                    + e.getMessage());
+        }
+        finally
+        {
+            profile.stop(Phase.EMISSION_PLAN, start);
+        }
+    }
+
+    private void reportDiagnostics(final Configuration configuration)
+    {
+        diagnostics.log();
+        if (configuration.getBoolean(SonargraphBase.DIAGNOSTICS_DUMP_KEY).orElse(Boolean.FALSE).booleanValue() && !diagnostics.isEmpty())
+        {
+            try
+            {
+                final File dumpFile = diagnostics.writeAll(fileSystem.workDir());
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Diagnostics written to '" + dumpFile.getAbsolutePath() + "'");
+            }
+            catch (final IOException e)
+            {
+                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to write diagnostics", e);
+            }
+        }
+    }
+
+    private void reportProfile(final Configuration configuration)
+    {
+        profile.finish();
+        LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + profile.createSummary());
+
+        if (configuration.getBoolean(SonargraphBase.IMPORT_PROFILE_KEY).orElse(Boolean.FALSE).booleanValue())
+        {
+            try
+            {
+                final File profileFile = profile.writeJson(fileSystem.workDir());
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Import profile written to '" + profileFile.getAbsolutePath()
+                        + "'");
+            }
+            catch (final IOException e)
+            {
+                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to write import profile", e);
+            }
+        }
+    }
+
+    private void reportDryRun()
+    {
+        dryRun.finish();
+        LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + dryRun.createSummary());
+        try
+        {
+            final File dryRunFile = dryRun.writeJson(fileSystem.workDir(), profile);
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Dry run result written to '" + dryRunFile.getAbsolutePath() + "'");
+        }
+        catch (final IOException e)
+        {
+            LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Failed to write dry run result", e);
+        }
+    }
+
+    //Probes the report headers, so that only the reports are loaded that can provide data for the module
+    private List<File> getRelevantReportFiles(final List<File> reportFiles, final InputModule inputModule)
+    {
+        if (!fileSystem.hasFiles(f -> SonargraphBase.JAVA.equals(f.language())))
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Not trying to match '" + inputModule.key()
+                    + "' - does not contain Java files");
+            return Collections.emptyList();
+        }
+        return reportFiles.stream().filter(f -> isRelevantModule(f, inputModule)).collect(Collectors.toList());
+    }
+
+    private boolean isRelevantModule(final File reportFile, final InputModule inputModule)
+    {
+        final long start = profile.start();
+        try
+        {
+            final SonargraphReportHeader header = SonargraphReportHeader.read(reportFile);
+            if (header.getModuleRootDirectories().isEmpty())
+            {
+                LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Not trying to match '" + inputModule.key()
+                        + "' - no modules defined in Sonargraph system");
+                return false;
+            }
+            final List<String> candidates = SonargraphBase.getModuleCandidates(header.getBaseDir(), header.getModuleRootDirectories(),
+                    fileSystem.baseDir());
+            if (candidates.size() != 1)
+            {
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": No module match found for '" + inputModule.key() + "'");
+                return false;
+            }
+            if (!importFilter.acceptModule(candidates.get(0)))
+            {
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Not importing Sonargraph module '" + candidates.get(0)
+                        + "' - excluded by filter");
+                return false;
+            }
+            return true;
+        }
+        catch (final IOException e)
+        {
+            LOGGER.warn(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + e.getMessage() + ", loading complete report");
+            return true;
+        }
+        finally
+        {
+            profile.stop(Phase.HEADER_PROBE, start);
+        }
+    }
+
+    //'createdMeasures' holds the keys of the measures created by previously processed reports and is updated.
+    //The report model is only referenced while classifying, so that it can be collected before the classified issues are emitted.
+    private boolean process(final SensorContext context, final LoadedReport loadedReport, final InputModule inputModule, final boolean isProject,
+            final Set<String> createdMeasures)
+    {
+        if (!loadedReport.isSuccess())
+        {
+            LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + loadedReport.getResult().toString());
+            return false;
+        }
+
+        final Object emissionEvent = SonargraphFlightRecorder.beginModuleEmission();
+        final ProcessingData data = classify(context, loadedReport.releaseController(), inputModule, isProject, createdMeasures);
+        if (data == null)
+        {
+            return true;
+        }
+
+        if (dryRun != null)
+        {
+            dryRun.recordEmissionHeap();
+        }
+        for (final SonargraphIssueStore nextIssueStore : data.getIssueStores())
+        {
+            emit(context, nextIssueStore);
+        }
+        timeBudget.finishReport();
+        resolutionIndex = null;
+        createdMeasures.addAll(data.getCreatedMeasures());
+        if (customMetrics != null)
+        {
+            if (dryRun == null)
             {
                 SonargraphBase.save(customMetrics);
-                customMetrics = null;
             }
+            customMetrics = null;
         }
+        SonargraphFlightRecorder.commitModuleEmission(emissionEvent, inputModule.key(), isProject, profile.getCount(Counter.ISSUES_SAVED),
+                profile.getCount(Counter.MEASURES_SAVED),
+                profile.getCount(Counter.UNRESOLVED_FILES) + profile.getCount(Counter.UNRESOLVED_DIRECTORIES));
+        return true;
+    }
+
+    //Reports are processed one after the other in the configured order. Depending on the import strategy they are all loaded concurrently
+    //before or each one is loaded right before it is processed.
+    private boolean loadAndProcess(final SensorContext context, final List<File> reportFiles, final InputModule inputModule,
+            final boolean isProject)
+    {
+        final SonargraphImportStrategy strategy = SonargraphImportStrategy.select(
+                context.config().get(SonargraphBase.IMPORT_STRATEGY_KEY).orElse(SonargraphImportStrategy.AUTO), reportFiles,
+                SonargraphImportStrategy.getAvailableHeap());
+        final String strategyMessage = SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Using import strategy '"
+                + strategy.getMode().getKey() + "' - " + strategy.getReason();
+        if (strategy.isHeapExceeded())
+        {
+            LOGGER.warn(strategyMessage + " - consider increasing the maximum heap of the scanner");
+        }
+        else
+        {
+            LOGGER.info(strategyMessage);
+        }
+
+        final SonargraphReportCache reportCache = createReportCache(context.config());
+        final Set<String> createdMeasures = new LinkedHashSet<>();
+        boolean success = true;
+        if (strategy.getMode() == SonargraphImportStrategy.Mode.SEQUENTIAL)
+        {
+            for (final File nextReportFile : reportFiles)
+            {
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Reading XML report file '" + nextReportFile.getAbsolutePath()
+                        + "'");
+                final long loadStart = profile.start();
+                final LoadedReport nextLoadedReport = SonargraphReportLoader.load(nextReportFile, reportCache);
+                profile.stop(Phase.REPORT_LOAD, loadStart);
+                success &= process(context, nextLoadedReport, inputModule, isProject, createdMeasures);
+            }
+            return success;
+        }
+
+        for (final File nextReportFile : reportFiles)
+        {
+            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Reading XML report file '" + nextReportFile.getAbsolutePath() + "'");
+        }
+        final long loadStart = profile.start();
+        final List<LoadedReport> loadedReports = SonargraphReportLoader.load(reportFiles, reportCache, Runtime.getRuntime().availableProcessors());
+        profile.stop(Phase.REPORT_LOAD, loadStart);
+        for (final LoadedReport nextLoadedReport : loadedReports)
+        {
+            success &= process(context, nextLoadedReport, inputModule, isProject, createdMeasures);
+        }
+        return success;
     }
 
     @Override
     public void execute(final SensorContext context)
     {
+        //The scan state below lives in the instance fields, a fresh instance per execution confines it to the executing thread.
+        //This way one sensor can serve several modules that are scanned concurrently.
+        new SonargraphSensor(fileSystem, qualityProfile, metricFinder, nanoTime).executeScan(context);
+    }
+
+    private void executeScan(final SensorContext context)
+    {
+        timeBudget = new SonargraphTimeBudget(context.config().getLong(SonargraphBase.IMPORT_TIME_BUDGET_KEY).orElse(Long.valueOf(0)).longValue(),
+                nanoTime);
         final InputModule inputModule = context.module();
         final boolean isProject = isProject(inputModule);
 
         LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Processing " + (isProject ? "project '" : "module '") + inputModule.key()
                 + "'");
 
-        final File reportFile = getReportFile(context.config());
-        if (reportFile != null)
+        profile = new SonargraphImportProfile(inputModule.key());
+        compactMessages = context.config().getBoolean(SonargraphBase.COMPACT_MESSAGES_KEY).orElse(Boolean.FALSE).booleanValue();
+        maxMessageLength = context.config().getInt(SonargraphBase.MESSAGE_MAX_LENGTH_KEY)
+                .orElse(Integer.valueOf(SonargraphBase.MESSAGE_MAX_LENGTH_DEFAULT)).intValue();
+        collapseViolations = context.config().getBoolean(SonargraphBase.COLLAPSE_VIOLATIONS_KEY).orElse(Boolean.FALSE).booleanValue();
+        collapsedViolationLines = Math.max(1, context.config().getInt(SonargraphBase.COLLAPSE_VIOLATIONS_MAX_LINES_KEY)
+                .orElse(Integer.valueOf(SonargraphBase.COLLAPSE_VIOLATIONS_MAX_LINES_DEFAULT)).intValue());
+        importFilter = SonargraphImportFilter.create(context.config());
+        qualityGate = SonargraphQualityGate.create(context.config());
+        issueCounts = context.config().getBoolean(SonargraphBase.ISSUE_COUNTS_KEY).orElse(Boolean.FALSE).booleanValue()
+                ? new SonargraphIssueCounts()
+                : null;
+        dryRun = context.config().getBoolean(SonargraphBase.DRY_RUN_KEY).orElse(Boolean.FALSE).booleanValue()
+                ? new SonargraphDryRun(inputModule.key())
+                : null;
+        diagnostics = new SonargraphDiagnostics(context.config().getInt(SonargraphBase.DIAGNOSTICS_MAX_EXAMPLES_KEY)
+                .orElse(Integer.valueOf(SonargraphBase.DIAGNOSTICS_MAX_EXAMPLES_DEFAULT)).intValue(),
+                context.config().getBoolean(SonargraphBase.DIAGNOSTICS_DUMP_KEY).orElse(Boolean.FALSE).booleanValue());
+        lineTable = new SonargraphLineTable(profile, diagnostics);
+        final List<File> allReportFiles = getReportFiles(context.config());
+        if (!allReportFiles.isEmpty())
         {
-            LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Reading XML report file '" + reportFile.getAbsolutePath() + "'");
-
-            final ISonargraphSystemController controller = ControllerAccess.createController();
-            final Result result = controller.loadSystemReport(reportFile);
-            if (result.isSuccess())
+            final List<File> reportFiles = isProject ? allReportFiles : getRelevantReportFiles(allReportFiles, inputModule);
+            if (reportFiles.isEmpty())
             {
-                process(context, controller, inputModule, isProject);
+                LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Skipping '" + inputModule.key() + "' - nothing to import");
             }
             else
             {
-                LOGGER.error(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": " + result.toString());
+                //A dry run neither replays nor records
+                final String emissionPlanKey = dryRun == null
+                        && context.config().getBoolean(SonargraphBase.EMISSION_PLAN_KEY).orElse(Boolean.FALSE).booleanValue()
+                                ? createEmissionPlanKey(reportFiles, inputModule, isProject)
+                        : null;
+                if (emissionPlanKey == null || !replayEmissionPlan(context, emissionPlanKey))
+                {
+                    emissionPlan = emissionPlanKey != null ? new SonargraphEmissionPlan() : null;
+                    final boolean processed = loadAndProcess(context, reportFiles, inputModule, isProject);
+                    if (timeBudget.isLimited())
+                    {
+                        reportTimeBudget(context, inputModule);
+                    }
+                    if (issueCounts != null)
+                    {
+                        saveIssueCounts(context, inputModule);
+                    }
+                    if (processed && emissionPlan != null && !timeBudget.isExhausted())
+                    {
+                        writeEmissionPlan(emissionPlanKey);
+                    }
+                    emissionPlan = null;
+                }
+            }
+            reportDiagnostics(context.config());
+            reportProfile(context.config());
+            if (dryRun != null)
+            {
+                reportDryRun();
             }
         }
 
@@ -0,0 +1,144 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+//Time budget of an import, checked cooperatively between phases and between source files.
+//Once exhausted it stays exhausted and remembers the step it stopped before. The issues are counted per report and added up to the
+//processed and skipped issues of all reports when a report is finished, the completeness is derived from these totals.
+final class SonargraphTimeBudget
+{
+    private final long budgetMillis;
+    private final long startNanos;
+    private final LongSupplier nanoTime;
+    private String stoppedBefore;
+    private int expectedIssues;
+    private int reachedIssues;
+    private long processedIssues;
+    private long skippedIssues;
+
+    //'nanoTime' is the clock the budget is measured with
+    SonargraphTimeBudget(final long budgetMillis, final long startNanos, final LongSupplier nanoTime)
+    {
+        this.budgetMillis = budgetMillis;
+        this.startNanos = startNanos;
+        this.nanoTime = nanoTime;
+    }
+
+    SonargraphTimeBudget(final long budgetMillis, final long startNanos)
+    {
+        this(budgetMillis, startNanos, System::nanoTime);
+    }
+
+    //A budget <= 0 means unlimited
+    SonargraphTimeBudget(final long budgetMillis, final LongSupplier nanoTime)
+    {
+        this(budgetMillis, nanoTime.getAsLong(), nanoTime);
+    }
+
+    SonargraphTimeBudget(final long budgetMillis)
+    {
+        this(budgetMillis, System::nanoTime);
+    }
+
+    boolean isLimited()
+    {
+        return budgetMillis > 0;
+    }
+
+    long getBudgetMillis()
+    {
+        return budgetMillis;
+    }
+
+    long getElapsedMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanoTime.getAsLong() - startNanos);
+    }
+
+    //Returns true if no time is left for 'step'
+    boolean isExhausted(final String step)
+    {
+        if (stoppedBefore != null)
+        {
+            return true;
+        }
+        if (isLimited() && getElapsedMillis() >= budgetMillis)
+        {
+            stoppedBefore = step;
+            return true;
+        }
+        return false;
+    }
+
+    boolean isExhausted()
+    {
+        return stoppedBefore != null;
+    }
+
+    String getStoppedBefore()
+    {
+        return stoppedBefore;
+    }
+
+    //Issues of the current report that would be processed without a time budget
+    void addExpectedIssues(final int issues)
+    {
+        expectedIssues += issues;
+    }
+
+    //Issues of the current report that have been processed
+    void addReachedIssues(final int issues)
+    {
+        reachedIssues += issues;
+    }
+
+    void finishReport()
+    {
+        processedIssues = getProcessedIssues();
+        skippedIssues = getSkippedIssues();
+        expectedIssues = 0;
+        reachedIssues = 0;
+    }
+
+    //Processed issues of all reports including the current one
+    long getProcessedIssues()
+    {
+        return processedIssues + Math.min(reachedIssues, expectedIssues);
+    }
+
+    //Skipped issues of all reports including the current one
+    long getSkippedIssues()
+    {
+        return skippedIssues + Math.max(0, expectedIssues - reachedIssues);
+    }
+
+    //Percentage of the expected issues of all reports that were processed, 100 if the import was not stopped
+    double getCompleteness()
+    {
+        final long processed = getProcessedIssues();
+        final long total = processed + getSkippedIssues();
+        if (!isExhausted() || total == 0)
+        {
+            return isExhausted() ? 0.0 : 100.0;
+        }
+        return Math.floor(1000.0 * processed / total) / 10.0;
+    }
+}
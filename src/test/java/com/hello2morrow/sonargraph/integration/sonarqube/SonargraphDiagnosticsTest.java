@@ -0,0 +1,128 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputPath;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphDiagnostics.Kind;
+
+public final class SonargraphDiagnosticsTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Test
+    public void testAggregation() throws IOException
+    {
+        final SonargraphDiagnostics diagnostics = new SonargraphDiagnostics(2, false);
+        assertTrue(diagnostics.isEmpty());
+        for (int i = 0; i < 5; i++)
+        {
+            diagnostics.add(Kind.UNRESOLVED_SOURCE_FILE, "file " + i);
+        }
+        diagnostics.add(Kind.WORKSPACE_ISSUE, "issue\n - element");
+
+        assertFalse(diagnostics.isEmpty());
+        assertEquals(5, diagnostics.getCount(Kind.UNRESOLVED_SOURCE_FILE));
+        assertEquals(0, diagnostics.getCount(Kind.UNRESOLVED_DIRECTORY));
+        assertEquals(Arrays.asList("file 0", "file 1"), diagnostics.getExamples(Kind.UNRESOLVED_SOURCE_FILE));
+        assertEquals("Sonargraph Integration: 5 source file(s) of the report not found, first 2:\n - file 0\n - file 1",
+                diagnostics.createSummary(Kind.UNRESOLVED_SOURCE_FILE));
+        assertEquals("Sonargraph Integration: 1 workspace issue(s) found:\n - issue\n - element", diagnostics.createSummary(Kind.WORKSPACE_ISSUE));
+
+        final StringWriter writer = new StringWriter();
+        diagnostics.writeAll(writer);
+        assertFalse(writer.toString().contains("file 2"));
+    }
+
+    @Test
+    public void testKeepAll() throws IOException
+    {
+        final SonargraphDiagnostics diagnostics = new SonargraphDiagnostics(1, true);
+        diagnostics.add(Kind.UNRESOLVED_DIRECTORY, "a");
+        diagnostics.add(Kind.UNRESOLVED_DIRECTORY, "b");
+        assertEquals(Arrays.asList("a"), diagnostics.getExamples(Kind.UNRESOLVED_DIRECTORY));
+
+        final File file = diagnostics.writeAll(temporaryFolder.newFolder("work"));
+        assertEquals(Arrays.asList("UNRESOLVED_DIRECTORY (2 directory(ies) of the report not found)", "a", "b"),
+                Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testSensor() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        final File workDirectory = temporaryFolder.newFolder("work");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(30).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        //Only every other file is part of the analysis
+        final List<InputPath> inputPaths = fixture.getInputPaths();
+        final List<InputPath> analyzed = new ArrayList<>();
+        for (int i = 0; i < inputPaths.size(); i++)
+        {
+            if (i % 2 == 0 || !(inputPaths.get(i) instanceof InputFile))
+            {
+                analyzed.add(inputPaths.get(i));
+            }
+        }
+
+        final SensorContextTester sensorContext = fixture.createSensorContext(analyzed);
+        sensorContext.fileSystem().setWorkDir(workDirectory.toPath());
+        sensorContext.settings().setProperty(SonargraphBase.DIAGNOSTICS_DUMP_KEY, true);
+        SonargraphSensorFixture.execute(sensorContext);
+
+        final File dumpFile = new File(workDirectory, SonargraphDiagnostics.DUMP_FILE_NAME);
+        assertTrue(dumpFile.exists());
+        final List<String> lines = Files.readAllLines(dumpFile.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0), lines.get(0).startsWith(Kind.UNRESOLVED_SOURCE_FILE.name() + " ("));
+        assertTrue(lines.size() > SonargraphBase.DIAGNOSTICS_MAX_EXAMPLES_DEFAULT);
+    }
+}
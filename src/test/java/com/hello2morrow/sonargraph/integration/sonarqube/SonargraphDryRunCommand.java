@@ -0,0 +1,63 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+//Runs the sensor in dry-run mode against an XML report and a source tree with all rules active, public for the
+//exec step of the 'dry-run' profile.
+//The result is written to the file 'sonargraph-dry-run.json' in the output directory.
+public final class SonargraphDryRunCommand
+{
+    private SonargraphDryRunCommand()
+    {
+        super();
+    }
+
+    //Usage: SonargraphDryRunCommand <XML report file> <source base directory> [<output directory>] [<property>=<value> ...]
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            throw new IllegalArgumentException("Usage: " + SonargraphDryRunCommand.class.getSimpleName()
+                    + " <XML report file> <source base directory> [<output directory>] [<property>=<value> ...]");
+        }
+
+        int nextArgument = 2;
+        final File outputDirectory = args.length > 2 && !args[2].contains("=") ? new File(args[nextArgument++]) : new File(".");
+
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(new File(args[1]), new File(args[0]).getAbsolutePath(), ".");
+        final SensorContextTester sensorContextTester = fixture.createSensorContext();
+        sensorContextTester.fileSystem().setWorkDir(outputDirectory.getAbsoluteFile().toPath());
+        for (; nextArgument < args.length; nextArgument++)
+        {
+            final int separator = args[nextArgument].indexOf('=');
+            if (separator <= 0)
+            {
+                throw new IllegalArgumentException("Property expected as <property>=<value>: '" + args[nextArgument] + "'");
+            }
+            sensorContextTester.settings().setProperty(args[nextArgument].substring(0, separator), args[nextArgument].substring(separator + 1));
+        }
+        sensorContextTester.settings().setProperty(SonargraphBase.DRY_RUN_KEY, true);
+
+        SonargraphSensorFixture.execute(sensorContextTester);
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+public final class SonargraphDryRunTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File baseDirectory;
+    private File reportFile;
+    private SonargraphSensorFixture fixture;
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+        baseDirectory = temporaryFolder.newFolder("project");
+        reportFile = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(20).setDuplicateBlocks(5, 3)
+                .generate(baseDirectory);
+        fixture = SonargraphSensorFixture.create(baseDirectory);
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    private SensorContextTester execute(final boolean dryRun) throws IOException
+    {
+        final SensorContextTester sensorContextTester = fixture.createSensorContext();
+        sensorContextTester.fileSystem().setWorkDir(temporaryFolder.newFolder().toPath());
+        sensorContextTester.settings().setProperty(SonargraphBase.DRY_RUN_KEY, dryRun);
+        return SonargraphSensorFixture.execute(sensorContextTester);
+    }
+
+    private static String readResult(final File directory) throws IOException
+    {
+        final File resultFile = new File(directory, SonargraphDryRun.JSON_FILE_NAME);
+        assertTrue(resultFile.getAbsolutePath(), resultFile.exists());
+        return new String(Files.readAllBytes(resultFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNothingSaved() throws IOException
+    {
+        final SensorContextTester saved = execute(false);
+        final SensorContextTester dryRun = execute(true);
+        assertTrue(saved.allIssues().size() > 0);
+        assertEquals(0, dryRun.allIssues().size());
+        final String moduleKey = dryRun.module().key();
+        assertEquals(0, dryRun.measures(moduleKey).size());
+
+        final String result = readResult(dryRun.fileSystem().workDir());
+        assertTrue(result, result.contains("\"issues\":" + saved.allIssues().size() + ","));
+        assertTrue(result, result.contains("\"measures\":" + saved.measures(moduleKey).size() + ","));
+        assertTrue(result, result.contains("\"issuesPerRule\":{"));
+        assertTrue(result, result.contains("\"issuesPerComponent\":{"));
+        assertTrue(result, result.contains("\"phasesMs\":{"));
+        assertTrue(result, !result.contains("\"peakHeapBytes\":-1"));
+    }
+
+    private static long getLong(final String result, final String name)
+    {
+        final Matcher matcher = Pattern.compile("\"" + name + "\":(-?\\d+)").matcher(result);
+        assertTrue(result, matcher.find());
+        return Long.parseLong(matcher.group(1));
+    }
+
+    @Test
+    public void testModelReleasedBeforeEmission() throws IOException
+    {
+        final File largeDirectory = temporaryFolder.newFolder("large");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(1000).setIssuesPerType(1000).setResolutions(100).generate(largeDirectory);
+        final SensorContextTester sensorContextTester = SonargraphSensorFixture.create(largeDirectory).createSensorContext();
+        sensorContextTester.fileSystem().setWorkDir(temporaryFolder.newFolder().toPath());
+        sensorContextTester.settings().setProperty(SonargraphBase.DRY_RUN_KEY, true);
+        SonargraphSensorFixture.execute(sensorContextTester);
+
+        final String result = readResult(sensorContextTester.fileSystem().workDir());
+        assertTrue(result, result.contains("\"modelRetainedOnEmission\":false"));
+        final long modelHeapBytes = getLong(result, "modelHeapBytes");
+        final long emissionHeapBytes = getLong(result, "emissionHeapBytes");
+        assertTrue(result, emissionHeapBytes > 0);
+        assertTrue("Live heap on emission " + emissionHeapBytes + " not below the one with the model " + modelHeapBytes,
+                emissionHeapBytes < modelHeapBytes);
+    }
+
+    @Test
+    public void testCounts()
+    {
+        final SonargraphDryRun dryRun = new SonargraphDryRun("module");
+        final SensorContextTester sensorContextTester = SensorContextTester.create(new File("."));
+        dryRun.addIssue(sensorContextTester.module(), "sonargraph:A", "abc");
+        dryRun.addIssue(sensorContextTester.module(), "sonargraph:A", "\u00e4");
+        dryRun.addIssue(sensorContextTester.module(), "sonargraph:B", "");
+        dryRun.addMeasure(sensorContextTester.module(), "sg_i.M");
+        dryRun.finish();
+
+        assertEquals(3, dryRun.getNumberOfIssues());
+        assertEquals(1, dryRun.getNumberOfMeasures());
+        assertEquals(5, dryRun.getMessageBytes());
+        assertEquals(Long.valueOf(2), dryRun.getIssuesPerRule().get("sonargraph:A"));
+        assertEquals(Long.valueOf(3), dryRun.getIssuesPerComponent().get(sensorContextTester.module().key()));
+        assertEquals(Long.valueOf(1), dryRun.getMeasuresPerMetric().get("sg_i.M"));
+        assertTrue(dryRun.getBaselineHeapBytes() > 0);
+        assertTrue(dryRun.getPeakHeapBytes() >= dryRun.getBaselineHeapBytes());
+        assertTrue(dryRun.createSummary(), dryRun.createSummary().contains("rule sonargraph:A: 2"));
+    }
+
+    @Test
+    public void testCommandLine() throws IOException
+    {
+        final File outputDirectory = temporaryFolder.newFolder("output");
+        SonargraphDryRunCommand.main(new String[] { reportFile.getAbsolutePath(), baseDirectory.getAbsolutePath(), outputDirectory.getAbsolutePath(),
+                SonargraphBase.COMPACT_MESSAGES_KEY + "=true" });
+        final String result = readResult(outputDirectory);
+        assertTrue(result, result.contains("\"issuesPerRule\":{\""));
+    }
+}
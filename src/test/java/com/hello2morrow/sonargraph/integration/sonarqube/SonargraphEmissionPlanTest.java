@@ -0,0 +1,190 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputPath;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.measure.Measure;
+
+public final class SonargraphEmissionPlanTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File baseDirectory;
+    private File workDirectory;
+    private SonargraphSensorFixture fixture;
+    private boolean collapseViolations;
+    private int timeBudgetMs;
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+        baseDirectory = temporaryFolder.newFolder("project");
+        workDirectory = temporaryFolder.newFolder("work");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(15).setDuplicateBlocks(3, 3).generate(baseDirectory);
+        fixture = SonargraphSensorFixture.create(baseDirectory);
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    private SensorContextTester execute(final List<InputPath> paths)
+    {
+        final SensorContextTester sensorContext = fixture.createSensorContext(paths);
+        sensorContext.fileSystem().setWorkDir(workDirectory.toPath());
+        sensorContext.settings().setProperty(SonargraphBase.EMISSION_PLAN_KEY, true);
+        sensorContext.settings().setProperty(SonargraphBase.IMPORT_PROFILE_KEY, true);
+        sensorContext.settings().setProperty(SonargraphBase.COLLAPSE_VIOLATIONS_KEY, collapseViolations);
+        sensorContext.settings().setProperty(SonargraphBase.IMPORT_TIME_BUDGET_KEY, timeBudgetMs);
+        return SonargraphSensorFixture.execute(sensorContext);
+    }
+
+    private SensorContextTester execute()
+    {
+        return execute(fixture.getInputPaths());
+    }
+
+    private static Set<String> describeIssues(final SensorContextTester sensorContext)
+    {
+        final Set<String> issues = new TreeSet<>();
+        for (final Issue nextIssue : sensorContext.allIssues())
+        {
+            final TextRange range = nextIssue.primaryLocation().textRange();
+            issues.add(nextIssue.primaryLocation().inputComponent().key() + "|" + nextIssue.ruleKey() + "|" + nextIssue.primaryLocation().message()
+                    + "|" + (range != null ? range.start() + "-" + range.end() : "") + "|" + nextIssue.flows().size());
+        }
+        return issues;
+    }
+
+    private static Set<String> describeMeasures(final SensorContextTester sensorContext)
+    {
+        final Set<String> measures = new TreeSet<>();
+        for (final Measure<?> nextMeasure : sensorContext.measures(sensorContext.module().key()))
+        {
+            measures.add(nextMeasure.metric().key() + "=" + nextMeasure.value());
+        }
+        return measures;
+    }
+
+    private boolean isReportLoaded() throws IOException
+    {
+        final String json = new String(Files.readAllBytes(new File(workDirectory, SonargraphImportProfile.JSON_FILE_NAME).toPath()),
+                StandardCharsets.UTF_8);
+        return !json.contains("\"reportLoad\":0,");
+    }
+
+    @Test
+    public void testReplay() throws IOException
+    {
+        final SensorContextTester imported = execute();
+        assertTrue(isReportLoaded());
+        final File planFile = new File(workDirectory, SonargraphEmissionPlan.FILE_NAME);
+        assertTrue("Emission plan not written", planFile.exists());
+
+        final SensorContextTester replayed = execute();
+        assertFalse("Report loaded despite emission plan", isReportLoaded());
+        assertTrue(imported.allIssues().size() > 0);
+        assertEquals(describeIssues(imported), describeIssues(replayed));
+        assertTrue(describeMeasures(imported).size() > 0);
+        assertEquals(describeMeasures(imported), describeMeasures(replayed));
+    }
+
+    @Test
+    public void testChangedFilesInvalidatePlan() throws IOException
+    {
+        execute();
+        final List<InputPath> inputPaths = fixture.getInputPaths();
+        final SensorContextTester changed = execute(inputPaths.subList(0, inputPaths.size() - 1));
+        assertTrue("Plan replayed despite changed files", isReportLoaded());
+        assertTrue(changed.allIssues().size() > 0);
+    }
+
+    @Test
+    public void testCorruptPlanIsIgnored() throws IOException
+    {
+        final Set<String> expected = describeIssues(execute());
+        final File planFile = new File(workDirectory, SonargraphEmissionPlan.FILE_NAME);
+        final byte[] content = Files.readAllBytes(planFile.toPath());
+        Files.write(planFile.toPath(), Arrays.copyOf(content, content.length / 2));
+
+        assertEquals(expected, describeIssues(execute()));
+        assertTrue(isReportLoaded());
+    }
+
+    @Test
+    public void testUnknownKey() throws IOException
+    {
+        execute();
+        assertNull(SonargraphEmissionPlan.read(new File(workDirectory, SonargraphEmissionPlan.FILE_NAME), "other"));
+        assertNull(SonargraphEmissionPlan.read(new File(workDirectory, "missing.bin"), "other"));
+    }
+
+    @Test
+    public void testReplayCollapsedViolations() throws IOException
+    {
+        //Several violations per source file
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(10).setIssuesPerType(30).generate(baseDirectory);
+        fixture = SonargraphSensorFixture.create(baseDirectory);
+        collapseViolations = true;
+
+        final SensorContextTester imported = execute();
+        final SensorContextTester replayed = execute();
+        assertFalse("Report loaded despite emission plan", isReportLoaded());
+        assertTrue(imported.allIssues().stream().anyMatch(i -> !i.flows().isEmpty()));
+        assertEquals(describeIssues(imported), describeIssues(replayed));
+    }
+
+    @Test
+    public void testReplayBudgetedImport() throws IOException
+    {
+        //Large enough to finish within the budget
+        timeBudgetMs = 600000;
+
+        final SensorContextTester imported = execute();
+        final SensorContextTester replayed = execute();
+        assertFalse("Report loaded despite emission plan", isReportLoaded());
+        assertTrue(describeMeasures(imported).contains(SonargraphBase.IMPORT_COMPLETENESS.key() + "=100.0"));
+        assertEquals(describeMeasures(imported), describeMeasures(replayed));
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assume;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public final class SonargraphFlightRecorderTest
+{
+    private static final String EVENT_PREFIX = "com.hello2morrow.sonargraph.integration.";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        Assume.assumeTrue("Java Flight Recorder not available", SonargraphFlightRecorder.isAvailable());
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Test
+    public void testNoEventsWithoutRecording()
+    {
+        assertNull(SonargraphFlightRecorder.beginReportLoad());
+        assertNull(SonargraphFlightRecorder.beginModuleMatch());
+        assertNull(SonargraphFlightRecorder.beginModuleEmission());
+        assertNull(SonargraphFlightRecorder.beginCustomMetricsStore());
+        //Must be ignored
+        SonargraphFlightRecorder.commitReportLoad(null, "report.xml", 0, true);
+    }
+
+    @Test
+    public void testEventsRecorded() throws IOException
+    {
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(10);
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        final File reportFile = generator.generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+        final SensorContextTester sensorContext = fixture.createSensorContext();
+        final SonargraphSensor sensor = SonargraphSensorFixture.createSensor(sensorContext);
+
+        final Path recordingFile = new File(temporaryFolder.getRoot(), "recording.jfr").toPath();
+        try (Recording recording = new Recording())
+        {
+            recording.enable(EVENT_PREFIX + "ReportLoad");
+            recording.enable(EVENT_PREFIX + "ModuleMatch");
+            recording.enable(EVENT_PREFIX + "ModuleEmission");
+            recording.start();
+            sensor.execute(sensorContext);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        final Map<String, RecordedEvent> events = new HashMap<>();
+        for (final RecordedEvent nextEvent : RecordingFile.readAllEvents(recordingFile))
+        {
+            if (nextEvent.getEventType().getName().startsWith(EVENT_PREFIX))
+            {
+                events.put(nextEvent.getEventType().getName().substring(EVENT_PREFIX.length()), nextEvent);
+            }
+        }
+
+        final RecordedEvent reportLoad = events.get("ReportLoad");
+        assertTrue("Report load not recorded: " + events.keySet(), reportLoad != null);
+        assertEquals(reportFile.length(), reportLoad.getLong("fileSize"));
+        assertTrue(reportLoad.getBoolean("success"));
+
+        final RecordedEvent moduleMatch = events.get("ModuleMatch");
+        assertTrue("Module match not recorded: " + events.keySet(), moduleMatch != null);
+        assertEquals(1, moduleMatch.getInt("modulesExamined"));
+        assertEquals(SonargraphReportGenerator.getModuleName(0), moduleMatch.getString("matchedModule"));
+
+        final RecordedEvent moduleEmission = events.get("ModuleEmission");
+        assertTrue("Module emission not recorded: " + events.keySet(), moduleEmission != null);
+        assertEquals(sensorContext.allIssues().size(), moduleEmission.getLong("issues"));
+        assertEquals(0, moduleEmission.getLong("unresolvedPaths"));
+    }
+}
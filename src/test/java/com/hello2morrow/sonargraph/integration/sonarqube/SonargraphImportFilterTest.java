@@ -0,0 +1,163 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+
+public final class SonargraphImportFilterTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    private static String[] patterns(final String... patterns)
+    {
+        return patterns;
+    }
+
+    @Test
+    public void testPaths()
+    {
+        final SonargraphImportFilter filter = new SonargraphImportFilter(patterns(), patterns("M0/**"),
+                patterns("**/generated/**", "*.txt", "regex:.*/C1[0-9]\\.java"), patterns());
+        assertTrue(filter.acceptPath("M0/src0/com/C1.java"));
+        assertTrue(filter.acceptPath("./M0/src0/com/C1.java"));
+        assertTrue(filter.acceptPath("M0\\src0\\com\\C1.java"));
+        assertFalse(filter.acceptPath("M1/src0/com/C1.java"));
+        assertFalse(filter.acceptPath("M0/src0/generated/C1.java"));
+        assertFalse(filter.acceptPath("M0/generated/C1.java"));
+        assertFalse(filter.acceptPath("M0/src0/com/C12.java"));
+        assertTrue(filter.acceptPath("M0/src0/readme.txt"));
+        assertFalse(filter.isEmpty());
+
+        final SonargraphImportFilter rootFilter = new SonargraphImportFilter(patterns(), patterns(), patterns("*.txt", "?.java"), patterns());
+        assertFalse(rootFilter.acceptPath("readme.txt"));
+        assertFalse(rootFilter.acceptPath("A.java"));
+        assertTrue(rootFilter.acceptPath("AB.java"));
+    }
+
+    @Test
+    public void testModulesAndIssueTypes()
+    {
+        final SonargraphImportFilter filter = new SonargraphImportFilter(patterns("*-generated", " "), patterns(), patterns(),
+                patterns("Threshold*", "regex:Duplicate.*"));
+        assertFalse(filter.acceptModule("core-generated"));
+        assertTrue(filter.acceptModule("core"));
+        assertFalse(filter.acceptIssueType(SonargraphReportGenerator.THRESHOLD_VIOLATION));
+        assertFalse(filter.acceptIssueType(SonargraphReportGenerator.THRESHOLD_VIOLATION_ERROR));
+        assertFalse(filter.acceptIssueType(SonargraphReportGenerator.DUPLICATE_CODE_BLOCK));
+        assertTrue(filter.acceptIssueType(SonargraphReportGenerator.ARCHITECTURE_VIOLATION));
+        assertTrue(filter.acceptIssueType(SonargraphReportGenerator.ARCHITECTURE_VIOLATION));
+        assertTrue(filter.acceptPath("any/path"));
+    }
+
+    @Test
+    public void testEmptyAndInvalidPatterns()
+    {
+        final SonargraphImportFilter filter = new SonargraphImportFilter(patterns(), patterns(""), patterns(), patterns());
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.acceptModule("M0"));
+        assertTrue(filter.acceptPath("M0/src0/C0.java"));
+        assertTrue(filter.acceptIssueType(SonargraphReportGenerator.TODO));
+
+        assertNull(SonargraphImportFilter.compile(patterns("regex:(")));
+        assertTrue(SonargraphImportFilter.compile(patterns("regex:(", "A*")).matcher("AB").matches());
+        assertEquals(new SonargraphImportFilter(patterns(), patterns("a"), patterns(), patterns()).getKeyParts(),
+                new SonargraphImportFilter(patterns(), patterns("a"), patterns(), patterns()).getKeyParts());
+    }
+
+    private static SensorContextTester execute(final SonargraphSensorFixture fixture, final String key, final String value)
+    {
+        final SensorContextTester sensorContext = fixture.createSensorContext();
+        if (key != null)
+        {
+            sensorContext.settings().setProperty(key, value);
+        }
+        return SonargraphSensorFixture.execute(sensorContext);
+    }
+
+    private static int countFileIssues(final SensorContextTester sensorContext, final String pathPart)
+    {
+        int count = 0;
+        for (final Issue nextIssue : sensorContext.allIssues())
+        {
+            final Object nextComponent = nextIssue.primaryLocation().inputComponent();
+            if (nextComponent instanceof InputFile && ((InputFile) nextComponent).relativePath().contains(pathPart))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testSensor() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(40).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester unfiltered = execute(fixture, null, null);
+        assertTrue(countFileIssues(unfiltered, "/p0/") > 0);
+        assertTrue(countFileIssues(unfiltered, "/p1/") > 0);
+
+        final SensorContextTester pathFiltered = execute(fixture, SonargraphBase.EXCLUDED_PATHS_KEY, "**/p1/**");
+        assertEquals(countFileIssues(unfiltered, "/p0/"), countFileIssues(pathFiltered, "/p0/"));
+        assertEquals(0, countFileIssues(pathFiltered, "/p1/"));
+
+        final SensorContextTester typeFiltered = execute(fixture, SonargraphBase.EXCLUDED_ISSUE_TYPES_KEY,
+                SonargraphReportGenerator.TODO + ",DuplicateCode*");
+        assertTrue(typeFiltered.allIssues().size() < unfiltered.allIssues().size());
+        for (final Issue nextIssue : typeFiltered.allIssues())
+        {
+            final String nextMessage = nextIssue.primaryLocation().message();
+            assertFalse(nextMessage, nextMessage.contains("Review "));
+            assertFalse(nextMessage, nextMessage.contains(" duplicate of "));
+        }
+
+        final SensorContextTester moduleFiltered = execute(fixture, SonargraphBase.EXCLUDED_MODULES_KEY,
+                SonargraphReportGenerator.getModuleName(0));
+        assertEquals(0, countFileIssues(moduleFiltered, "/"));
+    }
+}
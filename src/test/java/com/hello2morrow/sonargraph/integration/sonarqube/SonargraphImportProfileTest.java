@@ -0,0 +1,108 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Counter;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Phase;
+
+public final class SonargraphImportProfileTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Test
+    public void testPhasesAndCounters()
+    {
+        final SonargraphImportProfile profile = new SonargraphImportProfile("module");
+        profile.stop(Phase.REPORT_LOAD, profile.start() - 5_000_000);
+        profile.stop(Phase.REPORT_LOAD, profile.start() - 5_000_000);
+        profile.increment(Counter.ISSUES_SAVED);
+        profile.increment(Counter.ISSUES_SAVED);
+        profile.increment(Counter.UNRESOLVED_FILES);
+        profile.finish();
+
+        assertTrue(profile.getNanos(Phase.REPORT_LOAD) >= 10_000_000);
+        assertEquals(0, profile.getNanos(Phase.ISSUE_SAVE));
+        assertEquals(2, profile.getCount(Counter.ISSUES_SAVED));
+        assertEquals(1, profile.getCount(Counter.UNRESOLVED_FILES));
+        assertTrue(profile.getTotalNanos() >= 0);
+
+        final String summary = profile.createSummary();
+        assertTrue(summary, summary.contains("reportLoad 10 ms"));
+        assertTrue(summary, summary.contains("issuesSaved 2"));
+
+        final StringWriter writer = new StringWriter();
+        profile.writeJson(writer);
+        final String json = writer.toString();
+        assertTrue(json, json.startsWith("{\"module\":\"module\""));
+        assertTrue(json, json.contains("\"reportLoad\":10"));
+        assertTrue(json, json.contains("\"issuesSaved\":2"));
+        assertTrue(json, json.contains("\"unresolvedFiles\":1"));
+    }
+
+    @Test
+    public void testProfileWrittenToWorkDir() throws IOException
+    {
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(10);
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        generator.generate(baseDirectory);
+
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+        final SensorContextTester sensorContext = fixture.createSensorContext();
+        final File workDir = temporaryFolder.newFolder("work");
+        sensorContext.fileSystem().setWorkDir(workDir.toPath());
+        sensorContext.settings().setProperty(SonargraphBase.IMPORT_PROFILE_KEY, true);
+
+        final SonargraphSensor sensor = SonargraphSensorFixture.createSensor(sensorContext);
+        sensor.execute(sensorContext);
+
+        final File profileFile = new File(workDir, SonargraphImportProfile.JSON_FILE_NAME);
+        assertTrue("Import profile not written", profileFile.exists());
+        final String json = new String(Files.readAllBytes(profileFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(json, json.contains("\"issuesSaved\":" + sensorContext.allIssues().size()));
+        assertTrue(json, json.contains("\"unresolvedFiles\":0"));
+    }
+}
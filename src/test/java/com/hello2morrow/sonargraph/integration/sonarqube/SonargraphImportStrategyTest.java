@@ -0,0 +1,117 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportStrategy.Mode;
+
+public final class SonargraphImportStrategyTest
+{
+    private static final File TEST_REPORT = new File("./src/test/report/IntegrationSonarqube.xml");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Test
+    public void testConfigured()
+    {
+        final List<File> reports = Arrays.asList(TEST_REPORT, TEST_REPORT);
+        assertEquals(Mode.PARALLEL, SonargraphImportStrategy.select("parallel", reports, 0).getMode());
+        assertEquals(Mode.SEQUENTIAL, SonargraphImportStrategy.select(" Sequential ", reports, Long.MAX_VALUE).getMode());
+        assertEquals("configured", SonargraphImportStrategy.select("sequential", reports, 0).getReason());
+    }
+
+    @Test
+    public void testAuto()
+    {
+        final List<File> reports = Arrays.asList(TEST_REPORT, TEST_REPORT);
+        final long totalEstimate = 2 * SonargraphImportStrategy.estimateHeap(TEST_REPORT);
+        final long enoughHeap = totalEstimate * 100 / SonargraphImportStrategy.USABLE_HEAP_PERCENT + 100;
+
+        final SonargraphImportStrategy parallel = SonargraphImportStrategy.select(SonargraphImportStrategy.AUTO, reports, enoughHeap);
+        assertEquals(Mode.PARALLEL, parallel.getMode());
+        assertFalse(parallel.isHeapExceeded());
+        assertTrue(parallel.getReason(), parallel.getReason().startsWith("2 report(s) with "));
+
+        final SonargraphImportStrategy sequential = SonargraphImportStrategy.select(SonargraphImportStrategy.AUTO, reports, enoughHeap / 2);
+        assertEquals(Mode.SEQUENTIAL, sequential.getMode());
+        assertFalse(sequential.isHeapExceeded());
+
+        final SonargraphImportStrategy exceeded = SonargraphImportStrategy.select("unknown", reports, 0);
+        assertEquals(Mode.SEQUENTIAL, exceeded.getMode());
+        assertTrue(exceeded.isHeapExceeded());
+        assertTrue(exceeded.getReason(), exceeded.getReason().startsWith("unknown strategy 'unknown'"));
+
+        //Nothing to gain for a single report
+        assertEquals(Mode.PARALLEL, SonargraphImportStrategy.select(null, Collections.singletonList(TEST_REPORT), 0).getMode());
+    }
+
+    private static SensorContextTester execute(final SonargraphSensorFixture fixture, final String strategy)
+    {
+        final SensorContextTester sensorContextTester = fixture.createSensorContext();
+        sensorContextTester.settings().setProperty(SonargraphBase.IMPORT_STRATEGY_KEY, strategy);
+        return SonargraphSensorFixture.execute(sensorContextTester);
+    }
+
+    @Test
+    public void testSameResultForAllModes() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        final File reportFile = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(20).setMetricValues(false)
+                .generate(baseDirectory);
+        final File copy = new File(baseDirectory, "target/sonargraph-copy/report.xml");
+        Files.createDirectories(copy.getParentFile().toPath());
+        Files.copy(reportFile.toPath(), copy.toPath());
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory,
+                SonargraphReportGenerator.REPORT_PATH + ",target/sonargraph-copy/report.xml", ".");
+
+        final int parallelIssues = execute(fixture, "parallel").allIssues().size();
+        assertTrue(parallelIssues > 0);
+        assertEquals(parallelIssues, execute(fixture, "sequential").allIssues().size());
+        assertEquals(parallelIssues, execute(fixture, SonargraphImportStrategy.AUTO).allIssues().size());
+    }
+}
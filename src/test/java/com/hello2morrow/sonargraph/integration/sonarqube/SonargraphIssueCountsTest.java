@@ -0,0 +1,162 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputPath;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.profiles.RulesProfile;
+
+public final class SonargraphIssueCountsTest
+{
+    private static final int ISSUES_PER_TYPE = 20;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    private static Metric<Serializable> getMetric(final String key)
+    {
+        for (final Metric<Serializable> nextMetric : SonargraphIssueCounts.getMetrics())
+        {
+            if (nextMetric.key().equals(key))
+            {
+                return nextMetric;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testMetrics()
+    {
+        final Set<String> keys = new HashSet<>();
+        for (final Metric<Serializable> nextMetric : SonargraphIssueCounts.getMetrics())
+        {
+            assertTrue(nextMetric.key(), keys.add(nextMetric.key()));
+            assertTrue(nextMetric.key(), nextMetric.key().length() <= 64);
+        }
+        assertNotNull(getMetric("sg_i.ISSUES_ARCHITECTURE_VIOLATION"));
+        assertNotNull(getMetric("sg_i.ISSUES_THRESHOLD_VIOLATION"));
+        assertNotNull(getMetric("sg_i.ISSUES_SEVERITY_ERROR"));
+        assertNull(getMetric("sg_i.ISSUES_WORKSPACE"));
+        assertTrue(SonargraphBase.getPluginMetrics().containsAll(SonargraphIssueCounts.getMetrics()));
+    }
+
+    private static SensorContextTester execute(final SonargraphSensorFixture fixture, final RulesProfile qualityProfile)
+    {
+        final SensorContextTester sensorContextTester = fixture.createSensorContext();
+        sensorContextTester.settings().setProperty(SonargraphBase.ISSUE_COUNTS_KEY, true);
+        new SonargraphSensor(sensorContextTester.fileSystem(), qualityProfile, SonargraphSensorFixture.createMetricFinder())
+                .execute(sensorContextTester);
+        return sensorContextTester;
+    }
+
+    private static int getValue(final SensorContextTester sensorContextTester, final String componentKey, final String metricKey)
+    {
+        final Measure<Integer> measure = sensorContextTester.measure(componentKey, metricKey);
+        return measure != null ? measure.value().intValue() : 0;
+    }
+
+    @Test
+    public void testCountsWithoutActiveRules() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(10).setIssuesPerType(ISSUES_PER_TYPE).setMetricValues(false)
+                .generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester all = execute(fixture, SonargraphSensorFixture.createQualityProfile());
+        @SuppressWarnings("deprecation")
+        final SensorContextTester none = execute(fixture,
+                RulesProfile.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, SonargraphBase.JAVA));
+        assertFalse(all.allIssues().isEmpty());
+        assertTrue(none.allIssues().isEmpty());
+
+        final String moduleKey = none.module().key();
+        assertEquals(ISSUES_PER_TYPE, getValue(none, moduleKey, "sg_i.ISSUES_ARCHITECTURE_VIOLATION"));
+        assertEquals(2 * ISSUES_PER_TYPE, getValue(none, moduleKey, "sg_i.ISSUES_THRESHOLD_VIOLATION"));
+        assertEquals(0, getValue(none, moduleKey, "sg_i.ISSUES_SESSION"));
+
+        int fileSum = 0;
+        for (final InputPath nextInputPath : fixture.getInputPaths())
+        {
+            if (nextInputPath instanceof InputFile)
+            {
+                final String nextKey = ((InputFile) nextInputPath).key();
+                fileSum += getValue(none, nextKey, "sg_i.ISSUES_THRESHOLD_VIOLATION");
+                assertEquals(getValue(all, nextKey, "sg_i.ISSUES_SEVERITY_ERROR"), getValue(none, nextKey, "sg_i.ISSUES_SEVERITY_ERROR"));
+            }
+        }
+        assertEquals(2 * ISSUES_PER_TYPE, fileSum);
+        for (final Metric<Serializable> nextMetric : SonargraphIssueCounts.getMetrics())
+        {
+            assertEquals(nextMetric.key(), getValue(all, moduleKey, nextMetric.key()), getValue(none, moduleKey, nextMetric.key()));
+        }
+    }
+
+    @Test
+    public void testCountsOfSystemIssues() throws IOException
+    {
+        final int systemIssues = 3;
+        final File withoutDirectory = temporaryFolder.newFolder("without");
+        new SonargraphReportGenerator().setIssuesPerType(ISSUES_PER_TYPE).setMetricValues(false).generate(withoutDirectory);
+        final File withDirectory = temporaryFolder.newFolder("with");
+        new SonargraphReportGenerator().setIssuesPerType(ISSUES_PER_TYPE).setSystemIssues(systemIssues).setMetricValues(false)
+                .generate(withDirectory);
+
+        @SuppressWarnings("deprecation")
+        final RulesProfile none = RulesProfile.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, SonargraphBase.JAVA);
+        final SensorContextTester without = execute(SonargraphSensorFixture.create(withoutDirectory), none);
+        final SensorContextTester with = execute(SonargraphSensorFixture.create(withDirectory), none);
+        final String moduleKey = with.module().key();
+        assertEquals(ISSUES_PER_TYPE, getValue(without, moduleKey, "sg_i.ISSUES_TODO"));
+        assertEquals(ISSUES_PER_TYPE + systemIssues, getValue(with, moduleKey, "sg_i.ISSUES_TODO"));
+        assertEquals(getValue(without, moduleKey, "sg_i.ISSUES_THRESHOLD_VIOLATION"), getValue(with, moduleKey, "sg_i.ISSUES_THRESHOLD_VIOLATION"));
+    }
+}
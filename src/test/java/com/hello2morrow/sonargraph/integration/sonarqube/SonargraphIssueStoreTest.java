@@ -0,0 +1,160 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.internal.DefaultInputDir;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+
+public final class SonargraphIssueStoreTest
+{
+    private static final int FILES = 100;
+    private static final int RECORDS_PER_FILE = 7;
+
+    private static ActiveRule createRule(final String key)
+    {
+        return new ActiveRule(null, Rule.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, key), RulePriority.MAJOR);
+    }
+
+    @Test
+    public void testElementsAndRecords()
+    {
+        final ActiveRule cycleRule = createRule("CYCLE");
+        final ActiveRule duplicateRule = createRule("DUPLICATE");
+        final SonargraphIssueStore store = new SonargraphIssueStore();
+
+        final InputComponent[] components = new InputComponent[FILES];
+        for (int i = 0; i < FILES; i++)
+        {
+            components[i] = TestInputFileBuilder.create("module", "src/File" + i + ".java").build();
+            assertEquals(i, store.addElement(components[i], "File" + i, false, RECORDS_PER_FILE + 1));
+            for (int j = 0; j < RECORDS_PER_FILE; j++)
+            {
+                final boolean duplicate = j % 2 == 0;
+                store.addRecord(duplicate ? "DuplicateCodeBlock" : "CycleGroup", duplicate ? duplicateRule : cycleRule, i + j, duplicate ? 5 : -1,
+                        j == 0 ? 0 : -1, duplicate ? "Duplicate" : "Cycle", "description", "Provider", duplicate ? "Line(s) " + j : null);
+            }
+        }
+        final InputComponent directory = new DefaultInputDir("module", "src");
+        store.addElement(directory, "src", true, 0);
+
+        assertEquals(FILES + 1, store.getElementCount());
+        assertEquals(FILES * RECORDS_PER_FILE, store.getRecordCount());
+        for (int i = 0; i < FILES; i++)
+        {
+            assertSame(components[i], store.getComponent(i));
+            assertEquals("File" + i, store.getElementName(i));
+            assertFalse(store.isDirectory(i));
+            assertEquals(i * RECORDS_PER_FILE, store.getFirstRecord(i));
+            assertEquals(RECORDS_PER_FILE, store.getRecordCount(i));
+            assertEquals(RECORDS_PER_FILE + 1, store.getIssueCount(i));
+
+            for (int j = 0; j < RECORDS_PER_FILE; j++)
+            {
+                final int record = store.getFirstRecord(i) + j;
+                final boolean duplicate = j % 2 == 0;
+                assertEquals(duplicate ? "DuplicateCodeBlock" : "CycleGroup", store.getIssueType(record));
+                assertSame(duplicate ? duplicateRule : cycleRule, store.getRule(record));
+                assertEquals(i + j, store.getLine(record));
+                assertEquals(duplicate ? 5 : -1, store.getBlockSize(record));
+                assertEquals(j == 0 ? 0 : -1, store.getResolution(record));
+                assertEquals(duplicate ? "Duplicate" : "Cycle", store.getName(record));
+                assertEquals("description", store.getDescription(record));
+                assertEquals("Provider", store.getProvider(record));
+                if (duplicate)
+                {
+                    assertEquals("Line(s) " + j, store.getDetail(record));
+                }
+                else
+                {
+                    assertNull(store.getDetail(record));
+                }
+            }
+        }
+
+        assertSame(directory, store.getComponent(FILES));
+        assertTrue(store.isDirectory(FILES));
+        assertEquals(FILES * RECORDS_PER_FILE, store.getFirstRecord(FILES));
+        assertEquals(0, store.getRecordCount(FILES));
+    }
+
+    @Test
+    public void testSecondaryLines()
+    {
+        final ActiveRule rule = createRule("ARCHITECTURE_VIOLATION");
+        final SonargraphIssueStore store = new SonargraphIssueStore();
+        store.addElement(TestInputFileBuilder.create("module", "src/A.java").build(), "A", false, 4);
+        store.addRecord("ArchitectureViolation", rule, 3, -1, -1, "Architecture Violation", "3 violations", "Provider", null, new int[] { 5, 9 });
+        store.addRecord("ArchitectureViolation", rule, 7, -1, -1, "Architecture Violation", "", "Provider", null);
+
+        assertArrayEquals(new int[] { 5, 9 }, store.getSecondaryLines(0));
+        assertEquals(0, store.getSecondaryLines(1).length);
+    }
+
+    @Test
+    public void testStringsAreHeldOnce()
+    {
+        final ActiveRule rule = createRule("CYCLE");
+        final SonargraphIssueStore store = new SonargraphIssueStore();
+        store.addElement(TestInputFileBuilder.create("module", "src/A.java").build(), "A", false, 3);
+        for (int i = 0; i < 1000; i++)
+        {
+            store.addRecord("CycleGroup", rule, i, -1, -1, "Cycle", new String("description"), "Provider", null);
+        }
+        //Element name, issue type, name, description and provider
+        assertEquals(5, store.getStringCount());
+        assertEquals(1000, store.getRecordCount(0));
+    }
+
+    @Test
+    public void testRecordsByLine()
+    {
+        final ActiveRule rule = createRule("CYCLE");
+        final SonargraphIssueStore store = new SonargraphIssueStore();
+        store.addElement(TestInputFileBuilder.create("module", "src/A.java").build(), "A", false, 1);
+        store.addRecord("CycleGroup", rule, 1, -1, -1, "A1", null, "Provider", null);
+        store.addElement(TestInputFileBuilder.create("module", "src/B.java").build(), "B", false, 6);
+        final int[] lines = { 30, -1, 7, 30, 0, 7 };
+        for (int i = 0; i < lines.length; i++)
+        {
+            store.addRecord("CycleGroup", rule, lines[i], -1, -1, "B" + i, null, "Provider", null);
+        }
+
+        final int[] sorted = store.getRecordsByLine(1);
+        assertEquals(lines.length, sorted.length);
+        final String[] names = new String[sorted.length];
+        for (int i = 0; i < sorted.length; i++)
+        {
+            names[i] = store.getName(sorted[i]);
+        }
+        assertArrayEquals(new String[] { "B1", "B4", "B2", "B5", "B0", "B3" }, names);
+        assertEquals(0, store.getRecordsByLine(0)[0]);
+    }
+}
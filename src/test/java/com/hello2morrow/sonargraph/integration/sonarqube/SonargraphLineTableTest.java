@@ -0,0 +1,101 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.issue.internal.DefaultIssueLocation;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphDiagnostics.Kind;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphImportProfile.Counter;
+
+public final class SonargraphLineTableTest
+{
+    //4 lines, the third one is empty
+    private static final String CONTENT = "class A\n{\n\n}";
+
+    private SonargraphImportProfile profile;
+    private SonargraphDiagnostics diagnostics;
+    private SonargraphLineTable lineTable;
+    private InputFile inputFile;
+
+    @Before
+    public void before()
+    {
+        profile = new SonargraphImportProfile("module");
+        diagnostics = new SonargraphDiagnostics(10, false);
+        lineTable = new SonargraphLineTable(profile, diagnostics);
+        inputFile = new TestInputFileBuilder("module", "src/A.java").initMetadata(CONTENT).build();
+    }
+
+    private void assertRange(final TextRange range, final int startLine, final int endLine, final int endOffset)
+    {
+        assertNotNull(range);
+        assertEquals(startLine, range.start().line());
+        assertEquals(0, range.start().lineOffset());
+        assertEquals(endLine, range.end().line());
+        assertEquals(endOffset, range.end().lineOffset());
+        //Throws if the range is not valid for the file
+        new DefaultIssueLocation().on(inputFile).at(range);
+    }
+
+    @Test
+    public void testRangesWithinFile()
+    {
+        assertEquals(4, lineTable.getLines(inputFile));
+        assertRange(lineTable.createLineRange(inputFile, 1), 1, 1, 1);
+        assertRange(lineTable.createLineRange(inputFile, 0), 1, 1, 1);
+        assertRange(lineTable.createLineRange(inputFile, 3), 3, 3, 0);
+        assertRange(lineTable.createRange(inputFile, 1, 1), 1, 2, 1);
+        assertRange(lineTable.createRange(inputFile, 1, 2), 1, 3, 0);
+        assertEquals(0, profile.getCount(Counter.LOCATIONS_CLAMPED));
+        assertEquals(0, profile.getCount(Counter.LOCATIONS_DROPPED));
+        assertEquals(0, diagnostics.getCount(Kind.OUT_OF_RANGE_LOCATION));
+    }
+
+    @Test
+    public void testRangesBeyondEndOfFile()
+    {
+        assertRange(lineTable.createRange(inputFile, 2, 5), 2, 4, 1);
+        assertEquals(1, profile.getCount(Counter.LOCATIONS_CLAMPED));
+
+        assertNull(lineTable.createLineRange(inputFile, 5));
+        assertNull(lineTable.createRange(inputFile, 10, 2));
+        assertEquals(2, profile.getCount(Counter.LOCATIONS_DROPPED));
+        assertEquals(3, diagnostics.getCount(Kind.OUT_OF_RANGE_LOCATION));
+    }
+
+    @Test
+    public void testFileWithoutLineInformation()
+    {
+        final InputFile withoutMetadata = new TestInputFileBuilder("module", "src/B.java").build();
+        final TextRange range = lineTable.createRange(withoutMetadata, 7, 3);
+        assertEquals(7, range.start().line());
+        assertEquals(10, range.end().line());
+        assertEquals(1, range.end().lineOffset());
+        assertEquals(0, profile.getCount(Counter.LOCATIONS_CLAMPED));
+        assertEquals(0, profile.getCount(Counter.LOCATIONS_DROPPED));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.hello2morrow.sonargraph.integration.access.model.IExportMetaData;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphPrecompiledMetaData.IssueTypeInfo;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphPrecompiledMetaData.MetricIdInfo;
+
+public final class SonargraphPrecompiledMetaDataTest
+{
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        final IExportMetaData exportMetaData = SonargraphBase.readBuiltInMetaData();
+        assertNotNull(exportMetaData);
+
+        final SonargraphPrecompiledMetaData created = SonargraphPrecompiledMetaData.create(exportMetaData);
+        assertEquals(exportMetaData.getIssueTypes().size(), created.getIssueTypes().size());
+        assertTrue(created.getMetricIds().size() > 0);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        created.write(out);
+        final SonargraphPrecompiledMetaData read = SonargraphPrecompiledMetaData.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(created.getIssueTypes().size(), read.getIssueTypes().size());
+        for (int i = 0; i < created.getIssueTypes().size(); i++)
+        {
+            final IssueTypeInfo expected = created.getIssueTypes().get(i);
+            final IssueTypeInfo actual = read.getIssueTypes().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getPresentationName(), actual.getPresentationName());
+            assertEquals(expected.getSeverity(), actual.getSeverity());
+            assertEquals(expected.getCategoryName(), actual.getCategoryName());
+            assertEquals(expected.getCategoryPresentationName(), actual.getCategoryPresentationName());
+        }
+
+        assertEquals(created.getMetricIds().size(), read.getMetricIds().size());
+        for (int i = 0; i < created.getMetricIds().size(); i++)
+        {
+            final MetricIdInfo expected = created.getMetricIds().get(i);
+            final MetricIdInfo actual = read.getMetricIds().get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.isFloat(), actual.isFloat());
+            assertEquals(expected.getBestValue(), actual.getBestValue());
+            assertEquals(expected.getWorstValue(), actual.getWorstValue());
+        }
+    }
+
+    @Test
+    public void testMissingBestAndWorstValue() throws IOException
+    {
+        final SonargraphPrecompiledMetaData created = new SonargraphPrecompiledMetaData(Collections.emptyList(),
+                Arrays.asList(new MetricIdInfo("Unbounded", "Unbounded", "", false, null, null),
+                        new MetricIdInfo("Bounded", "Bounded", "", true, Double.valueOf(0.0), Double.valueOf(100.0))));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        created.write(out);
+
+        final List<MetricIdInfo> read = SonargraphPrecompiledMetaData.read(new ByteArrayInputStream(out.toByteArray())).getMetricIds();
+        assertNull(read.get(0).getBestValue());
+        assertNull(read.get(0).getWorstValue());
+        assertEquals(Double.valueOf(0.0), read.get(1).getBestValue());
+        assertEquals(Double.valueOf(100.0), read.get(1).getWorstValue());
+    }
+
+    @Test
+    public void testPrecompiledResourceMatchesXml() throws IOException
+    {
+        //Comparing with the XML meta data needs JAXB on the test classpath
+        assumeTrue(SonargraphPrecompiledMetaData.isJaxbAvailable());
+        try (InputStream inputStream = SonargraphPrecompiledMetaData.class
+                .getResourceAsStream(SonargraphPrecompiledMetaData.PRECOMPILED_META_DATA_RESOURCE_PATH))
+        {
+            assertNotNull("Precompiled meta data not created by the build", inputStream);
+            final SonargraphPrecompiledMetaData precompiled = SonargraphPrecompiledMetaData.read(inputStream);
+            final SonargraphPrecompiledMetaData fromXml = SonargraphPrecompiledMetaData.create(SonargraphBase.readBuiltInMetaData());
+            assertEquals(fromXml.getIssueTypes().size(), precompiled.getIssueTypes().size());
+            assertEquals(fromXml.getMetricIds().size(), precompiled.getMetricIds().size());
+        }
+    }
+
+    @Test
+    public void testSharedBuiltIn()
+    {
+        final SonargraphPrecompiledMetaData builtIn = SonargraphPrecompiledMetaData.getBuiltIn();
+        assertSame(builtIn, SonargraphPrecompiledMetaData.getBuiltIn());
+        assertEquals("ARCHITECTURE_VIOLATION", builtIn.getRuleKey("ArchitectureViolation"));
+        assertTrue(builtIn.isRuleKeyDefined("ARCHITECTURE_VIOLATION"));
+        assertEquals("SCRIPT_ISSUE", builtIn.getRuleKey(SonargraphBase.SCRIPT_ISSUE_NAME));
+        assertFalse(builtIn.isRuleKeyDefined("SCRIPT_ISSUE"));
+    }
+}
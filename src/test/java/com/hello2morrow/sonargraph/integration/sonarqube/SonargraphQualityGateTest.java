@@ -0,0 +1,147 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.MessageException;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphQualityGate.Condition;
+
+public final class SonargraphQualityGateTest
+{
+    private static final int ISSUES_PER_TYPE = 15;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    private ISystemInfoProcessor loadGeneratedReport(final File baseDirectory) throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(ISSUES_PER_TYPE)
+                .setCycleGroups(2).generate(baseDirectory);
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(controller.loadSystemReport(reportFile).isSuccess());
+        return controller.createSystemInfoProcessor();
+    }
+
+    @Test
+    public void testValues() throws IOException
+    {
+        final ISystemInfoProcessor systemInfoProcessor = loadGeneratedReport(temporaryFolder.newFolder("project"));
+        assertEquals(ISSUES_PER_TYPE, SonargraphQualityGate.getValue(Condition.ARCHITECTURE_VIOLATIONS, systemInfoProcessor).intValue());
+        assertEquals(2 * ISSUES_PER_TYPE, SonargraphQualityGate.getValue(Condition.THRESHOLD_VIOLATIONS, systemInfoProcessor).intValue());
+        assertEquals(2, SonargraphQualityGate.getValue(Condition.BIGGEST_CYCLE_GROUP, systemInfoProcessor).intValue());
+        assertNotNull(SonargraphQualityGate.getValue(Condition.ACD, systemInfoProcessor));
+    }
+
+    @Test
+    public void testCheck() throws IOException
+    {
+        final ISystemInfoProcessor systemInfoProcessor = loadGeneratedReport(temporaryFolder.newFolder("project"));
+        final Map<Condition, Double> atLimit = new EnumMap<>(Condition.class);
+        for (final Condition nextCondition : Condition.values())
+        {
+            atLimit.put(nextCondition, SonargraphQualityGate.getValue(nextCondition, systemInfoProcessor));
+        }
+        assertTrue(new SonargraphQualityGate(atLimit).check(systemInfoProcessor).isEmpty());
+
+        final Map<Condition, Double> exceeded = new EnumMap<>(atLimit);
+        exceeded.put(Condition.ARCHITECTURE_VIOLATIONS, Double.valueOf(ISSUES_PER_TYPE - 1));
+        exceeded.put(Condition.BIGGEST_CYCLE_GROUP, Double.valueOf(1));
+        final List<String> failures = new SonargraphQualityGate(exceeded).check(systemInfoProcessor);
+        assertEquals(2, failures.size());
+        assertEquals("Architecture violations " + ISSUES_PER_TYPE + " exceeds the maximum of " + (ISSUES_PER_TYPE - 1), failures.get(0));
+        assertEquals("Biggest cycle group 2 exceeds the maximum of 1", failures.get(1));
+    }
+
+    @Test
+    public void testCreate()
+    {
+        assertFalse(SonargraphQualityGate.create(new MapSettings().asConfig()).isEnabled());
+
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(SonargraphBase.QUALITY_GATE_MAX_ACD_KEY, "12.5");
+        settings.setProperty(SonargraphBase.QUALITY_GATE_MAX_ARCHITECTURE_VIOLATIONS_KEY, "0");
+        final SonargraphQualityGate qualityGate = SonargraphQualityGate.create(settings.asConfig());
+        assertTrue(qualityGate.isEnabled());
+        assertEquals("[ARCHITECTURE_VIOLATIONS<=0.0, ACD<=12.5]", qualityGate.getKeyParts().toString());
+    }
+
+    @Test
+    public void testSensorFailsEarly() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        loadGeneratedReport(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester failing = fixture.createSensorContext();
+        failing.settings().setProperty(SonargraphBase.QUALITY_GATE_MAX_ARCHITECTURE_VIOLATIONS_KEY, ISSUES_PER_TYPE - 1);
+        try
+        {
+            SonargraphSensorFixture.execute(failing);
+            fail("Quality gate precheck did not fail");
+        }
+        catch (final MessageException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("'" + SonargraphReportGenerator.SYSTEM_NAME + "'"));
+            assertTrue(e.getMessage(), e.getMessage().contains("Architecture violations " + ISSUES_PER_TYPE));
+        }
+        assertTrue(failing.allIssues().isEmpty());
+        assertTrue(failing.measures(failing.module().key()).isEmpty());
+
+        //A dry run only logs the failure
+        final SensorContextTester dryRun = fixture.createSensorContext();
+        dryRun.settings().setProperty(SonargraphBase.QUALITY_GATE_MAX_ARCHITECTURE_VIOLATIONS_KEY, ISSUES_PER_TYPE - 1);
+        dryRun.settings().setProperty(SonargraphBase.DRY_RUN_KEY, true);
+        dryRun.fileSystem().setWorkDir(temporaryFolder.newFolder().toPath());
+        SonargraphSensorFixture.execute(dryRun);
+        assertTrue(dryRun.allIssues().isEmpty());
+    }
+}
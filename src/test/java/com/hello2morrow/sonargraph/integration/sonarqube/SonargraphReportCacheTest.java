@@ -0,0 +1,314 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.IModuleInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.controller.IReportDifferenceProcessor;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+import com.hello2morrow.sonargraph.integration.access.model.IModule;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+
+public final class SonargraphReportCacheTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    //Offers the same API as the controller of the access library, but without its 'softwareSystem' field
+    private static final class DelegatingController implements ISonargraphSystemController
+    {
+        private final ISonargraphSystemController delegate = ControllerAccess.createController();
+
+        @Override
+        public Result loadSystemReport(final File systemReportFile)
+        {
+            return delegate.loadSystemReport(systemReportFile);
+        }
+
+        @Override
+        public Result loadSystemReport(final File systemReportFile, final File baseDirectory)
+        {
+            return delegate.loadSystemReport(systemReportFile, baseDirectory);
+        }
+
+        @Override
+        public boolean hasSoftwareSystem()
+        {
+            return delegate.hasSoftwareSystem();
+        }
+
+        @Override
+        public ISoftwareSystem getSoftwareSystem()
+        {
+            return delegate.getSoftwareSystem();
+        }
+
+        @Override
+        public IModuleInfoProcessor createModuleInfoProcessor(final IModule module)
+        {
+            return delegate.createModuleInfoProcessor(module);
+        }
+
+        @Override
+        public ISystemInfoProcessor createSystemInfoProcessor()
+        {
+            return delegate.createSystemInfoProcessor();
+        }
+
+        @Override
+        public IReportDifferenceProcessor createReportDifferenceProcessor()
+        {
+            return delegate.createReportDifferenceProcessor();
+        }
+    }
+
+    private static File[] getEntries(final File directory)
+    {
+        final File[] entries = directory.listFiles(f -> f.getName().endsWith(".bin"));
+        return entries != null ? entries : new File[0];
+    }
+
+    @Test
+    public void testLoadFromCache() throws IOException
+    {
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator().setModules(2).setSourceFilesPerRootDirectory(20)
+                .setIssuesPerType(10).setResolutions(5);
+        final File reportFile = generator.generate(temporaryFolder.newFolder("project"));
+        final File cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+        final SonargraphReportCache cache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024);
+
+        final ISonargraphSystemController parsed = ControllerAccess.createController();
+        final Result parsedResult = cache.load(parsed, reportFile);
+        assertTrue(parsedResult.toString(), parsedResult.isSuccess());
+        assertEquals(1, getEntries(cacheDirectory).length);
+
+        final ISonargraphSystemController cached = ControllerAccess.createController();
+        final Result cachedResult = cache.load(cached, reportFile);
+        assertTrue(cachedResult.toString(), cachedResult.isSuccess());
+        assertTrue(cached.hasSoftwareSystem());
+        assertEquals(parsed.getSoftwareSystem().getModules().keySet(), cached.getSoftwareSystem().getModules().keySet());
+        assertEquals(parsed.createSystemInfoProcessor().getIssues(i -> true).size(), cached.createSystemInfoProcessor().getIssues(i -> true).size());
+        assertEquals(parsed.createSystemInfoProcessor().getResolutions(r -> true).size(),
+                cached.createSystemInfoProcessor().getResolutions(r -> true).size());
+    }
+
+    @Test
+    public void testCorruptEntryIsReplaced() throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().generate(temporaryFolder.newFolder("project"));
+        final File cacheDirectory = temporaryFolder.newFolder("cache");
+        final SonargraphReportCache cache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024);
+        final File entry = new File(cacheDirectory, SonargraphReportCache.createKey(reportFile) + ".bin");
+        Files.write(entry.toPath(), "corrupt".getBytes(StandardCharsets.UTF_8));
+
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(cache.load(controller, reportFile).isSuccess());
+        assertTrue(controller.hasSoftwareSystem());
+        assertTrue(entry.length() > "corrupt".length());
+    }
+
+    @Test
+    public void testFallbackWithoutControllerField() throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().generate(temporaryFolder.newFolder("project"));
+        final File cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+        final SonargraphReportCache cache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024);
+
+        for (int i = 0; i < 2; i++)
+        {
+            final ISonargraphSystemController controller = new DelegatingController();
+            final Result result = cache.load(controller, reportFile);
+            assertTrue(result.toString(), result.isSuccess());
+            assertTrue(controller.hasSoftwareSystem());
+            assertEquals(0, getEntries(cacheDirectory).length);
+        }
+    }
+
+    @Test
+    public void testFallbackWithUnknownAccessLibraryVersion() throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().generate(temporaryFolder.newFolder("project"));
+        final File cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+        final SonargraphReportCache cache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024, null);
+
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(cache.load(controller, reportFile).isSuccess());
+        assertTrue(controller.hasSoftwareSystem());
+        assertEquals(0, getEntries(cacheDirectory).length);
+    }
+
+    @Test
+    public void testKeyDependsOnAccessLibraryVersion() throws IOException
+    {
+        final File reportFile = temporaryFolder.newFile("report.xml");
+        Files.write(reportFile.toPath(), "<report/>".getBytes(StandardCharsets.UTF_8));
+        assertNotNull(SonargraphReportCache.getAccessLibraryVersion());
+        assertEquals(SonargraphReportCache.createKey(reportFile),
+                SonargraphReportCache.createKey(reportFile, SonargraphReportCache.getAccessLibraryVersion()));
+        assertNotEquals(SonargraphReportCache.createKey(reportFile, "3.1.5"), SonargraphReportCache.createKey(reportFile, "3.1.6"));
+    }
+
+    @Test
+    public void testEntryOfOtherAccessLibraryVersionIsReplaced() throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().generate(temporaryFolder.newFolder("project"));
+        final File cacheDirectory = temporaryFolder.newFolder("cache");
+        final SonargraphReportCache otherCache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024, "0.0.1");
+        assertTrue(otherCache.load(ControllerAccess.createController(), reportFile).isSuccess());
+        final File otherEntry = new File(cacheDirectory, SonargraphReportCache.createKey(reportFile, "0.0.1") + ".bin");
+        assertTrue(otherEntry.isFile());
+
+        //An entry of another version at the key of this version, e.g. copied between build agents
+        final SonargraphReportCache cache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024, "0.0.2");
+        final File entry = new File(cacheDirectory, SonargraphReportCache.createKey(reportFile, "0.0.2") + ".bin");
+        Files.move(otherEntry.toPath(), entry.toPath());
+        final byte[] otherContent = Files.readAllBytes(entry.toPath());
+
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(cache.load(controller, reportFile).isSuccess());
+        assertTrue(controller.hasSoftwareSystem());
+        assertFalse(Arrays.equals(otherContent, Files.readAllBytes(entry.toPath())));
+    }
+
+    @Test
+    public void testAllowedClasses()
+    {
+        assertTrue(SonargraphReportCache.isAllowed("java.util.ArrayList"));
+        assertTrue(SonargraphReportCache.isAllowed("[B"));
+        assertTrue(SonargraphReportCache.isAllowed("[Ljava.lang.Integer;"));
+        assertTrue(SonargraphReportCache.isAllowed("com.hello2morrow.sonargraph.integration.access.model.internal.SoftwareSystemImpl"));
+        assertFalse(SonargraphReportCache.isAllowed("java.io.File"));
+        assertFalse(SonargraphReportCache.isAllowed("[Ljava.lang.Object;"));
+        assertFalse(SonargraphReportCache.isAllowed("java.lang.Runtime"));
+        assertFalse(SonargraphReportCache.isAllowed("com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess"));
+    }
+
+    @Test
+    public void testEntryWithDisallowedClassIsReplaced() throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().generate(temporaryFolder.newFolder("project"));
+        final File cacheDirectory = temporaryFolder.newFolder("cache");
+        final SonargraphReportCache cache = new SonargraphReportCache(cacheDirectory, 10 * 1024 * 1024);
+        final File entry = new File(cacheDirectory, SonargraphReportCache.createKey(reportFile) + ".bin");
+        try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(Files.newOutputStream(entry.toPath()))))
+        {
+            out.writeObject(new ArrayList<>(Arrays.asList(new File("not-allowed"))));
+        }
+        final long disallowedLength = entry.length();
+
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(cache.load(controller, reportFile).isSuccess());
+        assertTrue(controller.hasSoftwareSystem());
+        assertNotEquals(disallowedLength, entry.length());
+    }
+
+    @Test
+    public void testKeyDependsOnContent() throws IOException
+    {
+        final File first = temporaryFolder.newFile("first.xml");
+        final File second = temporaryFolder.newFile("second.xml");
+        Files.write(first.toPath(), "<report/>".getBytes(StandardCharsets.UTF_8));
+        Files.write(second.toPath(), "<report />".getBytes(StandardCharsets.UTF_8));
+        assertEquals(SonargraphReportCache.createKey(first), SonargraphReportCache.createKey(first));
+        assertNotEquals(SonargraphReportCache.createKey(first), SonargraphReportCache.createKey(second));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws IOException
+    {
+        final File cacheDirectory = temporaryFolder.newFolder("cache");
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 4; i++)
+        {
+            final File nextEntry = new File(cacheDirectory, "entry" + i + ".bin");
+            Files.write(nextEntry.toPath(), new byte[100]);
+            assertTrue(nextEntry.setLastModified(now - (4 - i) * 60_000L));
+        }
+
+        new SonargraphReportCache(cacheDirectory, 250).evict();
+        assertFalse(new File(cacheDirectory, "entry0.bin").exists());
+        assertFalse(new File(cacheDirectory, "entry1.bin").exists());
+        assertTrue(new File(cacheDirectory, "entry2.bin").exists());
+        assertTrue(new File(cacheDirectory, "entry3.bin").exists());
+    }
+
+    @Test
+    public void testSensorUsesCache() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(10).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+        final File cacheDirectory = new File(temporaryFolder.getRoot(), "cache");
+
+        int firstNumberOfIssues = -1;
+        for (int i = 0; i < 2; i++)
+        {
+            final SensorContextTester sensorContext = fixture.createSensorContext();
+            sensorContext.settings().setProperty(SonargraphBase.REPORT_CACHE_KEY, true);
+            sensorContext.settings().setProperty(SonargraphBase.REPORT_CACHE_DIRECTORY_KEY, cacheDirectory.getAbsolutePath());
+            SonargraphSensorFixture.execute(sensorContext);
+
+            assertEquals(1, getEntries(cacheDirectory).length);
+            if (i == 0)
+            {
+                firstNumberOfIssues = sensorContext.allIssues().size();
+                assertTrue(firstNumberOfIssues > 0);
+            }
+            else
+            {
+                assertEquals(firstNumberOfIssues, sensorContext.allIssues().size());
+            }
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+//Writes a valid Sonargraph report of configurable size together with the matching source tree.
+//The meta data section is taken from the built-in 'ExportMetaData.xml', so all issue types and metrics are known to the plugin.
+final class SonargraphReportGenerator
+{
+    static final String REPORT_PATH = "target/sonargraph/sonargraph-sonarqube-report.xml";
+    static final String SYSTEM_NAME = "Generated";
+    static final String PROJECT_KEY = "projectKey";
+
+    static final String THRESHOLD_VIOLATION = "ThresholdViolation";
+    static final String THRESHOLD_VIOLATION_ERROR = "ThresholdViolationError";
+    static final String ARCHITECTURE_VIOLATION = "ArchitectureViolation";
+    static final String TODO = "Todo";
+    static final String DUPLICATE_CODE_BLOCK = "DuplicateCodeBlock";
+    static final String NAMESPACE_CYCLE_GROUP = "NamespaceCycleGroup";
+    static final List<String> ISSUE_TYPES = Arrays.asList(THRESHOLD_VIOLATION, THRESHOLD_VIOLATION_ERROR, ARCHITECTURE_VIOLATION, TODO);
+
+    private static final String META_DATA_RESOURCE = "/com/hello2morrow/sonargraph/integration/sonarqube/ExportMetaData.xml";
+    private static final String META_DATA_END_TAG = "</ns3:exportMetaData>";
+    private static final String TIMESTAMP = "2018-05-18T17:53:35.543-05:00";
+    private static final String PACKAGE_PATH = "com/generated";
+    private static final int SOURCE_FILES_PER_PACKAGE = 10;
+
+    private static final String KIND_SYSTEM = "_xk0";
+    private static final String KIND_MODULE = "_xk1";
+    private static final String KIND_ROOT_DIRECTORY = "_xk2";
+    private static final String KIND_PACKAGE = "_xk3";
+    private static final String KIND_SOURCE_FILE = "_xk4";
+    private static final String KIND_TYPE = "_xk5";
+    private static final String KIND_EXTERNAL = "_xk6";
+    private static final String ANALYZER_NAMESPACE_CYCLES = "_xa0";
+    private static final String THRESHOLD = "_xt0";
+    private static final String SYSTEM_ID = "_0";
+    private static final String SYSTEM_ELEMENT_ID = "_xs0";
+
+    private int modules = 1;
+    private int rootDirectoriesPerModule = 1;
+    private int sourceFilesPerRootDirectory = 10;
+    private int linesPerSourceFile = 100;
+    private int issuesPerType = 10;
+    private int duplicateBlocks = 2;
+    private int occurrencesPerDuplicateBlock = 2;
+    private int cycleGroups = 1;
+    private int resolutions = 2;
+    private int systemIssues = 0;
+    private boolean metricValues = true;
+
+    private int nextId;
+
+    SonargraphReportGenerator setModules(final int modules)
+    {
+        this.modules = modules;
+        return this;
+    }
+
+    SonargraphReportGenerator setRootDirectoriesPerModule(final int rootDirectoriesPerModule)
+    {
+        this.rootDirectoriesPerModule = rootDirectoriesPerModule;
+        return this;
+    }
+
+    SonargraphReportGenerator setSourceFilesPerRootDirectory(final int sourceFilesPerRootDirectory)
+    {
+        this.sourceFilesPerRootDirectory = sourceFilesPerRootDirectory;
+        return this;
+    }
+
+    SonargraphReportGenerator setLinesPerSourceFile(final int linesPerSourceFile)
+    {
+        this.linesPerSourceFile = linesPerSourceFile;
+        return this;
+    }
+
+    SonargraphReportGenerator setIssuesPerType(final int issuesPerType)
+    {
+        this.issuesPerType = issuesPerType;
+        return this;
+    }
+
+    SonargraphReportGenerator setDuplicateBlocks(final int duplicateBlocks, final int occurrencesPerDuplicateBlock)
+    {
+        assert occurrencesPerDuplicateBlock >= 2 : "At least 2 occurrences needed";
+        this.duplicateBlocks = duplicateBlocks;
+        this.occurrencesPerDuplicateBlock = occurrencesPerDuplicateBlock;
+        return this;
+    }
+
+    SonargraphReportGenerator setCycleGroups(final int cycleGroups)
+    {
+        this.cycleGroups = cycleGroups;
+        return this;
+    }
+
+    SonargraphReportGenerator setResolutions(final int resolutions)
+    {
+        this.resolutions = resolutions;
+        return this;
+    }
+
+    //Issues of type 'Todo' affecting the system
+    SonargraphReportGenerator setSystemIssues(final int systemIssues)
+    {
+        this.systemIssues = systemIssues;
+        return this;
+    }
+
+    SonargraphReportGenerator setMetricValues(final boolean metricValues)
+    {
+        this.metricValues = metricValues;
+        return this;
+    }
+
+    int getNumberOfSourceFiles()
+    {
+        return modules * rootDirectoriesPerModule * sourceFilesPerRootDirectory;
+    }
+
+    int getNumberOfIssues()
+    {
+        return ISSUE_TYPES.size() * issuesPerType + systemIssues + duplicateBlocks + getNumberOfCycleGroups();
+    }
+
+    int getNumberOfCycleGroups()
+    {
+        return Math.min(cycleGroups, getNumberOfPackagesPerRootDirectory() / 2 * modules * rootDirectoriesPerModule);
+    }
+
+    private int getNumberOfPackagesPerRootDirectory()
+    {
+        return (sourceFilesPerRootDirectory + SOURCE_FILES_PER_PACKAGE - 1) / SOURCE_FILES_PER_PACKAGE;
+    }
+
+    static String getModuleName(final int module)
+    {
+        return "M" + module;
+    }
+
+    static String getRootDirectoryPath(final int module, final int rootDirectory)
+    {
+        return getModuleName(module) + "/src" + rootDirectory;
+    }
+
+    private static final class SourceFile
+    {
+        private final String id;
+        private final String typeId;
+        private final String packageFqName;
+        private final String relativePath;
+
+        SourceFile(final String id, final String typeId, final String packageFqName, final String relativePath)
+        {
+            this.id = id;
+            this.typeId = typeId;
+            this.packageFqName = packageFqName;
+            this.relativePath = relativePath;
+        }
+    }
+
+    private static final class MetaData
+    {
+        private final String content;
+        private final Map<String, String> levelNameToId = new HashMap<>();
+        private final Map<String, String> issueTypeNameToId = new HashMap<>();
+        private final Map<String, List<Element>> levelIdToMetricIds = new HashMap<>();
+        private String issueProviderId;
+
+        MetaData(final String content)
+        {
+            this.content = content;
+        }
+    }
+
+    //Ids of the meta data are hex numbers and the fixed ids start with "_x", so they never clash
+    private String createId()
+    {
+        return "_g" + Integer.toHexString(nextId++);
+    }
+
+    private static String escape(final String value)
+    {
+        final StringBuilder builder = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++)
+        {
+            final char next = value.charAt(i);
+            switch (next)
+            {
+            case '<':
+                builder.append("&lt;");
+                break;
+            case '>':
+                builder.append("&gt;");
+                break;
+            case '&':
+                builder.append("&amp;");
+                break;
+            case '"':
+                builder.append("&quot;");
+                break;
+            default:
+                builder.append(next);
+                break;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void writeElement(final Writer writer, final String indent, final String name, final boolean close, final String... attributes)
+            throws IOException
+    {
+        assert attributes.length % 2 == 0 : "Attributes must be name/value pairs";
+        writer.write(indent);
+        writer.write('<');
+        writer.write(name);
+        for (int i = 0; i < attributes.length; i += 2)
+        {
+            writer.write(' ');
+            writer.write(attributes[i]);
+            writer.write("=\"");
+            writer.write(escape(attributes[i + 1]));
+            writer.write('"');
+        }
+        writer.write(close ? "></" + name + ">\n" : ">\n");
+    }
+
+    private static MetaData readMetaData() throws IOException
+    {
+        final String exportMetaData;
+        try (InputStream inputStream = SonargraphReportGenerator.class.getResourceAsStream(META_DATA_RESOURCE);
+                Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8.name()))
+        {
+            exportMetaData = scanner.useDelimiter("\\A").next();
+        }
+
+        final int rootStart = exportMetaData.indexOf("<ns3:exportMetaData");
+        final int contentStart = exportMetaData.indexOf('>', rootStart) + 1;
+        final MetaData metaData = new MetaData(exportMetaData.substring(contentStart, exportMetaData.lastIndexOf(META_DATA_END_TAG)));
+
+        final Document document;
+        try (InputStream inputStream = SonargraphReportGenerator.class.getResourceAsStream(META_DATA_RESOURCE))
+        {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inputStream);
+        }
+        catch (final Exception e)
+        {
+            throw new IOException("Failed to parse meta data", e);
+        }
+
+        metaData.issueProviderId = ((Element) document.getElementsByTagName("issueProvider").item(0)).getAttribute("id");
+
+        final NodeList issueTypes = document.getElementsByTagName("issueType");
+        for (int i = 0; i < issueTypes.getLength(); i++)
+        {
+            final Element next = (Element) issueTypes.item(i);
+            metaData.issueTypeNameToId.put(next.getAttribute("name"), next.getAttribute("id"));
+        }
+
+        final NodeList levels = document.getElementsByTagName("level");
+        for (int i = 0; i < levels.getLength(); i++)
+        {
+            final Element next = (Element) levels.item(i);
+            metaData.levelNameToId.put(next.getAttribute("name"), next.getAttribute("id"));
+        }
+
+        final NodeList metricIds = document.getElementsByTagName("metricId");
+        for (int i = 0; i < metricIds.getLength(); i++)
+        {
+            final Element next = (Element) metricIds.item(i);
+            for (final String nextLevelId : next.getAttribute("levels").split(" "))
+            {
+                metaData.levelIdToMetricIds.computeIfAbsent(nextLevelId, k -> new ArrayList<>()).add(next);
+            }
+        }
+
+        return metaData;
+    }
+
+    private void writeSourceFile(final File file) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))
+        {
+            final String className = file.getName().substring(0, file.getName().length() - ".java".length());
+            writer.write("package " + file.getParentFile().getName() + ";\n");
+            writer.write("public class " + className + " {\n");
+            for (int i = 3; i < linesPerSourceFile; i++)
+            {
+                writer.write("    int field" + i + ";\n");
+            }
+            writer.write("}\n");
+        }
+    }
+
+    private void writeMetricValues(final Writer writer, final MetaData metaData, final String containerTag, final String containerRef,
+            final String levelName, final String elementRef, final int seed) throws IOException
+    {
+        final String levelId = metaData.levelNameToId.get(levelName);
+        writeElement(writer, "    ", containerTag, false, "elementRef", containerRef);
+        writeElement(writer, "        ", "levelValues", false, "levelRef", levelId);
+        int value = seed;
+        for (final Element nextMetricId : metaData.levelIdToMetricIds.getOrDefault(levelId, new ArrayList<>()))
+        {
+            writeElement(writer, "            ", "metric", false, "ref", nextMetricId.getAttribute("id"));
+            final boolean isFloat = Boolean.parseBoolean(nextMetricId.getAttribute("isFloat"));
+            writer.write("                <" + (isFloat ? "float" : "int") + " ref=\"" + elementRef + "\">" + (isFloat ? (value % 100) + ".5" : value)
+                    + "</" + (isFloat ? "float" : "int") + ">\n");
+            writer.write("            </metric>\n");
+            value++;
+        }
+        writer.write("        </levelValues>\n");
+        writer.write("    </" + containerTag + ">\n");
+    }
+
+    //Returns the report file, located at 'REPORT_PATH' relative to the base directory
+    File generate(final File baseDirectory) throws IOException
+    {
+        nextId = 1;
+        final MetaData metaData = readMetaData();
+        final File reportFile = new File(baseDirectory, REPORT_PATH);
+        reportFile.getParentFile().mkdirs();
+
+        final List<SourceFile> sourceFiles = new ArrayList<>(getNumberOfSourceFiles());
+        final List<String> packageIds = new ArrayList<>();
+        final List<String> moduleIds = new ArrayList<>(modules);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8), 1 << 16))
+        {
+            writer.write("<?xml version=\"1.0\" ?>\n");
+            writeElement(writer, "", "ns2:report", false, "xmlns:ns3", "http://www.hello2morrow.com/sonargraph/core/export", "xmlns:ns2",
+                    "http://www.hello2morrow.com/sonargraph/core/report", "id", SYSTEM_ID, "systemId", "0123456789abcdef0123456789abcdef", "name",
+                    SYSTEM_NAME, "version", "9.7.0.100", "systemPath", new File(baseDirectory, SYSTEM_NAME + ".sonargraph").getAbsolutePath(),
+                    "timestamp", TIMESTAMP, "currentVirtualModel", "Modifiable.vm");
+            writer.write("    <metaData>");
+            writer.write(metaData.content);
+            writer.write("</metaData>\n");
+
+            writer.write("    <features>\n");
+            writeElement(writer, "        ", "feature", true, "name", "Architecture", "presentationName", "Architecture", "licensed", "true");
+            writer.write("    </features>\n");
+            writer.write("    <analyzers>\n");
+            writeElement(writer, "        ", "analyzer", true, "description", "Analyzes package cycles on system level", "licensed", "true", "id",
+                    ANALYZER_NAMESPACE_CYCLES, "name", "PackageCyclesSystem", "presentationName", "Package Cycles (System)");
+            writer.write("    </analyzers>\n");
+
+            final Element thresholdMetricId = metaData.levelIdToMetricIds.get(metaData.levelNameToId.get("SourceFile")).get(0);
+            writer.write("    <metricThresholds>\n");
+            writeElement(writer, "        ", "threshold", true, "id", THRESHOLD, "metricId", thresholdMetricId.getAttribute("id"), "metricLevel",
+                    metaData.levelNameToId.get("SourceFile"), "upperThreshold", "10");
+            writer.write("    </metricThresholds>\n");
+
+            writer.write("    <elementKinds>\n");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_SYSTEM, "standardKind", "SoftwareSystem", "presentationKind", "System");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_MODULE, "standardKind", "JavaModule", "presentationKind", "Java Module");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_ROOT_DIRECTORY, "standardKind", "JavaSourceRootDirectoryPath",
+                    "presentationKind", "Java Source Root Directory/Archive");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_PACKAGE, "standardKind", "JavaPackageFragment", "presentationKind",
+                    "Package");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_SOURCE_FILE, "standardKind", "JavaInternalCompilationUnit",
+                    "presentationKind", "Java Internal Compilation Unit");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_TYPE, "standardKind", "JavaClass", "presentationKind", "Class");
+            writeElement(writer, "        ", "elementKind", true, "id", KIND_EXTERNAL, "standardKind", "JavaExternal", "presentationKind",
+                    "Java External");
+            writer.write("    </elementKinds>\n");
+
+            writer.write("    <workspace>\n");
+            for (int m = 0; m < modules; m++)
+            {
+                final String moduleName = getModuleName(m);
+                final String moduleId = createId();
+                moduleIds.add(moduleId);
+                writeElement(writer, "        ", "module", false, "language", "Java", "description", "", "kind", KIND_MODULE, "fqName",
+                        "Workspace:" + moduleName, "id", moduleId, "name", moduleName, "presentationName", moduleName);
+
+                for (int r = 0; r < rootDirectoriesPerModule; r++)
+                {
+                    final String rootName = "./" + getRootDirectoryPath(m, r);
+                    final String rootFqName = "Workspace:" + moduleName + ":" + rootName;
+                    writeElement(writer, "            ", "rootDirectory", false, "kind", KIND_ROOT_DIRECTORY, "fqName", rootFqName, "id", createId(),
+                            "name", rootName, "presentationName", rootName);
+
+                    //The schema requires all packages first, then all source files, then all programming elements
+                    final List<SourceFile> rootSourceFiles = new ArrayList<>(sourceFilesPerRootDirectory);
+                    final List<String> packageFqNames = new ArrayList<>();
+                    for (int p = 0; p < getNumberOfPackagesPerRootDirectory(); p++)
+                    {
+                        final String packageRelativePath = PACKAGE_PATH + "/p" + p;
+                        final String packageId = createId();
+                        final String packageFqName = rootFqName + ":" + packageRelativePath.replace('/', ':');
+                        packageIds.add(packageId);
+                        packageFqNames.add(packageFqName);
+                        writeElement(writer, "                ", "physicalRecursiveElement", true, "relativeDirectoryPath", "./" + packageRelativePath,
+                                "kind", KIND_PACKAGE, "fqName", packageFqName, "id", packageId, "name", "p" + p, "presentationName",
+                                packageRelativePath.replace('/', '.'));
+                    }
+
+                    for (int f = 0; f < sourceFilesPerRootDirectory; f++)
+                    {
+                        final int p = f / SOURCE_FILES_PER_PACKAGE;
+                        final String fileRelativePath = PACKAGE_PATH + "/p" + p + "/C" + f + ".java";
+                        final SourceFile sourceFile = new SourceFile(createId(), createId(), packageFqNames.get(p),
+                                getRootDirectoryPath(m, r) + "/" + fileRelativePath);
+                        rootSourceFiles.add(sourceFile);
+                        writeElement(writer, "                ", "sourceElement", true, "kind", KIND_SOURCE_FILE, "fqName",
+                                sourceFile.packageFqName + ":C" + f + ".java", "id", sourceFile.id, "name", "C" + f + ".java", "presentationName",
+                                "./" + fileRelativePath);
+                        writeSourceFile(new File(baseDirectory, sourceFile.relativePath));
+                    }
+
+                    for (int f = 0; f < sourceFilesPerRootDirectory; f++)
+                    {
+                        final SourceFile sourceFile = rootSourceFiles.get(f);
+                        final String packageName = PACKAGE_PATH.replace('/', '.') + ".p" + (f / SOURCE_FILES_PER_PACKAGE);
+                        writeElement(writer, "                ", "programmingElement", true, "line", "2", "kind", KIND_TYPE, "fqName",
+                                sourceFile.packageFqName + ":C" + f, "source", sourceFile.id, "id", sourceFile.typeId, "name", "C" + f,
+                                "presentationName", packageName + ".C" + f);
+                    }
+                    sourceFiles.addAll(rootSourceFiles);
+                    writer.write("            </rootDirectory>\n");
+                }
+                writer.write("        </module>\n");
+            }
+            writeElement(writer, "        ", "external", true, "language", "Java", "description", "Contains external Java elements", "kind",
+                    KIND_EXTERNAL, "fqName", "Workspace:External [Java]", "id", createId(), "name", "External [Java]", "presentationName",
+                    "External [Java]");
+            writer.write("    </workspace>\n");
+
+            writer.write("    <systemElements ref=\"" + SYSTEM_ID + "\">\n");
+            writeElement(writer, "        ", "element", true, "kind", KIND_SYSTEM, "fqName", SYSTEM_NAME, "id", SYSTEM_ELEMENT_ID, "name", SYSTEM_NAME,
+                    "presentationName", SYSTEM_NAME);
+            writer.write("    </systemElements>\n");
+            for (final String nextModuleId : moduleIds)
+            {
+                writer.write("    <moduleElements ref=\"" + nextModuleId + "\"></moduleElements>\n");
+            }
+
+            if (metricValues)
+            {
+                writeMetricValues(writer, metaData, "systemMetricValues", SYSTEM_ID, "System", SYSTEM_ELEMENT_ID, 0);
+                for (int m = 0; m < moduleIds.size(); m++)
+                {
+                    writeMetricValues(writer, metaData, "moduleMetricValues", moduleIds.get(m), "Module", moduleIds.get(m), m);
+                }
+            }
+
+            final List<String> issueIds = new ArrayList<>();
+            writeElement(writer, "    ", "issues", false, "modelName", "./Modifiable.vm", "numberOfIssues", Integer.toString(getNumberOfIssues()),
+                    "numberOfUnresolvedIssues", Integer.toString(getNumberOfIssues()));
+            writer.write("        <elementIssues>\n");
+            final int maxLine = Math.max(1, linesPerSourceFile - 1);
+            for (int i = 0; i < issuesPerType; i++)
+            {
+                final SourceFile sourceFile = sourceFiles.get(i % sourceFiles.size());
+                final String issueId = createId();
+                issueIds.add(issueId);
+                writeElement(writer, "            ", "issue", true, "affectedElement", sourceFile.id, "id", issueId, "type",
+                        metaData.issueTypeNameToId.get(TODO), "provider", metaData.issueProviderId, "description", "Review " + i + ".", "line",
+                        Integer.toString(1 + i % maxLine));
+            }
+            for (int i = 0; i < systemIssues; i++)
+            {
+                writeElement(writer, "            ", "issue", true, "affectedElement", SYSTEM_ELEMENT_ID, "id", createId(), "type",
+                        metaData.issueTypeNameToId.get(TODO), "provider", metaData.issueProviderId, "description", "Review system " + i + ".");
+            }
+            for (int d = 0; d < duplicateBlocks; d++)
+            {
+                final int blockSize = Math.max(1, Math.min(25, linesPerSourceFile / 2));
+                writeElement(writer, "            ", "duplicate", false, "name", "Duplicate code block " + d, "fqName",
+                        "Files:BaseDirectory:SystemDirectory:Analyzers:DuplicateCode:Result:" + d, "blockSize", Integer.toString(blockSize),
+                        "numberOfOccurrences", Integer.toString(occurrencesPerDuplicateBlock), "id", createId(), "type",
+                        metaData.issueTypeNameToId.get(DUPLICATE_CODE_BLOCK), "provider", metaData.issueProviderId, "description",
+                        occurrencesPerDuplicateBlock + " occurrences with " + blockSize + " line(s)");
+                for (int o = 0; o < occurrencesPerDuplicateBlock; o++)
+                {
+                    final SourceFile sourceFile = sourceFiles.get((d * occurrencesPerDuplicateBlock + o) % sourceFiles.size());
+                    writeElement(writer, "                ", "occurrence", true, "source", sourceFile.id, "startLine", "1", "blockSize",
+                            Integer.toString(blockSize), "tolerance", "0");
+                }
+                writer.write("            </duplicate>\n");
+            }
+            final int numberOfCycleGroups = getNumberOfCycleGroups();
+            if (numberOfCycleGroups > 0)
+            {
+                writer.write("            <cycleGroups analyzerRef=\"" + ANALYZER_NAMESPACE_CYCLES + "\">\n");
+                for (int c = 0; c < numberOfCycleGroups; c++)
+                {
+                    writeElement(writer, "                ", "cycleGroup", false, "numberOfCyclicElements", "2", "name", "Package cycle group " + c,
+                            "fqName", "Cycles:" + c, "id", createId(), "type", metaData.issueTypeNameToId.get(NAMESPACE_CYCLE_GROUP), "provider",
+                            metaData.issueProviderId, "description", "");
+                    writeElement(writer, "                    ", "element", true, "ref", packageIds.get(2 * c));
+                    writeElement(writer, "                    ", "element", true, "ref", packageIds.get(2 * c + 1));
+                    writer.write("                </cycleGroup>\n");
+                }
+                writer.write("            </cycleGroups>\n");
+            }
+            for (final String nextType : Arrays.asList(THRESHOLD_VIOLATION, THRESHOLD_VIOLATION_ERROR))
+            {
+                for (int i = 0; i < issuesPerType; i++)
+                {
+                    final SourceFile sourceFile = sourceFiles.get(i % sourceFiles.size());
+                    writeElement(writer, "            ", "thresholdViolation", true, "thresholdRef", THRESHOLD, "metricValue",
+                            Integer.toString(linesPerSourceFile), "affectedElement", sourceFile.id, "id", createId(), "type",
+                            metaData.issueTypeNameToId.get(nextType), "provider", metaData.issueProviderId, "description",
+                            "Lines of Code = " + linesPerSourceFile + " (allowed range: 0 to 10)", "line", "1");
+                }
+            }
+            writer.write("        </elementIssues>\n");
+            if (issuesPerType > 0)
+            {
+                writer.write("        <depencencyIssues>\n");
+                for (int i = 0; i < issuesPerType; i++)
+                {
+                    final SourceFile from = sourceFiles.get(i % sourceFiles.size());
+                    final SourceFile to = sourceFiles.get((i + 1) % sourceFiles.size());
+                    writeElement(writer, "            ", "issue", true, "dependencyType", "Uses", "from", from.typeId, "to", to.typeId, "id",
+                            createId(), "type", metaData.issueTypeNameToId.get(ARCHITECTURE_VIOLATION), "provider", metaData.issueProviderId,
+                            "description", "", "line", Integer.toString(1 + i % maxLine));
+                }
+                writer.write("        </depencencyIssues>\n");
+            }
+            writer.write("    </issues>\n");
+
+            final int numberOfResolutions = Math.min(resolutions, issueIds.size());
+            writeElement(writer, "    ", "resolutions", false, "numberOfResolutions", Integer.toString(numberOfResolutions));
+            for (int i = 0; i < numberOfResolutions; i++)
+            {
+                writeElement(writer, "        ", "resolution", true, "type", i % 2 == 0 ? "Todo" : "Fix", "prio", "Medium", "fqName",
+                        "Files:BaseDirectory:SystemDirectory:Models:Parser:Modifiable.vm:" + i, "issueIds", issueIds.get(i), "description",
+                        "Resolution " + i, "information", "", "assignee", "generator", "date", TIMESTAMP, "applicable", "true", "task", "true",
+                        "refactoring", "false");
+            }
+            writer.write("    </resolutions>\n");
+            writer.write("</ns2:report>\n");
+        }
+
+        return reportFile;
+    }
+
+    //Usage: SonargraphReportGenerator <base directory> [modules] [root directories per module] [source files per root directory] [issues per type]
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            throw new IllegalArgumentException("Usage: " + SonargraphReportGenerator.class.getSimpleName()
+                    + " <base directory> [modules] [root directories per module] [source files per root directory] [issues per type]");
+        }
+
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator();
+        if (args.length > 1)
+        {
+            generator.setModules(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2)
+        {
+            generator.setRootDirectoriesPerModule(Integer.parseInt(args[2]));
+        }
+        if (args.length > 3)
+        {
+            generator.setSourceFilesPerRootDirectory(Integer.parseInt(args[3]));
+        }
+        if (args.length > 4)
+        {
+            generator.setIssuesPerType(Integer.parseInt(args[4]));
+        }
+
+        final File reportFile = generator.generate(new File(args[0]));
+        System.out.println("Generated " + generator.getNumberOfIssues() + " issue(s) in " + generator.getNumberOfSourceFiles()
+                + " source file(s): " + reportFile.getAbsolutePath());
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.foundation.Result;
+import com.hello2morrow.sonargraph.integration.access.model.IModule;
+
+public final class SonargraphReportGeneratorTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Test
+    public void testGeneratedReportIsValid() throws IOException
+    {
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator().setModules(2).setRootDirectoriesPerModule(2)
+                .setSourceFilesPerRootDirectory(25).setIssuesPerType(20).setDuplicateBlocks(3, 3).setCycleGroups(2);
+        final File baseDirectory = temporaryFolder.getRoot();
+        final File reportFile = generator.generate(baseDirectory);
+
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        final Result result = controller.loadSystemReport(reportFile);
+        assertTrue(result.toString(), result.isSuccess());
+
+        assertEquals(2, controller.getSoftwareSystem().getModules().size());
+        assertEquals(generator.getNumberOfIssues(), controller.createSystemInfoProcessor().getIssues(i -> true).size());
+        assertEquals(2, generator.getNumberOfCycleGroups());
+        assertTrue(new File(baseDirectory, SonargraphReportGenerator.getRootDirectoryPath(1, 1) + "/com/generated/p2/C24.java").exists());
+
+        final IModule module = SonargraphBase.matchModule(controller.getSoftwareSystem(), SonargraphReportGenerator.PROJECT_KEY,
+                new File(baseDirectory, SonargraphReportGenerator.getModuleName(1)));
+        assertNotNull("Module not matched", module);
+        assertEquals(SonargraphReportGenerator.getModuleName(1), module.getName());
+    }
+
+    @Test
+    public void testSensorOnGeneratedReport() throws IOException
+    {
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(15);
+        final File baseDirectory = temporaryFolder.getRoot();
+        generator.generate(baseDirectory);
+
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+        final SensorContextTester sensorContext = fixture.createSensorContext();
+        final SonargraphSensor sensor = SonargraphSensorFixture.createSensor(sensorContext);
+        sensor.execute(sensorContext);
+
+        final int numberOfIssues = sensorContext.allIssues().size();
+        assertTrue("Too few issues created: " + numberOfIssues, numberOfIssues >= SonargraphReportGenerator.ISSUE_TYPES.size() * 15);
+        for (final Issue nextIssue : sensorContext.allIssues())
+        {
+            assertNotNull(nextIssue.primaryLocation().inputComponent());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.model.IModule;
+import com.hello2morrow.sonargraph.integration.access.model.IRootDirectory;
+import com.hello2morrow.sonargraph.integration.access.model.ISoftwareSystem;
+
+public final class SonargraphReportHeaderTest
+{
+    private static final String REPORT_PATH = "./src/test/report/IntegrationSonarqube.xml";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static ISoftwareSystem load(final File reportFile)
+    {
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(controller.loadSystemReport(reportFile).isSuccess());
+        return controller.getSoftwareSystem();
+    }
+
+    private static void assertSameModules(final ISoftwareSystem softwareSystem, final SonargraphReportHeader header)
+    {
+        assertEquals(softwareSystem.getBaseDir(), header.getBaseDir());
+        assertEquals(softwareSystem.getModules().keySet(), header.getModuleRootDirectories().keySet());
+        for (final IModule nextModule : softwareSystem.getModules().values())
+        {
+            final List<String> expected = nextModule.getRootDirectories().stream().map(IRootDirectory::getRelativePath).collect(Collectors.toList());
+            assertEquals(expected, header.getModuleRootDirectories().get(nextModule.getName()));
+        }
+    }
+
+    @Test
+    public void testReadHeader() throws IOException
+    {
+        final File reportFile = new File(REPORT_PATH);
+        final SonargraphReportHeader header = SonargraphReportHeader.read(reportFile);
+        assertEquals("IntegrationSonarqube", header.getSystemName());
+        assertEquals("./IntegrationSonarqube.sonargraph", header.getSystemPath());
+        assertEquals("9.7.0.100", header.getVersion());
+        assertEquals(Arrays.asList("./src/main/java", "./src/test/java", "./target/classes", "./target/test-classes"),
+                header.getModuleRootDirectories().get("IntegrationSonarqube"));
+        assertSameModules(load(reportFile), header);
+    }
+
+    @Test
+    public void testMatchesLikeLoadedSystem() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        final File reportFile = new SonargraphReportGenerator().setModules(3).setRootDirectoriesPerModule(2).generate(baseDirectory);
+        final SonargraphReportHeader header = SonargraphReportHeader.read(reportFile);
+        final ISoftwareSystem softwareSystem = load(reportFile);
+        assertSameModules(softwareSystem, header);
+
+        for (int i = 0; i < 3; i++)
+        {
+            final File nextModuleDirectory = new File(baseDirectory, SonargraphReportGenerator.getModuleName(i));
+            final IModule nextMatched = SonargraphBase.matchModule(softwareSystem, SonargraphReportGenerator.PROJECT_KEY, nextModuleDirectory);
+            final List<String> nextCandidates = SonargraphBase.getModuleCandidates(header.getBaseDir(), header.getModuleRootDirectories(),
+                    nextModuleDirectory);
+            assertEquals(Arrays.asList(nextMatched.getName()), nextCandidates);
+        }
+
+        assertTrue(SonargraphBase.getModuleCandidates(header.getBaseDir(), header.getModuleRootDirectories(), temporaryFolder.newFolder("other"))
+                .isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoReport() throws IOException
+    {
+        final File file = temporaryFolder.newFile("other.xml");
+        Files.write(file.toPath(), "<other></other>".getBytes(StandardCharsets.UTF_8));
+        SonargraphReportHeader.read(file);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphReportLoader.LoadedReport;
+
+public final class SonargraphReportLoaderTest
+{
+    private static final File TEST_REPORT = new File("./src/test/report/IntegrationSonarqube.xml");
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File createFile(final String path) throws IOException
+    {
+        final File file = new File(temporaryFolder.getRoot(), path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), Collections.singletonList("<report/>"));
+        return file.getAbsoluteFile();
+    }
+
+    @Test
+    public void testIsPattern()
+    {
+        assertFalse(SonargraphReportLoader.isPattern("target/sonargraph/report.xml"));
+        assertTrue(SonargraphReportLoader.isPattern("target/sonargraph/*.xml"));
+        assertTrue(SonargraphReportLoader.isPattern("**/report-?.xml"));
+        assertTrue(SonargraphReportLoader.isPattern("target/{a,b}/report.xml"));
+    }
+
+    @Test
+    public void testExpand() throws IOException
+    {
+        final File a = createFile("sub-a/target/sonargraph/report.xml");
+        final File b = createFile("sub-b/target/sonargraph/report.xml");
+        final File c = createFile("target/sonargraph/c.xml");
+        createFile("target/sonargraph/c.txt");
+        final File root = temporaryFolder.getRoot();
+
+        assertEquals(Arrays.asList(a, b), SonargraphReportLoader.expand(root, "*/target/sonargraph/*.xml"));
+        assertEquals(Collections.singletonList(c), SonargraphReportLoader.expand(root, "target/sonargraph/*.xml"));
+        assertEquals(Arrays.asList(a, b, c), SonargraphReportLoader.expand(root, "**.xml"));
+        assertEquals(Arrays.asList(a, b), SonargraphReportLoader.expand(new File("unused"), root.getAbsolutePath() + "/sub-?/**/report.xml"));
+        assertTrue(SonargraphReportLoader.expand(root, "missing/*.xml").isEmpty());
+    }
+
+    @Test
+    public void testLoadInConfiguredOrder() throws IOException
+    {
+        final File missing = new File(temporaryFolder.getRoot(), "missing.xml");
+        final File copy = new File(temporaryFolder.getRoot(), "copy.xml");
+        Files.copy(TEST_REPORT.toPath(), copy.toPath());
+
+        final List<LoadedReport> loaded = SonargraphReportLoader.load(Arrays.asList(TEST_REPORT, missing, copy), null, 3);
+        assertEquals(3, loaded.size());
+        assertEquals(TEST_REPORT, loaded.get(0).getReportFile());
+        assertTrue(loaded.get(0).isSuccess());
+        assertEquals(missing, loaded.get(1).getReportFile());
+        assertFalse(loaded.get(1).isSuccess());
+        assertEquals(copy, loaded.get(2).getReportFile());
+        assertTrue(loaded.get(2).isSuccess());
+        assertEquals(loaded.get(0).getController().getSoftwareSystem().getName(), loaded.get(2).getController().getSoftwareSystem().getName());
+    }
+
+    @Test
+    public void testSequentialLoad()
+    {
+        final File missing = new File(temporaryFolder.getRoot(), "missing.xml");
+        final List<LoadedReport> loaded = SonargraphReportLoader.load(Arrays.asList(missing, TEST_REPORT), null, 1);
+        assertEquals(2, loaded.size());
+        assertFalse(loaded.get(0).isSuccess());
+        assertTrue(loaded.get(1).isSuccess());
+        assertTrue(SonargraphReportLoader.load(Collections.emptyList(), null, 4).isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.hello2morrow.sonargraph.integration.access.controller.ControllerAccess;
+import com.hello2morrow.sonargraph.integration.access.controller.ISonargraphSystemController;
+import com.hello2morrow.sonargraph.integration.access.controller.ISystemInfoProcessor;
+import com.hello2morrow.sonargraph.integration.access.model.IIssue;
+import com.hello2morrow.sonargraph.integration.access.model.IResolution;
+import com.hello2morrow.sonargraph.integration.access.model.ResolutionType;
+
+public final class SonargraphResolutionIndexTest
+{
+    private static final int RESOLUTIONS = 6;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesInfoProcessor() throws IOException
+    {
+        final File reportFile = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(10).setIssuesPerType(10)
+                .setResolutions(RESOLUTIONS).generate(temporaryFolder.newFolder("project"));
+        final ISonargraphSystemController controller = ControllerAccess.createController();
+        assertTrue(controller.loadSystemReport(reportFile).isSuccess());
+        final ISystemInfoProcessor systemInfoProcessor = controller.createSystemInfoProcessor();
+
+        final SonargraphResolutionIndex index = SonargraphResolutionIndex.create(systemInfoProcessor);
+        assertEquals(RESOLUTIONS, index.getNumberOfResolutions());
+        assertTrue(index.getNumberOfResolvedIssues() >= RESOLUTIONS);
+
+        int resolved = 0;
+        final List<IIssue> issues = systemInfoProcessor.getIssues(i -> true);
+        for (final IIssue nextIssue : issues)
+        {
+            final IResolution nextResolution = systemInfoProcessor.getResolution(nextIssue);
+            final StringBuilder nextPrefix = new StringBuilder();
+            index.appendPrefix(nextPrefix, nextIssue);
+            if (nextResolution == null)
+            {
+                assertNull(index.getResolutionType(nextIssue));
+                assertEquals("[" + nextIssue.getPresentationName() + "]", nextPrefix.toString());
+                continue;
+            }
+
+            resolved++;
+            assertEquals(nextResolution.getType(), index.getResolutionType(nextIssue));
+            final String expectedIssue = nextResolution.getType() == ResolutionType.FIX ? "[Fix: " + nextIssue.getPresentationName() + "]"
+                    : "[" + nextIssue.getPresentationName() + "]";
+            assertEquals(expectedIssue + " assignee='" + nextResolution.getAssignee() + "' priority='"
+                    + SonargraphBase.toLowerCase(nextResolution.getPriority().toString(), false) + "' description='" + nextResolution.getDescription()
+                    + "' created='" + nextResolution.getDate() + "'", nextPrefix.toString());
+        }
+        assertEquals(index.getNumberOfResolvedIssues(), resolved);
+    }
+}
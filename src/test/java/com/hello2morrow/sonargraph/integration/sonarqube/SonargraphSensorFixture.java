@@ -0,0 +1,243 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputPath;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputDir;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.measure.MetricFinder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.server.rule.RulesDefinition;
+import org.sonar.api.server.rule.RulesDefinition.Context;
+
+import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphBase.ICustomMetricsPropertiesProvider;
+
+//Executes the sensor on a report and the source files it refers to, shared by the tests and the benchmarks.
+//The sensor gets a quality profile with all rules active and a metric finder knowing the plugin metrics. Custom metrics discovered while
+//executing are written to the directory set with 'setCustomMetricsDirectory' until 'resetCustomMetricsDirectory' is called.
+final class SonargraphSensorFixture
+{
+    private final File baseDirectory;
+    private final String reportPath;
+    private final List<InputPath> inputPaths;
+
+    private SonargraphSensorFixture(final File baseDirectory, final String reportPath, final List<InputPath> inputPaths)
+    {
+        this.baseDirectory = baseDirectory;
+        this.reportPath = reportPath;
+        this.inputPaths = inputPaths;
+    }
+
+    //The generated report in 'baseDirectory' with all its source files
+    static SonargraphSensorFixture create(final File baseDirectory) throws IOException
+    {
+        return create(baseDirectory, SonargraphReportGenerator.REPORT_PATH, ".");
+    }
+
+    //'reportPath' and 'sourceDirectory' are relative to 'baseDirectory'
+    static SonargraphSensorFixture create(final File baseDirectory, final String reportPath, final String sourceDirectory) throws IOException
+    {
+        return new SonargraphSensorFixture(baseDirectory, reportPath, createInputPaths(baseDirectory, sourceDirectory));
+    }
+
+    File getBaseDirectory()
+    {
+        return baseDirectory;
+    }
+
+    List<InputPath> getInputPaths()
+    {
+        return inputPaths;
+    }
+
+    SensorContextTester createSensorContext()
+    {
+        return createSensorContext(inputPaths);
+    }
+
+    //A subset of the input paths simulates changed or missing source files
+    SensorContextTester createSensorContext(final List<InputPath> paths)
+    {
+        final SensorContextTester sensorContextTester = SensorContextTester.create(baseDirectory.getAbsoluteFile().toPath().normalize());
+        final DefaultFileSystem fileSystem = sensorContextTester.fileSystem();
+        for (final InputPath nextInputPath : paths)
+        {
+            if (nextInputPath instanceof InputFile)
+            {
+                fileSystem.add((InputFile) nextInputPath);
+            }
+            else
+            {
+                fileSystem.add((DefaultInputDir) nextInputPath);
+            }
+        }
+
+        final MapSettings settings = new MapSettings();
+        settings.setProperty(SonargraphBase.XML_REPORT_FILE_PATH_KEY, reportPath);
+        sensorContextTester.setSettings(settings);
+
+        return sensorContextTester;
+    }
+
+    SensorContextTester execute()
+    {
+        return execute(createSensorContext());
+    }
+
+    static SonargraphSensor createSensor(final SensorContextTester sensorContext)
+    {
+        return new SonargraphSensor(sensorContext.fileSystem(), createQualityProfile(), createMetricFinder());
+    }
+
+    static SensorContextTester execute(final SensorContextTester sensorContext)
+    {
+        createSensor(sensorContext).execute(sensorContext);
+        return sensorContext;
+    }
+
+    //Creates all directories and Java files underneath the source directory as they would be indexed by the scanner
+    static List<InputPath> createInputPaths(final File baseDirectory, final String sourceDirectory) throws IOException
+    {
+        final Path moduleBaseDir = baseDirectory.getAbsoluteFile().toPath().normalize();
+        final List<Path> paths;
+        try (Stream<Path> walk = Files.walk(moduleBaseDir.resolve(sourceDirectory).normalize()))
+        {
+            paths = walk.collect(Collectors.toList());
+        }
+
+        final List<InputPath> inputPaths = new ArrayList<>(paths.size());
+        for (final Path nextPath : paths)
+        {
+            final String nextRelativePath = moduleBaseDir.relativize(nextPath).toString().replace('\\', '/');
+            if (Files.isDirectory(nextPath))
+            {
+                inputPaths.add(new DefaultInputDir(SonargraphReportGenerator.PROJECT_KEY, nextRelativePath).setModuleBaseDir(moduleBaseDir));
+            }
+            else if (nextRelativePath.endsWith(".java"))
+            {
+                inputPaths.add(TestInputFileBuilder.create(SonargraphReportGenerator.PROJECT_KEY, moduleBaseDir.toFile(), nextPath.toFile())
+                        .setLanguage(SonargraphBase.JAVA).setCharset(StandardCharsets.UTF_8)
+                        .initMetadata(new String(Files.readAllBytes(nextPath), StandardCharsets.UTF_8)).build());
+            }
+        }
+        return inputPaths;
+    }
+
+    @SuppressWarnings("deprecation")
+    static RulesProfile createQualityProfile()
+    {
+        final RulesProfile qualityProfile = RulesProfile.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, SonargraphBase.JAVA);
+
+        final SonargraphRules sonargraphRules = new SonargraphRules();
+        final Context rulesContext = new Context();
+        sonargraphRules.define(rulesContext);
+        final List<RulesDefinition.Rule> rules = rulesContext.repository(SonargraphBase.SONARGRAPH_PLUGIN_KEY).rules();
+
+        for (final RulesDefinition.Rule nextRule : rules)
+        {
+            final org.sonar.api.rules.Rule nextCreated = org.sonar.api.rules.Rule.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, nextRule.key(),
+                    nextRule.name());
+            qualityProfile.addActiveRule(new org.sonar.api.rules.ActiveRule(qualityProfile, nextCreated, null));
+        }
+
+        return qualityProfile;
+    }
+
+    @SuppressWarnings("unchecked")
+    static MetricFinder createMetricFinder()
+    {
+        final SonargraphMetrics sonargraphMetrics = new SonargraphMetrics();
+        final Map<String, Metric<Serializable>> keyToMetric = new HashMap<>();
+        for (final org.sonar.api.measures.Metric<?> nextMetric : sonargraphMetrics.getMetrics())
+        {
+            keyToMetric.put(nextMetric.getKey(), (Metric<Serializable>) nextMetric);
+        }
+
+        return new MetricFinder()
+        {
+            @Override
+            public <G extends Serializable> Metric<G> findByKey(final String key)
+            {
+                return (Metric<G>) keyToMetric.get(key);
+            }
+
+            @Override
+            public Collection<Metric<Serializable>> findAll(final List<String> metricKeys)
+            {
+                final Set<Metric<Serializable>> found = new LinkedHashSet<>();
+                for (final String next : metricKeys)
+                {
+                    final Metric<Serializable> foundMetric = keyToMetric.get(next);
+                    if (foundMetric != null)
+                    {
+                        found.add(foundMetric);
+                    }
+                }
+                return found;
+            }
+
+            @Override
+            public Collection<Metric<Serializable>> findAll()
+            {
+                return keyToMetric.values();
+            }
+        };
+    }
+
+    static void setCustomMetricsDirectory(final File directory)
+    {
+        final String path = directory.getAbsolutePath();
+        SonargraphBase.setCustomMetricsPropertiesProvider(new ICustomMetricsPropertiesProvider()
+        {
+            @Override
+            public String getDirectory()
+            {
+                return path;
+            }
+        });
+    }
+
+    static void resetCustomMetricsDirectory()
+    {
+        SonargraphBase.setCustomMetricsPropertiesProvider(new ICustomMetricsPropertiesProvider()
+        {
+            //Default
+        });
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+//Budgets for the sensor on a large generated report, only run with 'mvn -Pperformance test'.
+//The budgets can be adjusted with the system properties 'sonargraph.performance.*' (see the constants below).
+public final class SonargraphSensorPerformanceTest
+{
+    private static final String MAX_MILLIS_PER_100K_ISSUES = "sonargraph.performance.maxMillisPer100kIssues";
+    private static final String MAX_BYTES_PER_ISSUE = "sonargraph.performance.maxBytesPerIssue";
+    private static final String MAX_PEAK_HEAP_MB = "sonargraph.performance.maxPeakHeapMb";
+    private static final String ISSUES_PER_TYPE = "sonargraph.performance.issuesPerType";
+
+    private static final long MAX_MILLIS_PER_100K_ISSUES_DEFAULT = 30_000;
+    private static final long MAX_BYTES_PER_ISSUE_DEFAULT = 16_000;
+    private static final long MAX_PEAK_HEAP_MB_DEFAULT = 768;
+    private static final int ISSUES_PER_TYPE_DEFAULT = 25_000;
+
+    private static final Logger LOGGER = Loggers.get(SonargraphSensorPerformanceTest.class);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    private SensorContextTester createSensorContext(final SonargraphReportGenerator generator, final String name) throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder(name);
+        generator.generate(baseDirectory);
+        return SonargraphSensorFixture.create(baseDirectory).createSensorContext();
+    }
+
+    private static void execute(final SensorContextTester sensorContext)
+    {
+        SonargraphSensorFixture.execute(sensorContext);
+    }
+
+    private static long getPeakHeapUsage()
+    {
+        long peak = 0;
+        for (final MemoryPoolMXBean nextPool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (nextPool.getType() == MemoryType.HEAP)
+            {
+                peak += nextPool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void resetPeakHeapUsage()
+    {
+        for (final MemoryPoolMXBean nextPool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (nextPool.getType() == MemoryType.HEAP)
+            {
+                nextPool.resetPeakUsage();
+            }
+        }
+    }
+
+    @Test
+    public void testLargeReportBudgets() throws IOException
+    {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("Thread allocation counters not available", threadBean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        //Warm up class loading and JIT on a small report
+        execute(createSensorContext(new SonargraphReportGenerator().setSourceFilesPerRootDirectory(200).setIssuesPerType(500), "warm-up"));
+
+        final SonargraphReportGenerator generator = new SonargraphReportGenerator().setRootDirectoriesPerModule(4)
+                .setSourceFilesPerRootDirectory(5000).setLinesPerSourceFile(60)
+                .setIssuesPerType(Integer.getInteger(ISSUES_PER_TYPE, ISSUES_PER_TYPE_DEFAULT).intValue()).setDuplicateBlocks(2500, 3)
+                .setCycleGroups(250).setResolutions(2500);
+        final SensorContextTester sensorContext = createSensorContext(generator, "large");
+
+        System.gc();
+        resetPeakHeapUsage();
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = allocationBean.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+
+        execute(sensorContext);
+
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        final long allocated = allocationBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        final long peakHeapMb = getPeakHeapUsage() / (1024 * 1024);
+
+        final int numberOfIssues = sensorContext.allIssues().size();
+        assertTrue("Too few issues created: " + numberOfIssues, numberOfIssues >= generator.getNumberOfIssues());
+        final long millisPer100kIssues = millis * 100_000 / numberOfIssues;
+        final long bytesPerIssue = allocated / numberOfIssues;
+
+        LOGGER.info(SonargraphBase.SONARGRAPH_PLUGIN_PRESENTATION_NAME + ": Sensor on " + numberOfIssues + " issue(s): " + millis + " ms ("
+                + millisPer100kIssues + " ms per 100k issues), " + bytesPerIssue + " bytes allocated per issue, peak heap " + peakHeapMb + " MB");
+
+        final long maxMillisPer100kIssues = Long.getLong(MAX_MILLIS_PER_100K_ISSUES, MAX_MILLIS_PER_100K_ISSUES_DEFAULT);
+        assertTrue("Wall time per 100k issues " + millisPer100kIssues + " ms exceeds budget of " + maxMillisPer100kIssues + " ms",
+                millisPer100kIssues <= maxMillisPer100kIssues);
+        final long maxBytesPerIssue = Long.getLong(MAX_BYTES_PER_ISSUE, MAX_BYTES_PER_ISSUE_DEFAULT);
+        assertTrue("Allocation per issue " + bytesPerIssue + " bytes exceeds budget of " + maxBytesPerIssue + " bytes",
+                bytesPerIssue <= maxBytesPerIssue);
+        final long maxPeakHeapMb = Long.getLong(MAX_PEAK_HEAP_MB, MAX_PEAK_HEAP_MB_DEFAULT);
+        assertTrue("Peak heap " + peakHeapMb + " MB exceeds budget of " + maxPeakHeapMb + " MB", peakHeapMb <= maxPeakHeapMb);
+    }
+}
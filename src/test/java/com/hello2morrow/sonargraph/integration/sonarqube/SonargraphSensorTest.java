@@ -17,38 +17,50 @@
  */
 package com.hello2morrow.sonargraph.integration.sonarqube;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
-import java.io.Serializable;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.InputFile.Type;
+import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputDir;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
-import org.sonar.api.batch.measure.Metric;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.issue.Issue.Flow;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.config.internal.MapSettings;
 import org.sonar.api.profiles.RulesProfile;
-import org.sonar.api.server.rule.RulesDefinition;
-import org.sonar.api.server.rule.RulesDefinition.Context;
 
 import com.hello2morrow.sonargraph.integration.sonarqube.SonargraphBase.ICustomMetricsPropertiesProvider;
 
 public final class SonargraphSensorTest
 {
     private static final String JAVA_FILE_CONTENT = "bla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\nbla\n";
+    private static final int CONCURRENT_EXECUTIONS = 16;
+    private static final int CONCURRENT_THREADS = 8;
 
     private final ICustomMetricsPropertiesProvider customMetricsPropertiesProvider = new ICustomMetricsPropertiesProvider()
     {
@@ -122,68 +134,25 @@ public final class SonargraphSensorTest
         }
     };
 
-    private final RulesProfile qualityProfile = RulesProfile.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, SonargraphBase.JAVA);
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private RulesProfile qualityProfile;
     private MetricFinder metricFinder;
 
-    @SuppressWarnings({ "unchecked", "deprecation" })
     @Before
     public void before()
     {
         SonargraphBase.setCustomMetricsPropertiesProvider(customMetricsPropertiesProvider);
-
-        final SonargraphRules sonargraphRules = new SonargraphRules();
-        final Context rulesContext = SonargraphRulesTest.TestRules.createTestContext();
-        sonargraphRules.define(rulesContext);
-        final List<RulesDefinition.Rule> rules = rulesContext.repository(SonargraphBase.SONARGRAPH_PLUGIN_KEY).rules();
-
-        for (final RulesDefinition.Rule nextRule : rules)
-        {
-            final org.sonar.api.rules.Rule nextCreated = org.sonar.api.rules.Rule.create(SonargraphBase.SONARGRAPH_PLUGIN_KEY, nextRule.key(),
-                    nextRule.name());
-            qualityProfile.addActiveRule(new org.sonar.api.rules.ActiveRule(qualityProfile, nextCreated, null));
-        }
-
-        final SonargraphMetrics sonargraphMetrics = new SonargraphMetrics();
-        final Map<String, Metric<Serializable>> keyToMetric = new HashMap<>();
-        for (final org.sonar.api.measures.Metric<?> nextMetric : sonargraphMetrics.getMetrics())
-        {
-            keyToMetric.put(nextMetric.getKey(), (Metric<Serializable>) nextMetric);
-        }
-
-        metricFinder = new MetricFinder()
-        {
-            @Override
-            public <G extends Serializable> Metric<G> findByKey(final String key)
-            {
-                return (Metric<G>) keyToMetric.get(key);
-            }
-
-            @Override
-            public Collection<Metric<Serializable>> findAll(final List<String> metricKeys)
-            {
-                final Set<Metric<Serializable>> found = new LinkedHashSet<>();
-                for (final String next : metricKeys)
-                {
-                    final Metric<Serializable> foundMetric = keyToMetric.get(next);
-                    if (foundMetric != null)
-                    {
-                        found.add(foundMetric);
-                    }
-                }
-                return found;
-            }
-
-            @Override
-            public Collection<Metric<Serializable>> findAll()
-            {
-                return keyToMetric.values();
-            }
-        };
+        qualityProfile = SonargraphSensorFixture.createQualityProfile();
+        metricFinder = SonargraphSensorFixture.createMetricFinder();
     }
 
     @After
     public void after()
     {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+        qualityProfile = null;
         metricFinder = null;
     }
 
@@ -270,4 +239,223 @@ public final class SonargraphSensorTest
         sonargraphSensor.describe(sensorDescriptor);
         sonargraphSensor.execute(sensorContextTester);
     }
-}
\ No newline at end of file
+
+    private SensorContextTester executeOnGeneratedReport(final SonargraphSensorFixture fixture, final boolean compact)
+    {
+        final SensorContextTester sensorContextTester = fixture.createSensorContext();
+        sensorContextTester.settings().setProperty(SonargraphBase.COMPACT_MESSAGES_KEY, compact);
+        sensorContextTester.settings().setProperty(SonargraphBase.MESSAGE_MAX_LENGTH_KEY, 80);
+        new SonargraphSensor(sensorContextTester.fileSystem(), qualityProfile, metricFinder).execute(sensorContextTester);
+        return sensorContextTester;
+    }
+
+    private static int getMessageLength(final SensorContextTester sensorContextTester)
+    {
+        int length = 0;
+        for (final Issue nextIssue : sensorContextTester.allIssues())
+        {
+            length += nextIssue.primaryLocation().message().length();
+        }
+        return length;
+    }
+
+    @Test
+    public void testCompactMessages() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(20).setDuplicateBlocks(5, 3).setResolutions(10)
+                .generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester verbose = executeOnGeneratedReport(fixture, false);
+        final SensorContextTester compact = executeOnGeneratedReport(fixture, true);
+        assertEquals(verbose.allIssues().size(), compact.allIssues().size());
+        assertTrue(getMessageLength(compact) < getMessageLength(verbose));
+
+        boolean duplicateFound = false;
+        for (final Issue nextIssue : compact.allIssues())
+        {
+            final String nextMessage = nextIssue.primaryLocation().message();
+            assertFalse(nextMessage.isEmpty());
+            assertTrue(nextMessage, nextMessage.length() <= 80);
+            assertFalse(nextMessage, nextMessage.contains(" assignee='"));
+            if (nextMessage.contains(" duplicate of "))
+            {
+                duplicateFound = true;
+                assertFalse(nextMessage, nextMessage.contains(".java line(s) "));
+            }
+        }
+        assertTrue(duplicateFound);
+    }
+
+    private SensorContextTester executeOnMultipleReports(final SonargraphSensorFixture fixture)
+    {
+        final SensorContextTester sensorContextTester = fixture.createSensorContext();
+        sensorContextTester.settings().setProperty(SonargraphBase.XML_REPORT_FILE_PATH_KEY,
+                SonargraphReportGenerator.REPORT_PATH + ", target/sonargraph-*/*.xml");
+        new SonargraphSensor(sensorContextTester.fileSystem(), qualityProfile, metricFinder).execute(sensorContextTester);
+        return sensorContextTester;
+    }
+
+    @Test
+    public void testMultipleReports() throws IOException
+    {
+        final File customMetricsDirectory = temporaryFolder.newFolder("custom-metrics");
+        SonargraphSensorFixture.setCustomMetricsDirectory(customMetricsDirectory);
+        metricFinder = SonargraphSensorFixture.createMetricFinder();
+
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        final File reportFile = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(20).generate(baseDirectory);
+        final File copy = new File(baseDirectory, "target/sonargraph-copy/report.xml");
+        Files.createDirectories(copy.getParentFile().toPath());
+        Files.copy(reportFile.toPath(), copy.toPath());
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester single = executeOnGeneratedReport(fixture, false);
+        final SensorContextTester multiple = executeOnMultipleReports(fixture);
+        assertTrue(single.allIssues().size() > 0);
+        assertEquals(2 * single.allIssues().size(), multiple.allIssues().size());
+
+        //The metrics of the second system are not created again under the standard keys, they are added as custom metrics
+        final String moduleKey = multiple.module().key();
+        final int singleMeasures = single.measures(moduleKey).size();
+        assertEquals(singleMeasures, multiple.measures(moduleKey).size());
+        assertTrue(new File(customMetricsDirectory, customMetricsPropertiesProvider.getFileName()).exists());
+
+        //Available after a restart
+        metricFinder = SonargraphSensorFixture.createMetricFinder();
+        assertEquals(2 * singleMeasures, executeOnMultipleReports(fixture).measures(moduleKey).size());
+    }
+
+    //Tab separated component key, start line (0 without range) and message of the issues in the order they were saved
+    private static List<String> describeIssues(final SensorContextTester sensorContextTester)
+    {
+        final List<String> described = new ArrayList<>();
+        for (final Issue nextIssue : sensorContextTester.allIssues())
+        {
+            final TextRange nextRange = nextIssue.primaryLocation().textRange();
+            described.add(nextIssue.primaryLocation().inputComponent().key() + "\t" + (nextRange != null ? nextRange.start().line() : 0) + "\t"
+                    + nextIssue.primaryLocation().message());
+        }
+        return described;
+    }
+
+    @Test
+    public void testDeterministicEmissionOrder() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(40).setDuplicateBlocks(10, 3).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final List<String> first = describeIssues(executeOnGeneratedReport(fixture, false));
+        final List<String> second = describeIssues(executeOnGeneratedReport(fixture, false));
+        assertEquals(first, second);
+
+        //Each component in one contiguous run, its issues ordered by line
+        final Set<String> finishedComponents = new HashSet<>();
+        String component = null;
+        int line = 0;
+        for (final String nextIssue : first)
+        {
+            final String[] nextParts = nextIssue.split("\t", 3);
+            if (!nextParts[0].equals(component))
+            {
+                assertTrue(nextIssue, finishedComponents.add(nextParts[0]));
+                component = nextParts[0];
+                line = 0;
+            }
+            final int nextLine = Integer.parseInt(nextParts[1]);
+            assertTrue(nextIssue, nextLine >= line);
+            line = nextLine;
+        }
+    }
+
+    @Test
+    public void testCollapseViolations() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        //Each of the 10 source files has 3 violations to the same target type
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(10).setIssuesPerType(30).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester expanded = executeOnGeneratedReport(fixture, false);
+        final SensorContextTester collapsed = fixture.createSensorContext();
+        collapsed.settings().setProperty(SonargraphBase.COLLAPSE_VIOLATIONS_KEY, true);
+        collapsed.settings().setProperty(SonargraphBase.COLLAPSE_VIOLATIONS_MAX_LINES_KEY, 2);
+        new SonargraphSensor(collapsed.fileSystem(), qualityProfile, metricFinder).execute(collapsed);
+        assertEquals(expanded.allIssues().size() - 20, collapsed.allIssues().size());
+
+        int collapsedIssues = 0;
+        for (final Issue nextIssue : collapsed.allIssues())
+        {
+            if (nextIssue.ruleKey().rule().equals("ARCHITECTURE_VIOLATION"))
+            {
+                final String nextMessage = nextIssue.primaryLocation().message();
+                assertTrue(nextMessage, nextMessage.contains("3 violating dependencies to '"));
+                assertTrue(nextMessage, nextMessage.matches(".* at line\\(s\\) \\d+, \\d+ and 1 more .*"));
+                assertEquals(2, nextIssue.flows().size());
+                for (final Flow nextFlow : nextIssue.flows())
+                {
+                    assertTrue(nextFlow.locations().get(0).textRange().start().line() > nextIssue.primaryLocation().textRange().start().line());
+                }
+                collapsedIssues++;
+            }
+        }
+        assertEquals(10, collapsedIssues);
+    }
+
+    @Test
+    public void testConcurrentModuleExecutions() throws Exception
+    {
+        final File customMetricsDirectory = temporaryFolder.newFolder("custom-metrics");
+        SonargraphSensorFixture.setCustomMetricsDirectory(customMetricsDirectory);
+
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(40).setDuplicateBlocks(10, 3).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+        final SensorContextTester reference = executeOnGeneratedReport(fixture, false);
+        final List<String> expectedIssues = describeIssues(reference);
+        final int expectedMeasures = reference.measures(reference.module().key()).size();
+        final int expectedCustomMetrics = SonargraphBase.loadCustomMetrics().size();
+        assertTrue(expectedIssues.size() > 0);
+
+        //One sensor instance shared by all executions, as for modules scanned in parallel
+        final List<SensorContextTester> contexts = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_EXECUTIONS; i++)
+        {
+            contexts.add(fixture.createSensorContext());
+        }
+        final SonargraphSensor sensor = new SonargraphSensor(contexts.get(0).fileSystem(), qualityProfile, metricFinder);
+        final ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_THREADS);
+        try
+        {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final SensorContextTester nextContext : contexts)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    start.await();
+                    sensor.execute(nextContext);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<?> nextFuture : futures)
+            {
+                nextFuture.get(2, TimeUnit.MINUTES);
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        for (final SensorContextTester nextContext : contexts)
+        {
+            assertEquals(expectedIssues, describeIssues(nextContext));
+            assertEquals(expectedMeasures, nextContext.measures(nextContext.module().key()).size());
+        }
+        assertEquals(expectedCustomMetrics, SonargraphBase.loadCustomMetrics().size());
+    }
+}
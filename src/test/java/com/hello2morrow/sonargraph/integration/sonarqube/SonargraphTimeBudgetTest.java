@@ -0,0 +1,194 @@
+/**
+ * SonarQube Sonargraph Integration Plugin
+ * Copyright (C) 2016-2018 hello2morrow GmbH
+ * mailto: support AT hello2morrow DOT com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.hello2morrow.sonargraph.integration.sonarqube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputDir;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.measure.Measure;
+
+public final class SonargraphTimeBudgetTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void before() throws IOException
+    {
+        SonargraphSensorFixture.setCustomMetricsDirectory(temporaryFolder.newFolder("custom-metrics"));
+    }
+
+    @After
+    public void after()
+    {
+        SonargraphSensorFixture.resetCustomMetricsDirectory();
+    }
+
+    @Test
+    public void testUnlimited()
+    {
+        final SonargraphTimeBudget budget = new SonargraphTimeBudget(0, System.nanoTime() - TimeUnit.HOURS.toNanos(1));
+        assertFalse(budget.isLimited());
+        assertFalse(budget.isExhausted("step"));
+        assertFalse(budget.isExhausted());
+        assertNull(budget.getStoppedBefore());
+        assertEquals(100.0, budget.getCompleteness(), 0.0);
+    }
+
+    @Test
+    public void testExhausted()
+    {
+        final SonargraphTimeBudget notYet = new SonargraphTimeBudget(TimeUnit.HOURS.toMillis(1));
+        assertTrue(notYet.isLimited());
+        assertFalse(notYet.isExhausted("step"));
+        assertEquals(100.0, notYet.getCompleteness(), 0.0);
+
+        final SonargraphTimeBudget budget = new SonargraphTimeBudget(10, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+        budget.addExpectedIssues(3);
+        budget.addReachedIssues(1);
+        assertTrue(budget.isExhausted("first"));
+        assertTrue(budget.isExhausted("second"));
+        assertEquals("first", budget.getStoppedBefore());
+        assertEquals(33.3, budget.getCompleteness(), 0.0);
+
+        final SonargraphTimeBudget beforeCounting = new SonargraphTimeBudget(10, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+        assertTrue(beforeCounting.isExhausted("step"));
+        assertEquals(0.0, beforeCounting.getCompleteness(), 0.0);
+    }
+
+    @Test
+    public void testCompletenessOfSeveralReports()
+    {
+        final SonargraphTimeBudget budget = new SonargraphTimeBudget(10, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+        //More issues reached than expected in the first report must not make up for the skipped ones of the second
+        budget.addExpectedIssues(1);
+        budget.addReachedIssues(3);
+        budget.finishReport();
+        budget.addExpectedIssues(3);
+        budget.addReachedIssues(1);
+        assertTrue(budget.isExhausted("step"));
+        budget.finishReport();
+
+        assertEquals(2, budget.getProcessedIssues());
+        assertEquals(2, budget.getSkippedIssues());
+        assertEquals(50.0, budget.getCompleteness(), 0.0);
+    }
+
+    private static SensorContextTester execute(final SonargraphSensorFixture fixture, final long budgetMillis, final LongSupplier nanoTime)
+    {
+        final SensorContextTester sensorContext = fixture.createSensorContext();
+        sensorContext.settings().setProperty(SonargraphBase.IMPORT_TIME_BUDGET_KEY, Long.toString(budgetMillis));
+        new SonargraphSensor(sensorContext.fileSystem(), SonargraphSensorFixture.createQualityProfile(),
+                SonargraphSensorFixture.createMetricFinder(), nanoTime).execute(sensorContext);
+        return sensorContext;
+    }
+
+    private static SensorContextTester execute(final SonargraphSensorFixture fixture, final long budgetMillis)
+    {
+        return execute(fixture, budgetMillis, System::nanoTime);
+    }
+
+    private static long countSourceFileIssues(final SensorContextTester sensorContext)
+    {
+        return sensorContext.allIssues().stream().filter(i -> i.primaryLocation().inputComponent().isFile()).count();
+    }
+
+    @Test
+    public void testSensor() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(30).setDuplicateBlocks(5, 3).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+
+        final SensorContextTester unlimited = execute(fixture, 0);
+        assertNull(unlimited.measure(unlimited.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key()));
+
+        final SensorContextTester generous = execute(fixture, TimeUnit.MINUTES.toMillis(10));
+        final Measure<Double> complete = generous.measure(generous.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key());
+        assertEquals(100.0, complete.value().doubleValue(), 0.0);
+        assertEquals(unlimited.allIssues().size(), generous.allIssues().size());
+
+        //Loading the report alone takes longer than 1 ms
+        final SensorContextTester exhausted = execute(fixture, 1);
+        final Measure<Double> partial = exhausted.measure(exhausted.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key());
+        assertTrue(partial.value().doubleValue() < 100.0);
+        assertTrue(exhausted.allIssues().size() < unlimited.allIssues().size());
+    }
+
+    @Test
+    public void testExhaustedWhileClassifyingSourceFiles() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        new SonargraphReportGenerator().setSourceFilesPerRootDirectory(30).setIssuesPerType(30).setCycleGroups(3).generate(baseDirectory);
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory);
+        final SensorContextTester unlimited = execute(fixture, 0);
+
+        //Each reading of the clock advances it by 1 ms: the budget is read on creation, before the module and the source file issues
+        //and then once per classified source file, so that it runs out after 10 source files.
+        final AtomicLong now = new AtomicLong();
+        final SensorContextTester exhausted = execute(fixture, 13, () -> now.getAndAdd(TimeUnit.MILLISECONDS.toNanos(1)));
+        final long sourceFileIssues = countSourceFileIssues(exhausted);
+        assertTrue("Source file issues classified before the budget ran out not imported", sourceFileIssues > 0);
+        assertTrue(sourceFileIssues < countSourceFileIssues(unlimited));
+        assertFalse("Directory issues imported after the budget ran out",
+                exhausted.allIssues().stream().anyMatch(i -> i.primaryLocation().inputComponent() instanceof InputDir));
+
+        final Measure<Double> partial = exhausted.measure(exhausted.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key());
+        final Measure<Double> beforeSourceFiles = execute(fixture, 3, () -> now.getAndAdd(TimeUnit.MILLISECONDS.toNanos(1)))
+                .measure(exhausted.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key());
+        assertTrue(partial.value().doubleValue() > beforeSourceFiles.value().doubleValue());
+        assertTrue(partial.value().doubleValue() < 100.0);
+    }
+
+    @Test
+    public void testSeveralReports() throws IOException
+    {
+        final File baseDirectory = temporaryFolder.newFolder("project");
+        final File reportFile = new SonargraphReportGenerator().setSourceFilesPerRootDirectory(20).setIssuesPerType(20).generate(baseDirectory);
+        final File copy = new File(baseDirectory, "target/sonargraph-copy/report.xml");
+        Files.createDirectories(copy.getParentFile().toPath());
+        Files.copy(reportFile.toPath(), copy.toPath());
+        final SonargraphSensorFixture fixture = SonargraphSensorFixture.create(baseDirectory,
+                SonargraphReportGenerator.REPORT_PATH + ",target/sonargraph-copy/report.xml", ".");
+
+        //The completeness is saved once for all reports
+        final SensorContextTester generous = execute(fixture, TimeUnit.MINUTES.toMillis(10));
+        final Measure<Double> complete = generous.measure(generous.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key());
+        assertEquals(100.0, complete.value().doubleValue(), 0.0);
+
+        final SensorContextTester exhausted = execute(fixture, 1);
+        final Measure<Double> partial = exhausted.measure(exhausted.module().key(), SonargraphBase.IMPORT_COMPLETENESS.key());
+        assertTrue(partial.value().doubleValue() < 100.0);
+    }
+}